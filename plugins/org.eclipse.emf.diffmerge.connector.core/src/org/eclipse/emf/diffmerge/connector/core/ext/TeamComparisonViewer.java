@@ -201,7 +201,7 @@ public class TeamComparisonViewer extends Viewer implements IFlushable, IPropert
           ConfigurableComparisonMethod.CONFIGURATOR_VERSIONS.apply(
               setup.getComparisonMethod());
         }
-        result = new EMFDiffMergeEditorInput(method);
+        result = manager_p.createEditorInput(method);
       }
     }
     if (result == null) {
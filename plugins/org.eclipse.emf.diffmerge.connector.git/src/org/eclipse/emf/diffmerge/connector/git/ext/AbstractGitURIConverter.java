@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.eclipse.emf.diffmerge.connector.git.ext;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -134,6 +135,11 @@ public abstract class AbstractGitURIConverter extends ExtensibleURIConverterImpl
       String gitPath = absoluteFilePath.makeRelativeTo(absoluteRepoPath)
           .toString();
       if (target != null && target.exists()) {
+        ObjectId blobId = getBlobId(gitPath);
+        if (blobId != null) {
+          // Blob known without resolving the file revision
+          return new ByteArrayInputStream(getBlobCache().get(blobId, repo));
+        }
         try {
           return getGitFileRevision(gitPath)
               .getStorage(new NullProgressMonitor()).getContents();
@@ -169,6 +175,26 @@ public abstract class AbstractGitURIConverter extends ExtensibleURIConverterImpl
         .append(pathRepresentation);
   }
  
+  /**
+   * Return the cache of blob contents to use
+   * @return a non-null object
+   */
+  protected GitBlobCache getBlobCache() {
+    return GitBlobCache.getDefault();
+  }
+  
+  /**
+   * Return the ID of the blob for the given path if it can be determined directly,
+   * in which case the contents are obtained through the blob cache instead of the
+   * file revision
+   * @see AbstractGitURIConverter#getBlobCache()
+   * @param gitPath_p a non-null string
+   * @return a potentially null object, where null means that the file revision must be used
+   */
+  protected ObjectId getBlobId(String gitPath_p) {
+    return null;
+  }
+  
   /**
    * Return the file revision for the given path
    * @param gitPath_p a non-null string
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Thales Global Services S.A.S.
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.diffmerge.connector.git.ext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.emf.diffmerge.connector.git.EMFDiffMergeGitConnectorPlugin;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+
+
+/**
+ * A size-bounded cache of the contents of Git blobs, identified by their object IDs.
+ * Since a blob ID is a hash of its contents, cached contents never become obsolete
+ * and can be shared among repositories, commits and comparisons.
+ * Contents are kept in memory in least-recently-used order and, optionally,
+ * on disk in a given directory.
+ * Instances are thread-safe.
+ */
+public class GitBlobCache {
+
+  /** The default maximal number of bytes in memory */
+  public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+  /** The default maximal number of bytes on disk */
+  public static final long DEFAULT_DISK_LIMIT = 512L * 1024 * 1024;
+
+  /** The name of the directory of the default cache within the plug-in state location */
+  private static final String DEFAULT_DIRECTORY_NAME = "blobs"; //$NON-NLS-1$
+
+  /** The initially null shared instance */
+  private static GitBlobCache __default = null;
+
+  /** The non-null map from blob IDs to contents, in least-recently-used order */
+  private final LinkedHashMap<ObjectId, byte[]> _memoryCache;
+
+  /** The maximal number of bytes in memory */
+  private final long _memoryLimit;
+
+  /** The current number of bytes in memory */
+  private long _memorySize;
+
+  /** The optional directory for caching on disk */
+  private final File _directory;
+
+  /** The maximal number of bytes on disk */
+  private final long _diskLimit;
+
+  /** The current number of bytes on disk, or -1 if not computed yet */
+  private long _diskSize;
+
+  /** The number of requests that have been answered without reading the repository */
+  private long _hits;
+
+  /** The number of requests that required reading the repository */
+  private long _misses;
+
+
+  /**
+   * Constructor for a cache in memory only
+   * @param memoryLimit_p the maximal number of bytes in memory
+   */
+  public GitBlobCache(long memoryLimit_p) {
+    this(memoryLimit_p, null, 0);
+  }
+
+  /**
+   * Constructor
+   * @param memoryLimit_p the maximal number of bytes in memory
+   * @param directory_p an optional directory for caching on disk
+   * @param diskLimit_p the maximal number of bytes on disk, if applicable
+   */
+  public GitBlobCache(long memoryLimit_p, File directory_p, long diskLimit_p) {
+    _memoryCache = new LinkedHashMap<ObjectId, byte[]>(16, 0.75f, true);
+    _memoryLimit = memoryLimit_p;
+    _memorySize = 0;
+    _directory = directory_p;
+    _diskLimit = diskLimit_p;
+    _diskSize = -1;
+    _hits = 0;
+    _misses = 0;
+  }
+
+  /**
+   * Return the shared instance, which uses the state location of the plug-in for caching
+   * on disk if available
+   * @return a non-null object
+   */
+  public static synchronized GitBlobCache getDefault() {
+    if (__default == null) {
+      File directory = null;
+      EMFDiffMergeGitConnectorPlugin plugin = EMFDiffMergeGitConnectorPlugin.getDefault();
+      if (plugin != null) {
+        try {
+          directory = plugin.getStateLocation().append(DEFAULT_DIRECTORY_NAME).toFile();
+        } catch (IllegalStateException e) {
+          // No state location: memory only
+        }
+      }
+      __default = new GitBlobCache(DEFAULT_MEMORY_LIMIT, directory, DEFAULT_DISK_LIMIT);
+    }
+    return __default;
+  }
+
+  /**
+   * Remove all cached contents from memory and disk
+   */
+  public synchronized void clear() {
+    _memoryCache.clear();
+    _memorySize = 0;
+    if (_directory != null) {
+      File[] files = _directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      _diskSize = 0;
+    }
+  }
+
+  /**
+   * Return the contents of the given blob, reading it from the given repository
+   * only if it is not cached
+   * @param blobId_p a non-null blob ID
+   * @param repository_p a non-null repository that contains the blob
+   * @return a non-null array of bytes which must not be modified
+   * @throws IOException if the blob cannot be read
+   */
+  public byte[] get(ObjectId blobId_p, Repository repository_p) throws IOException {
+    byte[] result = getCached(blobId_p);
+    if (result == null) {
+      // Read outside synchronization since this is the expensive part
+      ObjectLoader loader = repository_p.open(blobId_p, Constants.OBJ_BLOB);
+      result = loader.getBytes(Integer.MAX_VALUE);
+      synchronized (this) {
+        _misses++;
+        putInMemory(blobId_p, result);
+        putOnDisk(blobId_p, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return the contents of the given blob if they are cached
+   * @param blobId_p a non-null blob ID
+   * @return a potentially null array of bytes which must not be modified
+   */
+  protected synchronized byte[] getCached(ObjectId blobId_p) {
+    byte[] result = _memoryCache.get(blobId_p);
+    if (result == null) {
+      File file = getFile(blobId_p);
+      if (file != null && file.isFile()) {
+        try {
+          result = Files.readAllBytes(file.toPath());
+          file.setLastModified(System.currentTimeMillis());
+          putInMemory(blobId_p, result);
+        } catch (IOException e) {
+          // Unreadable: ignore and remove
+          file.delete();
+          _diskSize = -1;
+        }
+      }
+    }
+    if (result != null) {
+      _hits++;
+    }
+    return result;
+  }
+
+  /**
+   * Return the file for the given blob on disk, if applicable
+   * @param blobId_p a non-null blob ID
+   * @return a potentially null file which may not exist
+   */
+  protected File getFile(ObjectId blobId_p) {
+    return _directory == null? null: new File(_directory, blobId_p.name());
+  }
+
+  /**
+   * Return the number of requests that have been answered without reading a repository
+   * @return a positive long or 0
+   */
+  public synchronized long getHits() {
+    return _hits;
+  }
+
+  /**
+   * Return the number of requests that required reading a repository
+   * @return a positive long or 0
+   */
+  public synchronized long getMisses() {
+    return _misses;
+  }
+
+  /**
+   * Store the given contents on disk if applicable, evicting the least recently used
+   * contents if needed
+   * @param blobId_p a non-null blob ID
+   * @param contents_p a non-null array of bytes
+   */
+  protected void putOnDisk(ObjectId blobId_p, byte[] contents_p) {
+    File file = getFile(blobId_p);
+    if (file == null || contents_p.length > _diskLimit || file.isFile() ||
+        !_directory.isDirectory() && !_directory.mkdirs()) {
+      return;
+    }
+    if (_diskSize < 0) {
+      _diskSize = 0;
+      File[] files = _directory.listFiles();
+      if (files != null) {
+        for (File existing : files) {
+          _diskSize += existing.length();
+        }
+      }
+    }
+    if (_diskSize + contents_p.length > _diskLimit) {
+      File[] files = _directory.listFiles();
+      if (files != null) {
+        Arrays.sort(files, new Comparator<File>() {
+          /**
+           * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+           */
+          public int compare(File o1_p, File o2_p) {
+            return Long.compare(o1_p.lastModified(), o2_p.lastModified());
+          }
+        });
+        for (int i = 0; i < files.length && _diskSize + contents_p.length > _diskLimit; i++) {
+          long length = files[i].length();
+          if (files[i].delete()) {
+            _diskSize -= length;
+          }
+        }
+      }
+    }
+    try {
+      OutputStream stream = new FileOutputStream(file);
+      try {
+        stream.write(contents_p);
+      } finally {
+        stream.close();
+      }
+      _diskSize += contents_p.length;
+    } catch (IOException e) {
+      // The cache is only an optimization
+      file.delete();
+    }
+  }
+
+  /**
+   * Store the given contents in memory, evicting the least recently used contents if needed
+   * @param blobId_p a non-null blob ID
+   * @param contents_p a non-null array of bytes
+   */
+  protected void putInMemory(ObjectId blobId_p, byte[] contents_p) {
+    if (contents_p.length > _memoryLimit) {
+      return;
+    }
+    byte[] former = _memoryCache.put(blobId_p.copy(), contents_p);
+    if (former != null) {
+      _memorySize -= former.length;
+    }
+    _memorySize += contents_p.length;
+    Iterator<Map.Entry<ObjectId, byte[]>> it = _memoryCache.entrySet().iterator();
+    while (_memorySize > _memoryLimit && it.hasNext()) {
+      Map.Entry<ObjectId, byte[]> eldest = it.next();
+      _memorySize -= eldest.getValue().length;
+      it.remove();
+    }
+  }
+
+}
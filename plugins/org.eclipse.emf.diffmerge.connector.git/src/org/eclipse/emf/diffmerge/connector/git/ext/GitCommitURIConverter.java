@@ -12,12 +12,22 @@
  *******************************************************************************/
 package org.eclipse.emf.diffmerge.connector.git.ext;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.emf.diffmerge.connector.git.EMFDiffMergeGitConnectorPlugin;
 import org.eclipse.emf.ecore.resource.ContentHandler;
 import org.eclipse.emf.ecore.resource.URIHandler;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.team.core.history.IFileRevision;
 
 
@@ -29,6 +39,9 @@ public class GitCommitURIConverter extends AbstractGitURIConverter {
   /** The non-null commit ID */
   private final RevCommit _commitId;
   
+  /** The map from paths to the IDs of the blobs of the commit, null if not computed yet */
+  private Map<String, ObjectId> _blobIds;
+  
   
   /**
    * Constructor
@@ -53,6 +66,50 @@ public class GitCommitURIConverter extends AbstractGitURIConverter {
     _commitId = commitId_p;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.connector.git.ext.AbstractGitURIConverter#getBlobId(java.lang.String)
+   */
+  @Override
+  protected ObjectId getBlobId(String gitPath_p) {
+    return getBlobIds().get(gitPath_p);
+  }
+  
+  /**
+   * Return the IDs of all the blobs of the commit, computing them if needed.
+   * The tree of the commit is walked once so that fragmented models do not
+   * require a lookup per resource.
+   * @return a non-null, potentially empty map from paths to blob IDs
+   */
+  protected synchronized Map<String, ObjectId> getBlobIds() {
+    if (_blobIds == null) {
+      Map<String, ObjectId> result = new HashMap<String, ObjectId>();
+      Repository repository = getRepository();
+      RevWalk revWalk = new RevWalk(repository);
+      TreeWalk treeWalk = new TreeWalk(repository);
+      try {
+        RevCommit commit = revWalk.parseCommit(_commitId);
+        treeWalk.addTree(commit.getTree());
+        treeWalk.setRecursive(true);
+        while (treeWalk.next()) {
+          if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+            result.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+          }
+        }
+      } catch (IOException e) {
+        // Fall back to file revisions
+        EMFDiffMergeGitConnectorPlugin.getDefault().getLog().log(new Status(
+            IStatus.WARNING, EMFDiffMergeGitConnectorPlugin.getDefault().getPluginId(),
+            e.getMessage(), e));
+        result.clear();
+      } finally {
+        treeWalk.close();
+        revWalk.close();
+      }
+      _blobIds = result;
+    }
+    return _blobIds;
+  }
+  
   /**
    * Return the commit ID for this URI Converter
    * @return a non-null object
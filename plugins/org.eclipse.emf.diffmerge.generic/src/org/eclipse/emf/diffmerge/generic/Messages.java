@@ -28,6 +28,7 @@ public class Messages extends NLS {
   public static String MatchBuilder_Task_MappingIDs;
   public static String MatchBuilder_Task_RegisteringIDs;
   public static String MergeOperation_Name;
+  public static String MergeOperation_Throughput;
   static {
     // initialize resource bundle
     NLS.initializeMessages(BUNDLE_NAME, Messages.class);
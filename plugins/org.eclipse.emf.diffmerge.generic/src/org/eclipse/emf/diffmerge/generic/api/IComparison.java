@@ -315,6 +315,29 @@ public interface IComparison<E> {
         IMatch<E> elementMatch_p, Object reference_p, E value_p,
         IMatch<E> valueMatch_p, Role presenceRole_p, boolean isOrder_p);
     
+    /**
+     * Update the differences of this computed comparison after the given elements
+     * have been modified, at a cost which depends on the number of those elements
+     * instead of the size of the scopes. The given elements are typically collected
+     * from change notifications on the scopes, e.g., after edits or merges.
+     * The update is only possible if the modifications preserve the mapping, i.e.,
+     * if the modified elements are still matched as before and their containers and
+     * children still match. If it is not possible, then this comparison is left
+     * unchanged and false is returned, in which case it must be computed again.
+     * Update is not supported for three-way comparisons.
+     * By default, update is not supported and false is returned.
+     * @see IComparison#compute(IMatchPolicy, IDiffPolicy, IMergePolicy, IProgressMonitor)
+     * @param targetElements_p a non-null, potentially empty collection of elements
+     *          which have been modified in the TARGET scope
+     * @param referenceElements_p a non-null, potentially empty collection of elements
+     *          which have been modified in the REFERENCE scope
+     * @return whether the differences have been updated
+     */
+    default boolean recompute(Collection<? extends E> targetElements_p,
+        Collection<? extends E> referenceElements_p) {
+      return false;
+    }
+    
     /**
      * Swap the TARGET and REFERENCE scopes.
      * This operation succeeds if and only if the comparison is empty:
@@ -112,4 +112,63 @@ public interface IDiffPolicy<E> {
    */
   boolean coverValue(Object value_p, Object attribute_p, ITreeDataScope<E> scope_p);
   
+  
+  /**
+   * A diff policy which provides keys that are consistent with its equality criteria,
+   * thus allowing values to be matched through hashing instead of pairwise comparisons.
+   * Implementing this interface is optional.
+   */
+  interface Keyed<E> extends IDiffPolicy<E> {
+    /**
+     * Return a key for the given attribute value which is consistent with
+     * considerEqual(Object, Object, Object, ITreeDataScope): two values of the attribute
+     * with non-null keys must be considered equal if and only if their keys are equal
+     * in the sense of Object#equals(Object). Values which are equal in the sense of
+     * Object#equals(Object) must have equal keys.
+     * @see IDiffPolicy#considerEqual(Object, Object, Object, ITreeDataScope)
+     * @param value_p a non-null attribute value
+     * @param attribute_p the non-null attribute concerned
+     * @param scope_p the non-null scope the attribute is from
+     * @return a potentially null object, where null means that no key is available and
+     *         that values of the attribute must be compared through considerEqual(...)
+     */
+    Object getAttributeValueKey(Object value_p, Object attribute_p, ITreeDataScope<E> scope_p);
+    
+    /**
+     * Return a key for the given out-of-scope reference value which is consistent with
+     * considerEqualOutOfScope(Object, Object, Object, ITreeDataScope): two out-of-scope
+     * values of the reference with non-null keys must be considered equal if and only if
+     * their keys are equal in the sense of Object#equals(Object).
+     * @see IDiffPolicy#considerEqualOutOfScope(Object, Object, Object, ITreeDataScope)
+     * @param outOfScopeValue_p the non-null out-of-scope value
+     * @param reference_p the non-null reference concerned
+     * @param scope_p the non-null scope the reference is from
+     * @return a potentially null object, where null means that no key is available and
+     *         that values must be compared through considerEqualOutOfScope(...)
+     */
+    Object getOutOfScopeValueKey(E outOfScopeValue_p, Object reference_p,
+        ITreeDataScope<E> scope_p);
+  }
+  
+  
+  /**
+   * A diff policy which can determine that matched elements are identical without
+   * comparing their contents, typically because they belong to persisted regions
+   * of the models which are known to be identical.
+   * Implementing this interface is optional.
+   */
+  interface RegionAware<E> extends IDiffPolicy<E> {
+    /**
+     * Return whether the given matched elements are known to have identical contents,
+     * in which case the differences on their attributes and references are not
+     * searched for. Differences related to their ownership are still searched for.
+     * @param targetElement_p a non-null element from the TARGET scope
+     * @param targetScope_p the non-null TARGET scope
+     * @param referenceElement_p a non-null element from the REFERENCE scope
+     * @param referenceScope_p the non-null REFERENCE scope
+     */
+    boolean isUnchangedRegion(E targetElement_p, ITreeDataScope<E> targetScope_p,
+        E referenceElement_p, ITreeDataScope<E> referenceScope_p);
+  }
+  
 }
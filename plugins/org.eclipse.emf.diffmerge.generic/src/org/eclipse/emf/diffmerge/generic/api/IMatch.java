@@ -173,6 +173,17 @@ public interface IMatch<E> extends IPureMatch<E> {
      * @see org.eclipse.emf.diffmerge.generic.api.IPureMatch#getMapping()
      */
     IMapping.Editable<E> getMapping();
+    
+    /**
+     * Remove the given difference from the differences related to this match,
+     * if it belongs to them.
+     * This operation is optional: by default, it is not supported.
+     * @param difference_p a non-null difference
+     * @throws UnsupportedOperationException if the operation is not supported
+     */
+    default void removeRelatedDifference(IDifference<E> difference_p) {
+      throw new UnsupportedOperationException();
+    }
   }
   
 }
@@ -12,6 +12,7 @@
 package org.eclipse.emf.diffmerge.generic.api;
 
 import java.util.Comparator;
+import java.util.List;
 
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
 
@@ -67,6 +68,74 @@ public interface IMatchPolicy<E> {
    */
   boolean keepMatchIDs();
   
+  /**
+   * Return whether getMatchID may currently be called concurrently by several threads,
+   * i.e., whether computing a match ID neither modifies shared state nor the elements
+   * of the scopes. If not, match IDs are computed sequentially even if a parallel
+   * computation has been requested.
+   * @see org.eclipse.emf.diffmerge.generic.impl.helpers.MatchOperation#isParallel()
+   */
+  default boolean supportsConcurrentMatchIDs() {
+    return true;
+  }
+  
+  
+  /**
+   * A match policy which may retain data about the elements of the scopes while
+   * match IDs are being computed, for example the match IDs of containers.
+   * Such data is only valid as long as the scopes are not modified, so it is released
+   * before and after every matching phase.
+   * 
+   * @param <E> The type of data elements.
+   */
+  interface WithMemo<E> extends IMatchPolicy<E> {
+    
+    /**
+     * Release all data about the elements of the scopes that has been retained so far
+     */
+    void clearMemo();
+    
+  }
+  
+  
+  /**
+   * A match policy which can retrieve the match IDs of all the elements of a scope
+   * from a persistent cache, so that the match IDs of a scope whose contents have not
+   * changed, e.g., the same baseline revision compared repeatedly, are computed once.
+   * Cached match IDs must be those that getMatchID would return for the same elements.
+   * 
+   * @param <E> The type of data elements.
+   */
+  interface WithScopeCache<E> extends IMatchPolicy<E> {
+    
+    /**
+     * Store the given match IDs of the elements of the given scope in the cache,
+     * if applicable
+     * @param elements_p the non-null list of all the elements of the given scope
+     *          in iteration order
+     * @param scope_p a non-null scope
+     * @param matchIDs_p a non-null array of potentially null match IDs whose indexes
+     *          correspond to those of the elements
+     */
+    void cacheMatchIDs(List<E> elements_p, ITreeDataScope<E> scope_p, Object[] matchIDs_p);
+    
+    /**
+     * Return the cached match IDs of the elements of the given scope, if any
+     * @param elements_p the non-null list of all the elements of the given scope
+     *          in iteration order
+     * @param scope_p a non-null scope
+     * @return an array of potentially null match IDs whose indexes correspond to those
+     *         of the elements, or null if the match IDs are not cached
+     */
+    Object[] getCachedMatchIDs(List<E> elements_p, ITreeDataScope<E> scope_p);
+    
+    /**
+     * Return whether the scope cache must currently be used
+     */
+    boolean useScopeCache();
+    
+  }
+  
   
   /**
    * A simple comparator that is solely based on the natural order of objects
@@ -112,6 +112,17 @@ public interface IMergeableDifference<E> extends IDifference<E> {
      * @param role_p a non-null role which is TARGET or REFERENCE
      */
     void markRequires(IMergeableDifference<E> difference_p, Role role_p);
+    
+    /**
+     * Remove the given difference from the direct dependencies of this difference,
+     * whatever their kind and role, if it belongs to them.
+     * This operation is optional: by default, it is not supported.
+     * @param difference_p a non-null difference
+     * @throws UnsupportedOperationException if the operation is not supported
+     */
+    default void unmarkDependency(IMergeableDifference<E> difference_p) {
+      throw new UnsupportedOperationException();
+    }
   }
   
 }
@@ -13,12 +13,14 @@ package org.eclipse.emf.diffmerge.generic.gdiffdata.impl;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -38,6 +40,7 @@ import org.eclipse.emf.diffmerge.generic.api.IMergePolicy;
 import org.eclipse.emf.diffmerge.generic.api.IMergeSelector;
 import org.eclipse.emf.diffmerge.generic.api.Role;
 import org.eclipse.emf.diffmerge.generic.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference;
 import org.eclipse.emf.diffmerge.generic.api.scopes.IEditableTreeDataScope;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
 import org.eclipse.emf.diffmerge.generic.gdiffdata.GComparison;
@@ -52,8 +55,9 @@ import org.eclipse.emf.diffmerge.generic.impl.policies.DefaultMergePolicy;
 import org.eclipse.emf.diffmerge.generic.util.IExpensiveOperation;
 import org.eclipse.emf.diffmerge.structures.IEqualityTester;
 import org.eclipse.emf.diffmerge.structures.common.FArrayList;
+import org.eclipse.emf.diffmerge.structures.common.FHashOrderedSet;
 import org.eclipse.emf.diffmerge.structures.common.FHashSet;
-import org.eclipse.emf.diffmerge.structures.common.FOrderedSet;
+import org.eclipse.emf.diffmerge.structures.endo.CondensedEndorelation;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
@@ -155,6 +159,34 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
    */
   private final Map<Role, Set<Object>> _duplicateIDs;
 
+  /**
+   * The non-null map from roles to the explicit dependencies between the differences
+   * of this comparison, computed on demand
+   * @generated NOT
+   */
+  private final Map<Role, CondensedEndorelation<IMergeableDifference<E>>> _explicitDependencies;
+
+  /**
+   * The non-null map from roles to the implicit dependencies between the differences
+   * of this comparison, computed on demand
+   * @generated NOT
+   */
+  private final Map<Role, CondensedEndorelation<IMergeableDifference<E>>> _implicitDependencies;
+
+  /**
+   * The number of times dependencies between differences have changed, so that
+   * differences can tell whether the closures of their dependencies are up to date.
+   * It is a lock-free stamp since it changes whenever a dependency is marked.
+   * @generated NOT
+   */
+  private final AtomicInteger _dependencyVersion;
+
+  /**
+   * The version of the dependencies on which the cached relations are based
+   * @generated NOT
+   */
+  private int _cachedDependencyVersion;
+
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
@@ -167,6 +199,12 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
       duplicateIDs.put(role, new HashSet<Object>(0));
     }
     _duplicateIDs = Collections.unmodifiableMap(duplicateIDs);
+    _explicitDependencies = new EnumMap<Role, CondensedEndorelation<IMergeableDifference<E>>>(
+        Role.class);
+    _implicitDependencies = new EnumMap<Role, CondensedEndorelation<IMergeableDifference<E>>>(
+        Role.class);
+    _dependencyVersion = new AtomicInteger(0);
+    _cachedDependencyVersion = 0;
   }
 
   /**
@@ -574,6 +612,7 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
     for (Role role : Role.values()) {
       _duplicateIDs.get(role).clear();
     }
+    invalidateDependencies();
   }
 
   /**
@@ -583,6 +622,29 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
   public IStatus compute(IMatchPolicy<E> matchPolicy_p,
       IDiffPolicy<E> diffPolicy_p, IMergePolicy<E> mergePolicy_p,
       IProgressMonitor monitor_p) {
+    return compute(matchPolicy_p, diffPolicy_p, mergePolicy_p, false,
+        monitor_p);
+  }
+
+  /**
+   * Compute this comparison according to the given policies, possibly distributing
+   * the computation over several threads.
+   * A parallel computation produces the same result as a sequential one, but it
+   * requires the given policies and the scopes of this comparison to support
+   * concurrent calls to their query operations.
+   * Postcondition: if result.isOk() then getLastMergePolicy() != null
+   * @see IComparison#compute(IMatchPolicy, IDiffPolicy, IMergePolicy, IProgressMonitor)
+   * @param matchPolicy_p an optional match policy (null stands for default)
+   * @param diffPolicy_p an optional diff policy (null stands for default)
+   * @param mergePolicy_p an optional merge policy (null stands for default)
+   * @param parallel_p whether the computation may use several threads
+   * @param monitor_p an optional progress monitor
+   * @return a non-null status of the execution
+   * @generated NOT
+   */
+  public IStatus compute(IMatchPolicy<E> matchPolicy_p,
+      IDiffPolicy<E> diffPolicy_p, IMergePolicy<E> mergePolicy_p,
+      boolean parallel_p, IProgressMonitor monitor_p) {
     // Monitor
     IProgressMonitor nonNullMonitor = monitor_p != null ? monitor_p
         : new NullProgressMonitor();
@@ -596,10 +658,11 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
     setLastMergePolicy(
         mergePolicy_p != null ? mergePolicy_p : getDefaultMergePolicy());
     // Behavior
-    IStatus result = computeMatch(getLastMatchPolicy(), subMonitor.newChild(1));
+    IStatus result = computeMatch(getLastMatchPolicy(), parallel_p,
+        subMonitor.newChild(1));
     if (result.isOK()) {
       result = computeDiff(getLastDiffPolicy(), getLastMergePolicy(),
-          subMonitor.newChild(1));
+          parallel_p, subMonitor.newChild(1));
     }
     return result;
   }
@@ -613,8 +676,21 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
    */
   protected IStatus computeMatch(IMatchPolicy<E> matchPolicy_p,
       IProgressMonitor monitor_p) {
+    return computeMatch(matchPolicy_p, false, monitor_p);
+  }
+
+  /**
+   * Execute the Match phase of the comparison process
+   * @param matchPolicy_p a non-null match policy
+   * @param parallel_p whether the Match phase may use several threads
+   * @param monitor_p a non-null progress monitor
+   * @return a non-null status of the execution
+   * @generated NOT
+   */
+  protected IStatus computeMatch(IMatchPolicy<E> matchPolicy_p,
+      boolean parallel_p, IProgressMonitor monitor_p) {
     IExpensiveOperation matchOperation = getMatchOperation(matchPolicy_p,
-        _duplicateIDs);
+        _duplicateIDs, parallel_p);
     IStatus result = matchOperation.run(monitor_p);
     return result;
   }
@@ -629,8 +705,24 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
    */
   protected IStatus computeDiff(IDiffPolicy<E> diffPolicy_p,
       IMergePolicy<E> mergePolicy_p, IProgressMonitor monitor_p) {
+    return computeDiff(diffPolicy_p, mergePolicy_p, false, monitor_p);
+  }
+
+  /**
+   * Execute the Diff phase of the comparison process
+   * @param diffPolicy_p a non-null diff policy
+   * @param mergePolicy_p a non-null merge policy
+   * @param parallel_p whether the Diff phase may use several threads
+   * @param monitor_p a non-null progress monitor
+   * @return a non-null status of the execution
+   * @generated NOT
+   */
+  protected IStatus computeDiff(IDiffPolicy<E> diffPolicy_p,
+      IMergePolicy<E> mergePolicy_p, boolean parallel_p,
+      IProgressMonitor monitor_p) {
+    invalidateDependencies();
     IExpensiveOperation diffOperation = getDiffOperation(diffPolicy_p,
-        mergePolicy_p);
+        mergePolicy_p, parallel_p);
     IStatus result = diffOperation.run(monitor_p);
     return result;
   }
@@ -683,10 +775,10 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
   public List<IMatch<E>> getContents() {
     List<IMatch<E>> targetMatches = getContents(Role.TARGET);
     List<IMatch<E>> referenceMatches = getContents(Role.REFERENCE);
-    List<IMatch<E>> result = new FArrayList<IMatch<E>>(referenceMatches, null);
+    List<IMatch<E>> result = new FHashOrderedSet<IMatch<E>>(referenceMatches,
+        null);
     for (IMatch<E> targetMatch : targetMatches) {
-      if (!result.contains(targetMatch))
-        result.add(targetMatch);
+      result.add(targetMatch);
     }
     return Collections.unmodifiableList(result);
   }
@@ -715,7 +807,8 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
   public List<IMatch<E>> getContentsOf(IMatch<E> match_p) {
     List<IMatch<E>> targetMatches = getContentsOf(match_p, Role.TARGET);
     List<IMatch<E>> referenceMatches = getContentsOf(match_p, Role.REFERENCE);
-    List<IMatch<E>> result = new FOrderedSet<IMatch<E>>(referenceMatches, null);
+    List<IMatch<E>> result = new FHashOrderedSet<IMatch<E>>(referenceMatches,
+        null);
     for (IMatch<E> targetMatch : targetMatches) {
       result.add(targetMatch);
     }
@@ -773,6 +866,57 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
     return new DefaultMergePolicy<E>();
   }
 
+  /**
+   * Return the dependencies of the given kind between the differences of this comparison
+   * on the given side, as a relation whose transitive closures are derived from its
+   * strongly connected components. The relation is computed once for all differences
+   * and reused until dependencies change.
+   * @param role_p TARGET or REFERENCE
+   * @param isExplicit_p whether explicit ("requires") or implicit ("implies") dependencies are concerned
+   * @return a non-null relation
+   * @generated NOT
+   */
+  public synchronized CondensedEndorelation<IMergeableDifference<E>> getDependencies(
+      Role role_p, boolean isExplicit_p) {
+    int version = _dependencyVersion.get();
+    if (version != _cachedDependencyVersion) {
+      // Dependencies have changed since the relations were computed
+      _explicitDependencies.clear();
+      _implicitDependencies.clear();
+      _cachedDependencyVersion = version;
+    }
+    Map<Role, CondensedEndorelation<IMergeableDifference<E>>> cache = isExplicit_p
+        ? _explicitDependencies
+        : _implicitDependencies;
+    CondensedEndorelation<IMergeableDifference<E>> result = cache.get(role_p);
+    if (result == null) {
+      List<IMergeableDifference<E>> differences = new FArrayList<IMergeableDifference<E>>(
+          IEqualityTester.BY_REFERENCE);
+      for (IMatch<E> match : getMapping().getContents()) {
+        for (IDifference<E> difference : match.getAllDifferences()) {
+          if (difference instanceof IMergeableDifference<?>) {
+            differences.add((IMergeableDifference<E>) difference);
+          }
+        }
+      }
+      result = new CondensedEndorelation<IMergeableDifference<E>>(differences,
+          new GMergeableDifferenceImpl.DifferenceDependencyRelation<E>(role_p,
+              isExplicit_p));
+      cache.put(role_p, result);
+    }
+    return result;
+  }
+
+  /**
+   * Return a number which changes whenever dependencies between the differences of this
+   * comparison change, so that cached closures of dependencies can be discarded
+   * @see #invalidateDependencies()
+   * @generated NOT
+   */
+  public int getDependencyVersion() {
+    return _dependencyVersion.get();
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IComparison#getDifferences(org.eclipse.emf.diffmerge.generic.api.Role)
    * @generated NOT
@@ -797,6 +941,25 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
     return new DiffOperation<E>(this, diffPolicy_p, mergePolicy_p);
   }
 
+  /**
+   * Return an operation for executing the Diff phase.
+   * The operation is obtained from getDiffOperation(IDiffPolicy, IMergePolicy) so that
+   * overrides are honored, then it is configured for parallelism if it supports it.
+   * @param diffPolicy_p an optional diff policy
+   * @param mergePolicy_p an optional merge policy
+   * @param parallel_p whether the operation may use several threads
+   * @return a non-null operation which is configured to be applied on the given comparison data
+   * @generated NOT
+   */
+  protected IExpensiveOperation getDiffOperation(IDiffPolicy<E> diffPolicy_p,
+      IMergePolicy<E> mergePolicy_p, boolean parallel_p) {
+    IExpensiveOperation result = getDiffOperation(diffPolicy_p, mergePolicy_p);
+    if (parallel_p && result instanceof DiffOperation<?>) {
+      ((DiffOperation<?>)result).setParallel(true);
+    }
+    return result;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IComparison#getDuplicateMatchIDs(org.eclipse.emf.diffmerge.generic.api.Role)
    * @generated NOT
@@ -817,6 +980,26 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
     return new MatchOperation<E>(this, policy_p, duplicateIDs_p);
   }
 
+  /**
+   * Return an operation for executing the Match phase
+   * @param policy_p a non-null match policy
+   * @param duplicateIDs_p a non-null map that associates each role with an empty,
+   *          modifiable set of duplicate match IDs
+   * @param parallel_p whether the operation may use several threads
+   * @return a non-null operation which is configured to be applied on the given comparison data
+   * @generated NOT
+   */
+  protected IExpensiveOperation getMatchOperation(IMatchPolicy<E> policy_p,
+      Map<Role, Set<Object>> duplicateIDs_p, boolean parallel_p) {
+    IExpensiveOperation result;
+    if (parallel_p) {
+      result = new MatchOperation<E>(this, policy_p, duplicateIDs_p, true);
+    } else {
+      result = getMatchOperation(policy_p, duplicateIDs_p);
+    }
+    return result;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IComparison#getNbDifferences()
    * @generated NOT
@@ -890,6 +1073,19 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
     return false;
   }
 
+  /**
+   * Discard the dependencies between differences which have been computed so far,
+   * if any, because differences or their dependencies have changed.
+   * This method does not lock the comparison, so it can be called at no significant
+   * cost whenever a dependency is marked, including from several threads: the relations
+   * are actually discarded at the next call to getDependencies(Role, boolean).
+   * @see #getDependencies(Role, boolean)
+   * @generated NOT
+   */
+  public void invalidateDependencies() {
+    _dependencyVersion.incrementAndGet();
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IComparison#isConsistent()
    * @generated NOT
@@ -946,8 +1142,26 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
    */
   public Collection<IDifference<E>> merge(IMergeSelector<E> merger_p,
       boolean updateReferences_p, IProgressMonitor monitor_p) {
+    return merge(merger_p, updateReferences_p, false, monitor_p);
+  }
+
+  /**
+   * Merge the differences selected by the given merger, possibly in batch mode.
+   * In batch mode, the selected differences are merged in a single pass where every
+   * difference comes after the differences it requires.
+   * @see IComparison#merge(IMergeSelector, boolean, IProgressMonitor)
+   * @see MergeOperation#MergeOperation(IComparison, IMergeSelector, boolean, boolean)
+   * @param merger_p a non-null merge selector
+   * @param updateReferences_p whether references of the elements added must be set
+   * @param batch_p whether the merge must be performed in batch mode
+   * @param monitor_p an optional progress monitor
+   * @return a non-null, potentially empty, unmodifiable set of the differences which have actually been merged
+   * @generated NOT
+   */
+  public Collection<IDifference<E>> merge(IMergeSelector<E> merger_p,
+      boolean updateReferences_p, boolean batch_p, IProgressMonitor monitor_p) {
     MergeOperation<E> operation = new MergeOperation<E>(this, merger_p,
-        updateReferences_p);
+        updateReferences_p, batch_p);
     operation.run(monitor_p);
     return operation.getOutput();
   }
@@ -959,6 +1173,28 @@ public abstract class GComparisonImpl<E, A, R> extends GIdentifiedImpl
    */
   protected abstract GMapping<E, A, R> newMapping();
 
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IComparison.Editable#recompute(java.util.Collection, java.util.Collection)
+   * @generated NOT
+   */
+  @SuppressWarnings("unchecked")
+  public boolean recompute(Collection<? extends E> targetElements_p,
+      Collection<? extends E> referenceElements_p) {
+    boolean result = false;
+    if (getLastDiffPolicy() != null && getLastMergePolicy() != null) {
+      IExpensiveOperation diffOperation = getDiffOperation(getLastDiffPolicy(),
+          getLastMergePolicy(), false);
+      if (diffOperation instanceof DiffOperation<?>) {
+        result = ((DiffOperation<E>) diffOperation).recompute(targetElements_p,
+            referenceElements_p, getLastMatchPolicy());
+        if (result) {
+          invalidateDependencies();
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IComparison.Editable#swapScopes()
    * @generated NOT
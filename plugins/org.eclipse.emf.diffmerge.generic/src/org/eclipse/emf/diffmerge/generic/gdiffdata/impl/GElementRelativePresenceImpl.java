@@ -296,7 +296,12 @@ public abstract class GElementRelativePresenceImpl<E, A, R>
    */
   @Override
   public GComparison<E, A, R> getComparison() {
-    return getElementMatch().getComparison();
+    GComparison<E, A, R> result = null;
+    GMatch<E, A, R> match = getElementMatch();
+    if (match != null) {
+      result = match.getComparison();
+    }
+    return result;
   }
 
   /**
@@ -1052,6 +1052,78 @@ public abstract class GMatchImpl<E, A, R> extends GIdentifiedImpl
   protected abstract EMap<E, IReferenceValuePresence<E>> newReferenceValueToPresenceMap(
       R reference_p);
 
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IMatch.Editable#removeRelatedDifference(org.eclipse.emf.diffmerge.generic.api.diff.IDifference)
+   * @generated NOT
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public void removeRelatedDifference(IDifference<E> difference_p) {
+    List<GMergeableDifference<E, A, R>> differences = getModifiableRelatedDifferences(
+        false);
+    if (differences == null || !differences.remove(difference_p)) {
+      return;
+    }
+    if (difference_p instanceof IElementPresence) {
+      if (getElementPresenceDifference() == difference_p) {
+        setElementPresenceDifference(null);
+      }
+    } else if (difference_p instanceof IReferenceValuePresence) {
+      IReferenceValuePresence<E> presence = (IReferenceValuePresence<E>) difference_p;
+      if (presence.isOrder()) {
+        // Order ref difference
+        EMap<R, EList<IReferenceValuePresence<E>>> referenceMap = (EMap) getModifiableOrderReferenceMap(
+            false);
+        if (referenceMap != null) {
+          List<IReferenceValuePresence<E>> forReference = referenceMap
+              .get(presence.getFeature());
+          if (forReference != null && forReference.remove(presence)
+              && forReference.isEmpty()) {
+            referenceMap.removeKey(presence.getFeature());
+          }
+        }
+      } else {
+        // Non-order ref difference
+        EMap<R, EMap<E, IReferenceValuePresence<E>>> referenceMap = (EMap) getModifiableReferenceMap(
+            false);
+        if (referenceMap != null) {
+          EMap<E, IReferenceValuePresence<E>> forReference = referenceMap
+              .get(presence.getFeature());
+          if (forReference != null
+              && forReference.get(presence.getValue()) == presence) {
+            forReference.removeKey(presence.getValue());
+            if (forReference.isEmpty()) {
+              referenceMap.removeKey(presence.getFeature());
+            }
+          }
+        }
+        // If relevant, unregister implicit universal container reference on value
+        IMatch<E> valueMatch = presence.getValueMatch();
+        if (presence.isOwnership() && valueMatch instanceof GMatchImpl<?, ?, ?>
+            && valueMatch.getOwnershipDifference(
+                presence.getPresenceRole()) == presence) {
+          GMatchImpl<E, A, R> gValueMatch = (GMatchImpl<E, A, R>) valueMatch;
+          if (Role.TARGET == presence.getPresenceRole()) {
+            gValueMatch.setTargetOwnershipDifference(null);
+          } else {
+            gValueMatch.setReferenceOwnershipDifference(null);
+          }
+        }
+      }
+    } else if (difference_p instanceof IAttributeValuePresence<?>) {
+      IAttributeValuePresence<E> presence = (IAttributeValuePresence<E>) difference_p;
+      EMap<A, EList<IAttributeValuePresence<E>>> attributeMap = (EMap) getModifiableAttributeMap(
+          false);
+      if (attributeMap != null) {
+        List<IAttributeValuePresence<E>> forAttribute = attributeMap
+            .get(presence.getFeature());
+        if (forAttribute != null && forAttribute.remove(presence)
+            && forAttribute.isEmpty()) {
+          attributeMap.removeKey(presence.getFeature());
+        }
+      }
+    }
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IPureMatch.Editable#set(org.eclipse.emf.diffmerge.generic.api.Role, java.lang.Object)
    * @generated NOT
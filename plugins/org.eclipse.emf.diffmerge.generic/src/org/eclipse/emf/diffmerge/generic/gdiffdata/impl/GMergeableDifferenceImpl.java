@@ -11,6 +11,7 @@
  **********************************************************************/
 package org.eclipse.emf.diffmerge.generic.gdiffdata.impl;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -29,8 +30,8 @@ import org.eclipse.emf.diffmerge.structures.IEqualityBasedStructure;
 import org.eclipse.emf.diffmerge.structures.IEqualityTester;
 import org.eclipse.emf.diffmerge.structures.common.FArrayList;
 import org.eclipse.emf.diffmerge.structures.common.FHashSet;
-import org.eclipse.emf.diffmerge.structures.common.FLinkedList;
 import org.eclipse.emf.diffmerge.structures.endo.AbstractEndorelation;
+import org.eclipse.emf.diffmerge.structures.endo.IEndorelation;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 import org.eclipse.emf.ecore.util.EDataTypeUniqueEList;
@@ -191,29 +192,48 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
   protected EList<IMergeableDifference<E>> implicitDependenciesForReference;
 
   /**
-   * The set of all implicit dependencies on the TARGET side (initially null, assigned once)
+   * The set of all implicit dependencies on the TARGET side (initially null, reset when
+   * dependencies change)
    * @generated NOT
    */
   private transient Collection<IMergeableDifference<E>> _allImplicitDependenciesTarget;
 
   /**
-   * The set of all implicit dependencies on the REFERENCE side (initially null, assigned once)
+   * The set of all implicit dependencies on the REFERENCE side (initially null, reset when
+   * dependencies change)
    * @generated NOT
    */
   private transient Collection<IMergeableDifference<E>> _allImplicitDependenciesReference;
 
   /**
-   * The set of all explicit dependencies on the TARGET side (initially null, assigned once)
+   * The set of all explicit dependencies on the TARGET side (initially null, reset when
+   * dependencies change)
    * @generated NOT
    */
   private transient Collection<IMergeableDifference<E>> _allExplicitDependenciesTarget;
 
   /**
-   * The set of all explicit dependencies on the REFERENCE side (initially null, assigned once)
+   * The set of all explicit dependencies on the REFERENCE side (initially null, reset when
+   * dependencies change)
    * @generated NOT
    */
   private transient Collection<IMergeableDifference<E>> _allExplicitDependenciesReference;
 
+  /**
+   * The version of the dependencies of the comparison on which the sets of all
+   * dependencies are based
+   * @see GComparisonImpl#getDependencyVersion()
+   * @generated NOT
+   */
+  private transient int _dependencyVersion;
+
+  /**
+   * The differences which have this difference among their direct dependencies
+   * (initially null)
+   * @generated NOT
+   */
+  private transient Collection<IMergeableDifference<E>> _directDependents;
+
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
@@ -235,6 +255,7 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
     _allImplicitDependenciesReference = null;
     _allExplicitDependenciesTarget = null;
     _allExplicitDependenciesReference = null;
+    _dependencyVersion = 0;
     if (!deferInit_p) {
       getPossibleMergeDestinations().add(Role.TARGET);
       getPossibleMergeDestinations().add(Role.REFERENCE);
@@ -621,6 +642,22 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
           Messages.AbstractDifference_UnableToMerge + ": " + toString()); //$NON-NLS-1$
   }
 
+  /**
+   * Discard the sets of all dependencies of this difference if dependencies between
+   * the differences of the comparison have changed since they were computed
+   * @generated NOT
+   */
+  protected void checkDependencyVersion() {
+    GComparison<E, A, R> comparison = getComparison();
+    int version = (comparison instanceof GComparisonImpl<?, ?, ?>)
+        ? ((GComparisonImpl<E, A, R>) comparison).getDependencyVersion()
+        : 0;
+    if (version != _dependencyVersion) {
+      resetDependencyClosures();
+      _dependencyVersion = version;
+    }
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference.Editable#doMergeIn(org.eclipse.emf.diffmerge.generic.api.Role)
    * @generated NOT
@@ -639,6 +676,23 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
     }
   }
 
+  /**
+   * Return the differences which have this difference among their direct dependencies,
+   * whatever their kind and role. Only dependencies which have been set through
+   * markRequires and markImplies are taken into account.
+   * @return a non-null, potentially empty, unmodifiable collection
+   * @generated NOT
+   */
+  public Collection<IMergeableDifference<E>> getDirectDependents() {
+    Collection<IMergeableDifference<E>> result;
+    if (_directDependents == null) {
+      result = Collections.emptyList();
+    } else {
+      result = Collections.unmodifiableCollection(_directDependents);
+    }
+    return result;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference#getDirectImpliesDependencies(org.eclipse.emf.diffmerge.generic.api.Role)
    * @generated NOT
@@ -739,12 +793,34 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
         : implicitDependenciesForTarget;
   }
 
+  /**
+   * Return the relation that defines the dependencies of the given kind on the given side
+   * @param role_p TARGET or REFERENCE
+   * @param isExplicit_p whether explicit ("requires") or implicit ("implies") dependencies are concerned
+   * @return a non-null relation
+   * @generated NOT
+   */
+  protected IEndorelation<IMergeableDifference<E>> getDependencies(Role role_p,
+      boolean isExplicit_p) {
+    IEndorelation<IMergeableDifference<E>> result;
+    GComparison<E, A, R> comparison = getComparison();
+    if (comparison instanceof GComparisonImpl<?, ?, ?>) {
+      // Shared relation with precomputed closures
+      result = ((GComparisonImpl<E, A, R>) comparison).getDependencies(role_p,
+          isExplicit_p);
+    } else {
+      result = new DifferenceDependencyRelation<E>(role_p, isExplicit_p);
+    }
+    return result;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference#getImpliesDependencies(org.eclipse.emf.diffmerge.generic.api.Role)
    * @generated NOT
    */
   public final Collection<IMergeableDifference<E>> getImpliesDependencies(
       Role role_p) {
+    checkDependencyVersion();
     Collection<IMergeableDifference<E>> result = (role_p == Role.TARGET)
         ? _allImplicitDependenciesTarget
         : _allImplicitDependenciesReference;
@@ -755,8 +831,7 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
           required.size() + 1, null);
       allRequired.add(this);
       allRequired.addAll(required);
-      result = new DifferenceDependencyRelation<E>(role_p, false)
-          .getTransitiveClosure(allRequired);
+      result = getDependencies(role_p, false).getTransitiveClosure(allRequired);
       if (role_p == Role.TARGET) {
         _allImplicitDependenciesTarget = result;
       } else {
@@ -772,12 +847,13 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
    */
   public final Collection<IMergeableDifference<E>> getRequiresDependencies(
       Role role_p) {
+    checkDependencyVersion();
     Collection<IMergeableDifference<E>> result = (role_p == Role.TARGET)
         ? _allExplicitDependenciesTarget
         : _allExplicitDependenciesReference;
     if (result == null) {
-      result = reduceByImplies(new DifferenceDependencyRelation<E>(role_p, true)
-          .getTransitiveClosure(this), role_p);
+      result = reduceByImplies(
+          getDependencies(role_p, true).getTransitiveClosure(this), role_p);
       if (role_p == Role.TARGET) {
         _allExplicitDependenciesTarget = result;
       } else {
@@ -787,6 +863,17 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
     return result;
   }
 
+  /**
+   * Notify the comparison that dependencies between differences have changed
+   * @generated NOT
+   */
+  protected void invalidateDependencies() {
+    GComparison<E, A, R> comparison = getComparison();
+    if (comparison instanceof GComparisonImpl<?, ?, ?>) {
+      ((GComparisonImpl<E, A, R>) comparison).invalidateDependencies();
+    }
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.diff.IDifference#isMerged()
    * @generated NOT
@@ -879,6 +966,8 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
     }
     if (!toChange.contains(difference_p)) {
       toChange.add(difference_p);
+      setDirectDependent(difference_p, true);
+      invalidateDependencies();
     }
   }
 
@@ -898,6 +987,30 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
     }
     if (!toChange.contains(difference_p)) {
       toChange.add(difference_p);
+      setDirectDependent(difference_p, true);
+      invalidateDependencies();
+    }
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference.Editable#unmarkDependency(org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference)
+   * @generated NOT
+   */
+  public final void unmarkDependency(IMergeableDifference<E> difference_p) {
+    boolean changed = false;
+    for (List<IMergeableDifference<E>> dependencies : Arrays.asList(
+        getExplicitDependenciesForTarget(false),
+        getExplicitDependenciesForReference(false),
+        getImplicitDependenciesForTarget(false),
+        getImplicitDependenciesForReference(false))) {
+      if (dependencies != null) {
+        changed = dependencies.remove(difference_p) || changed;
+      }
+    }
+    if (changed) {
+      setDirectDependent(difference_p, false);
+      resetDependencyClosures();
+      invalidateDependencies();
     }
   }
 
@@ -914,14 +1027,58 @@ public abstract class GMergeableDifferenceImpl<E, A, R> extends GIdentifiedImpl
     IEqualityTester tester = (originalCollection_p instanceof IEqualityBasedStructure)
         ? ((IEqualityBasedStructure) originalCollection_p).getEqualityTester()
         : null;
-    List<IMergeableDifference<E>> result = new FLinkedList<IMergeableDifference<E>>(
-        originalCollection_p, tester);
+    Collection<IMergeableDifference<E>> implied = new FHashSet<IMergeableDifference<E>>(
+        tester);
+    for (IMergeableDifference<E> difference : originalCollection_p) {
+      implied.addAll(difference.getDirectImpliesDependencies(role_p));
+    }
+    List<IMergeableDifference<E>> result = new FArrayList<IMergeableDifference<E>>(
+        originalCollection_p.size(), tester);
     for (IMergeableDifference<E> difference : originalCollection_p) {
-      result.removeAll(difference.getDirectImpliesDependencies(role_p));
+      if (!implied.contains(difference)) {
+        result.add(difference);
+      }
     }
     return result;
   }
 
+  /**
+   * Discard the sets of all dependencies of this difference so that they are computed
+   * again when needed
+   * @generated NOT
+   */
+  protected void resetDependencyClosures() {
+    _allImplicitDependenciesTarget = null;
+    _allImplicitDependenciesReference = null;
+    _allExplicitDependenciesTarget = null;
+    _allExplicitDependenciesReference = null;
+  }
+
+  /**
+   * Register or unregister this difference as having the given difference among its
+   * direct dependencies
+   * @param dependency_p a non-null difference
+   * @param isDependent_p whether this difference must be registered or unregistered
+   * @generated NOT
+   */
+  protected void setDirectDependent(IMergeableDifference<E> dependency_p,
+      boolean isDependent_p) {
+    if (dependency_p instanceof GMergeableDifferenceImpl<?, ?, ?>) {
+      GMergeableDifferenceImpl<E, ?, ?> dependency =
+          (GMergeableDifferenceImpl<E, ?, ?>) dependency_p;
+      if (isDependent_p) {
+        if (dependency._directDependents == null) {
+          dependency._directDependents = new FHashSet<IMergeableDifference<E>>(
+              IEqualityTester.BY_REFERENCE);
+        }
+        dependency._directDependents.add(this);
+      } else if (dependency._directDependents != null) {
+        dependency._directDependents.remove(this);
+      }
+    }
+  }
+
+
   /**
    * A definition of inter-difference dependencies as a mathematical binary relation
    * over differences.
@@ -15,22 +15,35 @@ package org.eclipse.emf.diffmerge.generic.impl.helpers;
 import static org.eclipse.emf.diffmerge.generic.api.Role.ANCESTOR;
 import static org.eclipse.emf.diffmerge.generic.api.Role.REFERENCE;
 import static org.eclipse.emf.diffmerge.generic.api.Role.TARGET;
-import static org.eclipse.emf.diffmerge.structures.IEqualityTester.BY_REFERENCE;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.emf.diffmerge.generic.Messages;
 import org.eclipse.emf.diffmerge.generic.api.IComparison;
 import org.eclipse.emf.diffmerge.generic.api.IDiffPolicy;
 import org.eclipse.emf.diffmerge.generic.api.IMapping;
 import org.eclipse.emf.diffmerge.generic.api.IMatch;
+import org.eclipse.emf.diffmerge.generic.api.IMatchPolicy;
 import org.eclipse.emf.diffmerge.generic.api.IMergePolicy;
 import org.eclipse.emf.diffmerge.generic.api.Role;
 import org.eclipse.emf.diffmerge.generic.api.diff.IAttributeValuePresence;
@@ -41,6 +54,7 @@ import org.eclipse.emf.diffmerge.generic.api.diff.IReferenceValuePresence;
 import org.eclipse.emf.diffmerge.generic.api.diff.IValuePresence;
 import org.eclipse.emf.diffmerge.generic.api.scopes.IEditableTreeDataScope;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
+import org.eclipse.emf.diffmerge.generic.gdiffdata.impl.GMergeableDifferenceImpl;
 import org.eclipse.emf.diffmerge.structures.IEqualityTester;
 import org.eclipse.emf.diffmerge.structures.common.FArrayList;
 
@@ -69,6 +83,32 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
   /** Whether the scope on the TARGET side is read-only */
   protected final boolean _isTargetScopeReadOnly;
   
+  /** Whether the detection of differences may be distributed over several threads */
+  protected boolean _parallel;
+  
+  /** The differences detected by the current thread which are recorded instead of
+      being created, or null if differences must be created as soon as detected */
+  private final ThreadLocal<List<PendingDifference>> _pendingDifferences;
+  
+  /** Whether the parallel detection of differences must stop */
+  private volatile boolean _isDetectionCanceled;
+  
+  /** Whether detectReferenceValueAmong(...) is overridden, in which case reference values
+      are always matched through it */
+  private final boolean _isReferenceValueDetectionOverridden;
+  
+  /** The maximum number of matches handled by a single parallel detection task */
+  protected static final int PARALLEL_DETECTION_THRESHOLD = 512;
+  
+  /** The number of milliseconds between checks of progress during parallel detection */
+  protected static final long PARALLEL_DETECTION_POLLING_PERIOD = 100;
+  
+  /** The number of pairs of attribute values above which values are matched through keys if possible */
+  protected static final int KEY_BASED_MATCHING_THRESHOLD = 64;
+  
+  /** The number of values of a reference above which they are indexed for matching */
+  protected static final int REFERENCE_INDEX_THRESHOLD = 16;
+  
   
   /**
    * Constructor based on a comparison with a predefined mapping
@@ -78,12 +118,33 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
    */
   public DiffOperation(IComparison.Editable<E> comparison_p, IDiffPolicy<E> diffPolicy_p,
       IMergePolicy<E> mergePolicy_p) {
+    this(comparison_p, diffPolicy_p, mergePolicy_p, false);
+  }
+  
+  /**
+   * Constructor based on a comparison with a predefined mapping.
+   * If parallel computation is requested, then the diff policy and the scopes of the
+   * comparison must support concurrent calls to their query operations: in particular,
+   * the values of the references of the scopes should not require proxy resolution.
+   * @param comparison_p a non-null comparison whose mapping is already built
+   * @param diffPolicy_p a non-null diff policy
+   * @param mergePolicy_p a non-null merge policy
+   * @param parallel_p whether the detection of differences may be distributed over
+   *          several threads
+   */
+  public DiffOperation(IComparison.Editable<E> comparison_p, IDiffPolicy<E> diffPolicy_p,
+      IMergePolicy<E> mergePolicy_p, boolean parallel_p) {
     super();
     _comparison = comparison_p;
     _diffPolicy = diffPolicy_p;
     _mergePolicy = mergePolicy_p;
     _isReferenceScopeReadOnly = getComparison().getScope(REFERENCE).isReadOnly();
     _isTargetScopeReadOnly = getComparison().getScope(TARGET).isReadOnly();
+    _parallel = parallel_p;
+    _pendingDifferences = new ThreadLocal<List<PendingDifference>>();
+    _isDetectionCanceled = false;
+    _isReferenceValueDetectionOverridden = isOverridden("detectReferenceValueAmong", //$NON-NLS-1$
+        Object.class, Object.class, List.class, boolean.class, ITreeDataScope.class);
   }
   
   /**
@@ -152,12 +213,76 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
    * Create differences based on the mapping between the model scopes compared
    */
   protected void createDifferences() {
-    for (IMatch<E> match : getMapping().getContents()) {
+    if (isParallel()) {
+      createDifferencesInParallel();
+    } else {
+      for (IMatch<E> match : getMapping().getContents()) {
+        checkProgress();
+        if (getDiffPolicy().coverMatch(match)) {
+          createTechnicalDifferences(match);
+        }
+        getMonitor().worked(1);
+      }
+    }
+  }
+  
+  /**
+   * Create differences based on the mapping between the model scopes compared,
+   * by first detecting differences in parallel without creating them, then creating
+   * them and setting their dependencies sequentially.
+   * Since detection does not modify the comparison and creation follows the order
+   * of the mapping, the result is the same as that of a sequential execution.
+   * Progress is checked and reported by the current thread only.
+   */
+  protected void createDifferencesInParallel() {
+    List<IMatch<E>> matches = new ArrayList<IMatch<E>>(getMapping().getContents());
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    List<PendingDifference>[] detected = new List[matches.size()];
+    AtomicInteger nbDetected = new AtomicInteger();
+    ParallelDetectionTask task =
+        new ParallelDetectionTask(matches, detected, nbDetected, 0, matches.size());
+    _isDetectionCanceled = false;
+    ForkJoinPool.commonPool().execute(task);
+    int nbReported = 0;
+    try {
+      while (!task.isDone()) {
+        checkProgress();
+        int nbDone = nbDetected.get();
+        getMonitor().worked(nbDone - nbReported);
+        nbReported = nbDone;
+        try {
+          task.get(PARALLEL_DETECTION_POLLING_PERIOD, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          // Still running
+        } catch (ExecutionException e) {
+          // Re-thrown when joining
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new OperationCanceledException();
+        }
+      }
+    } finally {
+      if (!task.isDone()) {
+        _isDetectionCanceled = true;
+        task.quietlyJoin();
+      }
+    }
+    task.join(); // Re-throws the failure of detection, if any
+    getMonitor().worked(matches.size() - nbReported);
+    for (int i = 0; i < detected.length; i++) {
       checkProgress();
-      if (getDiffPolicy().coverMatch(match)) {
-        createTechnicalDifferences(match);
+      List<PendingDifference> matchDifferences = detected[i];
+      if (matchDifferences != null) {
+        IMatch<E> match = matches.get(i);
+        if (match.isPartial()) {
+          getOrCreateElementPresence(match);
+        } else {
+          for (PendingDifference difference : matchDifferences) {
+            difference.create();
+          }
+        }
+        detected[i] = null;
       }
-      getMonitor().worked(1);
     }
   }
   
@@ -303,44 +428,57 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     List<Object> remainingValues2 = new ArrayList<Object>(values2);
     boolean checkOrder = scopeOfAttribute.mIsManyAttribute(attribute_p) &&
         getDiffPolicy().considerOrderedAttribute(attribute_p, scopeOfAttribute);
-    int maxIndex = -1;
-    for (Object value1 : values1) {
-      ObjectAndIndex matchingValue2 =
-          findEqualAttributeValue(attribute_p, value1, remainingValues2, scopeOfAttribute);
-      if (matchingValue2.getObject() != null) {
-        if (checkOrder) {
-          if (matchingValue2.getIndex() < maxIndex) {
-            // Ordering difference
-            if (!create_p) {
-              return true;
-            }
-            createAttributeOrderDifference(
-                match_p, attribute_p, value1, matchingValue2.getObject(), role1_p, role2_p);
-            result = true;
-            checkOrder = false;
-          } else {
-            maxIndex = matchingValue2.getIndex();
-          }
-        }
-        remainingValues1.remove(value1);
-        remainingValues2.remove(matchingValue2.getObject());
+    Object[] disorderedValues = matchAttributeValues(attribute_p, values1, values2,
+        remainingValues1, remainingValues2, checkOrder, !create_p, scopeOfAttribute);
+    if (disorderedValues != null) {
+      // Ordering difference
+      if (!create_p) {
+        return true;
       }
+      final Object disorderedValue1 = disorderedValues[0];
+      final Object disorderedValue2 = disorderedValues[1];
+      handleDetectedDifference(new PendingDifference() {
+        /**
+         * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+         */
+        public void create() {
+          createAttributeOrderDifference(match_p, attribute_p, disorderedValue1,
+              disorderedValue2, role1_p, role2_p);
+        }
+      });
+      result = true;
     }
-    for (Object remainingValue1 : remainingValues1) {
+    for (final Object remainingValue1 : remainingValues1) {
       if (getDiffPolicy().coverValue(remainingValue1, attribute_p, scope1)){
         if (!create_p) {
           return true;
         }
-        createAttributeValueDifference(match_p, attribute_p, remainingValue1, role1_p, false);
+        handleDetectedDifference(new PendingDifference() {
+          /**
+           * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+           */
+          public void create() {
+            createAttributeValueDifference(
+                match_p, attribute_p, remainingValue1, role1_p, false);
+          }
+        });
         result = true;
       }
     }
-    for (Object remainingValue2 : remainingValues2) {
+    for (final Object remainingValue2 : remainingValues2) {
       if (getDiffPolicy().coverValue(remainingValue2, attribute_p, scope2)){
         if (!create_p) {
           return true;
         }
-        createAttributeValueDifference(match_p, attribute_p, remainingValue2, role2_p, false);
+        handleDetectedDifference(new PendingDifference() {
+          /**
+           * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+           */
+          public void create() {
+            createAttributeValueDifference(
+                match_p, attribute_p, remainingValue2, role2_p, false);
+          }
+        });
         result = true;
       }
     }
@@ -360,8 +498,11 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
   protected boolean detectContentDifferences(IMatch<E> match_p, Role role1_p,
       Role role2_p, boolean create_p) {
     assert match_p != null && !match_p.isPartial(role1_p, role2_p);
-    boolean result = detectAllAttributeDifferences(match_p, role1_p, role2_p, create_p);
-    result = detectAllReferenceDifferences(match_p, role1_p, role2_p, create_p) || result;
+    boolean result = false;
+    if (!isUnchangedRegion(match_p, role1_p, role2_p)) {
+      result = detectAllAttributeDifferences(match_p, role1_p, role2_p, create_p);
+      result = detectAllReferenceDifferences(match_p, role1_p, role2_p, create_p) || result;
+    }
     result = detectOwnershipDifferences(match_p, role1_p, role2_p, create_p) || result;
     return result;
   }
@@ -378,17 +519,25 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
       Role role2_p, boolean create_p) {
     assert match_p != null && !match_p.isPartial(role1_p, role2_p);
     boolean result = false;
-    for (Role role : Arrays.asList(role1_p, role2_p)) {
-      IMatch<E> parentMatch = getComparison().getContainerOf(match_p, role);
+    for (final Role role : Arrays.asList(role1_p, role2_p)) {
+      final IMatch<E> parentMatch = getComparison().getContainerOf(match_p, role);
       // An ownership difference needs only be created if the container
       // is unmatched, otherwise it is already handled by container refs
       if (parentMatch != null && parentMatch.isPartial(role1_p, role2_p)) {
         if (!create_p) {
           return true;
         }
-        E element = match_p.get(role); // Non-null because match_p is not partial
-        Object containment = getComparison().getScope(role).getContainment(element);
-        createReferenceValueDifference(parentMatch, containment, element, match_p, role, false);
+        final E element = match_p.get(role); // Non-null because match_p is not partial
+        final Object containment = getComparison().getScope(role).getContainment(element);
+        handleDetectedDifference(new PendingDifference() {
+          /**
+           * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+           */
+          public void create() {
+            createReferenceValueDifference(
+                parentMatch, containment, element, match_p, role, false);
+          }
+        });
         result = true;
       }
     }
@@ -421,14 +570,15 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     E element2 = match_p.get(role2_p);
     List<E> values1 = scope1.getReferenceValues(element1, reference_p);
     List<E> values2 = scope2.getReferenceValues(element2, reference_p);
-    List<E> remainingValues2 = new FArrayList<E>(values2, BY_REFERENCE);
+    ReferenceValueIndex remainingValues2 = new ReferenceValueIndex(
+        reference_p, values2, role2_p, scopeOfReference);
     boolean checkOrder = scopeOfReference.mIsManyReference(reference_p) &&
         diffPolicy.considerOrderedReference(reference_p, scopeOfReference);
     int maxIndex = -1;
     // Check which ones match
-    for (E value1 : values1) {
+    for (final E value1 : values1) {
       // For every value in role1_p, get its corresponding match if in scope
-      IMatch<E> valueMatch1 = getMapping().getMatchFor(value1, role1_p);
+      final IMatch<E> valueMatch1 = getMapping().getMatchFor(value1, role1_p);
       // The role1_p value is covered if a match is found or it is a covered out-of-scope value
       boolean outsideScope1 = valueMatch1 == null;
       boolean coverValue1 =
@@ -443,8 +593,7 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
         int index = -1;
         if (!isIsolated) {
           // Check value presence and ordering
-          index = detectReferenceValueAmong(
-              reference_p, matchValue2, remainingValues2, outsideScope1, scopeOfReference);
+          index = remainingValues2.indexOf(matchValue2, outsideScope1);
           isIsolated = index < 0;
           if (checkOrder && !isIsolated) {
             if (index < maxIndex) {
@@ -452,8 +601,15 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
               if (!create_p) {
                 return true;
               }
-              createReferenceOrderDifference(
-                  match_p, reference_p, value1, valueMatch1);
+              handleDetectedDifference(new PendingDifference() {
+                /**
+                 * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+                 */
+                public void create() {
+                  createReferenceOrderDifference(
+                      match_p, reference_p, value1, valueMatch1);
+                }
+              });
               result = true;
               checkOrder = false;
             } else {
@@ -466,22 +622,25 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
           if (!create_p) {
             return true;
           }
-          createReferenceValueDifference(
-              match_p, reference_p, value1, valueMatch1, role1_p, false);
+          handleDetectedDifference(new PendingDifference() {
+            /**
+             * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+             */
+            public void create() {
+              createReferenceValueDifference(
+                  match_p, reference_p, value1, valueMatch1, role1_p, false);
+            }
+          });
           result = true;
         } else {
           // Remove from the remaining values in role2_p
-          if (index > -1) {
-            remainingValues2.remove(index);
-          } else {
-            remainingValues2.remove(matchValue2);
-          }
+          remainingValues2.remove(index);
         }
       } // Else value1 is out of scope and not covered as such
     }
     // For every remaining value in role2_p, create a difference if covered
-    for (E remainingValue2 : remainingValues2) {
-      IMatch<E> valueMatch2 = getMapping().getMatchFor(remainingValue2, role2_p);
+    for (final E remainingValue2 : remainingValues2.getRemainingValues()) {
+      final IMatch<E> valueMatch2 = getMapping().getMatchFor(remainingValue2, role2_p);
       boolean outsideReferenceScope = valueMatch2 == null;
       boolean coverReferenceValue =
           !outsideReferenceScope && diffPolicy.coverMatch(valueMatch2) ||
@@ -492,8 +651,15 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
         if (!create_p) {
           return true;
         }
-        createReferenceValueDifference(
-            match_p, reference_p, remainingValue2, valueMatch2, role2_p, false);
+        handleDetectedDifference(new PendingDifference() {
+          /**
+           * @see org.eclipse.emf.diffmerge.generic.impl.helpers.DiffOperation.PendingDifference#create()
+           */
+          public void create() {
+            createReferenceValueDifference(
+                match_p, reference_p, remainingValue2, valueMatch2, role2_p, false);
+          }
+        });
         result = true;
       } // Else value2 is out of scope and not covered as such
     }
@@ -529,6 +695,34 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     return result;
   }
   
+  /**
+   * Detect the technical differences corresponding to the given match without
+   * creating them.
+   * This operation does not modify the comparison so it may be called concurrently.
+   * @param match_p a non-null match
+   * @return a non-null, potentially empty list of the differences to create in order,
+   *         which is empty if the match is partial, or null if the match is not covered
+   */
+  protected List<PendingDifference> detectTechnicalDifferences(IMatch<E> match_p) {
+    List<PendingDifference> result = null;
+    if (getDiffPolicy().coverMatch(match_p)) {
+      result = Collections.emptyList();
+      if (!match_p.isPartial()) {
+        List<PendingDifference> detected = new ArrayList<PendingDifference>();
+        _pendingDifferences.set(detected);
+        try {
+          detectContentDifferences(match_p, TARGET, REFERENCE, true);
+        } finally {
+          _pendingDifferences.remove();
+        }
+        if (!detected.isEmpty()) {
+          result = detected;
+        }
+      }
+    }
+    return result;
+  }
+  
   /**
    * Return a value in the given collection of values which is considered equal
    * to the given value for the given attribute and its index in the collection
@@ -550,6 +744,33 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     return new ObjectAndIndex();
   }
   
+  /**
+   * Return the keys of the given values of the given attribute according to the diff
+   * policy, if the diff policy provides keys for all of them
+   * @see IDiffPolicy.Keyed#getAttributeValueKey(Object, Object, ITreeDataScope)
+   * @param attribute_p a non-null attribute
+   * @param values_p a non-null list of values of the attribute
+   * @param scope_p the non-null scope the attribute is from
+   * @return a list of the same size as values_p, or null if keys are not available
+   */
+  protected List<Object> getAttributeValueKeys(Object attribute_p, List<?> values_p,
+      ITreeDataScope<E> scope_p) {
+    List<Object> result = null;
+    if (getDiffPolicy() instanceof IDiffPolicy.Keyed<?>) {
+      IDiffPolicy.Keyed<E> keyedPolicy = (IDiffPolicy.Keyed<E>)getDiffPolicy();
+      result = new ArrayList<Object>(values_p.size());
+      for (Object value : values_p) {
+        Object key = keyedPolicy.getAttributeValueKey(value, attribute_p, scope_p);
+        if (key == null) {
+          result = null;
+          break;
+        }
+        result.add(key);
+      }
+    }
+    return result;
+  }
+  
   /**
    * Return the comparison which is being built
    * @return a non-null comparison
@@ -617,6 +838,69 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     return 1 + getMapping().size();
   }
   
+  /**
+   * Create the given difference which has just been detected, unless the current thread
+   * is only detecting differences, in which case it is recorded for later creation
+   * @see DiffOperation#detectTechnicalDifferences(IMatch)
+   * @param difference_p a non-null difference
+   */
+  protected void handleDetectedDifference(PendingDifference difference_p) {
+    List<PendingDifference> pending = _pendingDifferences.get();
+    if (pending != null) {
+      pending.add(difference_p);
+    } else {
+      difference_p.create();
+    }
+  }
+  
+  /**
+   * Return whether the method of this class with the given name and parameter types
+   * is overridden by the class of this operation
+   * @param name_p a non-null method name
+   * @param parameterTypes_p the non-null erased parameter types of the method
+   */
+  protected boolean isOverridden(String name_p, Class<?>... parameterTypes_p) {
+    for (Class<?> current = getClass(); current != DiffOperation.class;
+        current = current.getSuperclass()) {
+      try {
+        current.getDeclaredMethod(name_p, parameterTypes_p);
+        return true;
+      } catch (NoSuchMethodException e) {
+        // Not declared at this level
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Return whether the detection of differences may be distributed over several threads
+   */
+  public boolean isParallel() {
+    return _parallel;
+  }
+  
+  /**
+   * Return whether the elements of the given match for the given roles are known by
+   * the diff policy to have identical contents
+   * @see IDiffPolicy.RegionAware
+   * @param match_p a non-null match which is non-partial for the given roles
+   * @param role1_p a non-null role
+   * @param role2_p a non-null role different from role1_p
+   */
+  @SuppressWarnings("unchecked")
+  protected boolean isUnchangedRegion(IMatch<E> match_p, Role role1_p, Role role2_p) {
+    boolean result = false;
+    if (getDiffPolicy() instanceof IDiffPolicy.RegionAware<?> &&
+        role1_p != ANCESTOR && role2_p != ANCESTOR) {
+      IDiffPolicy.RegionAware<E> regionAwarePolicy =
+          (IDiffPolicy.RegionAware<E>)getDiffPolicy();
+      result = regionAwarePolicy.isUnchangedRegion(
+          match_p.get(TARGET), getComparison().getScope(TARGET),
+          match_p.get(REFERENCE), getComparison().getScope(REFERENCE));
+    }
+    return result;
+  }
+  
   /**
    * Return whether the scope of the given role is read-only.
    * If no scope has the given role, then true is returned.
@@ -637,6 +921,229 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     return result;
   }
   
+  /**
+   * Return whether the differences of the given match can be updated by
+   * recompute(Collection, Collection, IMatchPolicy) after modifications of its elements,
+   * i.e., whether the modifications have preserved the mapping around the match:
+   * the match is complete, it has no element presence, ownership or containment
+   * differences, its elements still have the same match ID if applicable, and their
+   * containers and children are still matched with each other.
+   * This operation does not modify the comparison.
+   * @param match_p a non-null match
+   * @param matchPolicy_p the optional match policy that built the mapping
+   */
+  protected boolean isUpdatable(IMatch<E> match_p, IMatchPolicy<E> matchPolicy_p) {
+    if (match_p.isPartial() || match_p.getElementPresenceDifference() != null ||
+        match_p.getOwnershipDifference(TARGET) != null ||
+        match_p.getOwnershipDifference(REFERENCE) != null) {
+      return false;
+    }
+    for (IDifference<E> difference : match_p.getRelatedDifferences()) {
+      if (difference instanceof IReferenceValuePresence<?> &&
+          ((IReferenceValuePresence<E>)difference).isContainment() &&
+          !((IReferenceValuePresence<E>)difference).isOrder()) {
+        return false;
+      }
+    }
+    ITreeDataScope<E> targetScope = getComparison().getScope(TARGET);
+    ITreeDataScope<E> referenceScope = getComparison().getScope(REFERENCE);
+    E target = match_p.get(TARGET);
+    E reference = match_p.get(REFERENCE);
+    // Same match ID
+    if (matchPolicy_p != null) {
+      Object targetID = matchPolicy_p.getMatchID(target, targetScope);
+      if (targetID == null ||
+          !targetID.equals(matchPolicy_p.getMatchID(reference, referenceScope))) {
+        return false;
+      }
+    }
+    // Same container
+    E targetContainer = targetScope.getContainer(target);
+    E referenceContainer = referenceScope.getContainer(reference);
+    if (targetContainer == null || referenceContainer == null) {
+      if (targetContainer != referenceContainer ||
+          !targetScope.getRoots().contains(target) ||
+          !referenceScope.getRoots().contains(reference)) {
+        return false;
+      }
+    } else if (!getMapping().maps(targetContainer, referenceContainer)) {
+      return false;
+    }
+    // Same children
+    List<E> targetChildren = targetScope.getContents(target);
+    List<E> referenceChildren = referenceScope.getContents(reference);
+    if (targetChildren.size() != referenceChildren.size()) {
+      return false;
+    }
+    Set<IMatch<E>> childMatches = new LinkedHashSet<IMatch<E>>();
+    for (E targetChild : targetChildren) {
+      IMatch<E> childMatch = getMapping().getMatchFor(targetChild, TARGET);
+      if (childMatch == null || childMatch.isPartial()) {
+        return false;
+      }
+      childMatches.add(childMatch);
+    }
+    for (E referenceChild : referenceChildren) {
+      if (!childMatches.contains(getMapping().getMatchFor(referenceChild, REFERENCE))) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Match the given values of the given attribute, removing matched values from the
+   * given lists of remaining values.
+   * Values of the first list are considered in order, each of them being matched with
+   * the first unmatched value of the second list that is considered equal to it.
+   * If order must be checked, then the first pair of matched values which is not in
+   * the same order as the previously matched values is returned.
+   * @param attribute_p a non-null attribute
+   * @param values1_p a non-null list of values of the attribute
+   * @param values2_p a non-null list of values of the attribute
+   * @param remainingValues1_p a non-null, modifiable copy of values1_p
+   * @param remainingValues2_p a non-null, modifiable copy of values2_p
+   * @param checkOrder_p whether order must be checked
+   * @param stopAtOrder_p whether matching must stop as soon as a pair of disordered
+   *          values is found, in which case the remaining values are not meaningful
+   * @param scope_p the non-null scope the attribute is from
+   * @return a potentially null array of two values, from values1_p and values2_p respectively
+   */
+  protected Object[] matchAttributeValues(Object attribute_p, List<?> values1_p,
+      List<?> values2_p, List<Object> remainingValues1_p, List<Object> remainingValues2_p,
+      boolean checkOrder_p, boolean stopAtOrder_p, ITreeDataScope<E> scope_p) {
+    Object[] result;
+    List<Object> keys1 = null;
+    List<Object> keys2 = null;
+    if ((long)values1_p.size() * values2_p.size() > KEY_BASED_MATCHING_THRESHOLD) {
+      keys1 = getAttributeValueKeys(attribute_p, values1_p, scope_p);
+      if (keys1 != null) {
+        keys2 = getAttributeValueKeys(attribute_p, values2_p, scope_p);
+      }
+    }
+    if (keys2 != null) {
+      result = matchAttributeValuesByKey(values1_p, values2_p, keys1, keys2,
+          remainingValues1_p, remainingValues2_p, checkOrder_p, stopAtOrder_p);
+    } else {
+      result = matchAttributeValuesByEquality(attribute_p, values1_p,
+          remainingValues1_p, remainingValues2_p, checkOrder_p, stopAtOrder_p, scope_p);
+    }
+    return result;
+  }
+  
+  /**
+   * Match the given values of the given attribute by pairwise comparison according to
+   * the diff policy
+   * @see DiffOperation#matchAttributeValues(Object, List, List, List, List, boolean, boolean, ITreeDataScope)
+   * @param attribute_p a non-null attribute
+   * @param values1_p a non-null list of values of the attribute
+   * @param remainingValues1_p a non-null, modifiable copy of values1_p
+   * @param remainingValues2_p a non-null, modifiable copy of the second list of values
+   * @param checkOrder_p whether order must be checked
+   * @param stopAtOrder_p whether matching must stop as soon as a pair of disordered values is found
+   * @param scope_p the non-null scope the attribute is from
+   * @return a potentially null array of two values
+   */
+  protected Object[] matchAttributeValuesByEquality(Object attribute_p, List<?> values1_p,
+      List<Object> remainingValues1_p, List<Object> remainingValues2_p,
+      boolean checkOrder_p, boolean stopAtOrder_p, ITreeDataScope<E> scope_p) {
+    Object[] result = null;
+    boolean checkOrder = checkOrder_p;
+    int maxIndex = -1;
+    for (Object value1 : values1_p) {
+      ObjectAndIndex matchingValue2 =
+          findEqualAttributeValue(attribute_p, value1, remainingValues2_p, scope_p);
+      if (matchingValue2.getObject() != null) {
+        if (checkOrder) {
+          if (matchingValue2.getIndex() < maxIndex) {
+            // Ordering difference
+            result = new Object[] {value1, matchingValue2.getObject()};
+            if (stopAtOrder_p) {
+              break;
+            }
+            checkOrder = false;
+          } else {
+            maxIndex = matchingValue2.getIndex();
+          }
+        }
+        remainingValues1_p.remove(value1);
+        remainingValues2_p.remove(matchingValue2.getObject());
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Match the given values of an attribute through their keys, in linear time.
+   * Since values are matched in the order of the first list with the first unmatched
+   * value having the same key in the second list, the first disordered pair is the first
+   * one whose position in the second list is lower than that of a previously matched value.
+   * @see DiffOperation#matchAttributeValues(Object, List, List, List, List, boolean, boolean, ITreeDataScope)
+   * @param values1_p a non-null list of values of the attribute
+   * @param values2_p a non-null list of values of the attribute
+   * @param keys1_p the non-null list of the keys of values1_p
+   * @param keys2_p the non-null list of the keys of values2_p
+   * @param remainingValues1_p a non-null, modifiable copy of values1_p
+   * @param remainingValues2_p a non-null, modifiable copy of values2_p
+   * @param checkOrder_p whether order must be checked
+   * @param stopAtOrder_p whether matching must stop as soon as a pair of disordered values is found
+   * @return a potentially null array of two values
+   */
+  protected Object[] matchAttributeValuesByKey(List<?> values1_p, List<?> values2_p,
+      List<Object> keys1_p, List<Object> keys2_p,
+      List<Object> remainingValues1_p, List<Object> remainingValues2_p,
+      boolean checkOrder_p, boolean stopAtOrder_p) {
+    Object[] result = null;
+    // Positions of values2_p per key, in increasing order
+    Map<Object, Deque<Integer>> positions2 = new HashMap<Object, Deque<Integer>>();
+    for (int i = 0; i < keys2_p.size(); i++) {
+      Object key = keys2_p.get(i);
+      Deque<Integer> positions = positions2.get(key);
+      if (positions == null) {
+        positions = new ArrayDeque<Integer>(1);
+        positions2.put(key, positions);
+      }
+      positions.addLast(Integer.valueOf(i));
+    }
+    boolean[] matched1 = new boolean[values1_p.size()];
+    boolean[] matched2 = new boolean[values2_p.size()];
+    boolean checkOrder = checkOrder_p;
+    int maxIndex = -1;
+    for (int i = 0; i < keys1_p.size(); i++) {
+      Deque<Integer> positions = positions2.get(keys1_p.get(i));
+      if (positions != null && !positions.isEmpty()) {
+        int index2 = positions.removeFirst().intValue();
+        if (checkOrder) {
+          if (index2 < maxIndex) {
+            // Ordering difference
+            result = new Object[] {values1_p.get(i), values2_p.get(index2)};
+            if (stopAtOrder_p) {
+              return result;
+            }
+            checkOrder = false;
+          } else {
+            maxIndex = index2;
+          }
+        }
+        matched1[i] = true;
+        matched2[index2] = true;
+      }
+    }
+    remainingValues1_p.clear();
+    for (int i = 0; i < matched1.length; i++) {
+      if (!matched1[i]) {
+        remainingValues1_p.add(values1_p.get(i));
+      }
+    }
+    remainingValues2_p.clear();
+    for (int i = 0; i < matched2.length; i++) {
+      if (!matched2[i]) {
+        remainingValues2_p.add(values2_p.get(i));
+      }
+    }
+    return result;
+  }
+  
   /**
    * Mark the given source difference as implying the given target difference
    * when merged to the side of the given role
@@ -665,6 +1172,125 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     }
   }
   
+  /**
+   * Update the differences of the comparison, which has already been computed, after
+   * the given elements have been modified.
+   * The differences of the matches of the given elements are removed and detected again,
+   * provided that the modifications preserve the mapping, otherwise the comparison is
+   * left unchanged.
+   * Dependencies between differences of the comparison must be invalidated afterwards.
+   * @see IComparison.Editable#recompute(Collection, Collection)
+   * @param targetElements_p a non-null collection of modified elements of the TARGET scope
+   * @param referenceElements_p a non-null collection of modified elements of the REFERENCE scope
+   * @param matchPolicy_p the optional match policy that built the mapping
+   * @return whether the differences have been updated
+   */
+  public boolean recompute(Collection<? extends E> targetElements_p,
+      Collection<? extends E> referenceElements_p, IMatchPolicy<E> matchPolicy_p) {
+    if (getComparison().isThreeWay()) {
+      return false;
+    }
+    Set<IMatch<E>> matches = new LinkedHashSet<IMatch<E>>();
+    for (Role role : Arrays.asList(TARGET, REFERENCE)) {
+      Collection<? extends E> elements =
+          (role == TARGET)? targetElements_p: referenceElements_p;
+      for (E element : elements) {
+        IMatch<E> match = getMapping().getMatchFor(element, role);
+        if (match == null) {
+          return false;
+        }
+        matches.add(match);
+      }
+    }
+    if (matchPolicy_p instanceof IMatchPolicy.WithMemo<?>) {
+      ((IMatchPolicy.WithMemo<E>)matchPolicy_p).clearMemo();
+    }
+    try {
+      for (IMatch<E> match : matches) {
+        if (!isUpdatable(match, matchPolicy_p)) {
+          return false;
+        }
+      }
+    } finally {
+      if (matchPolicy_p instanceof IMatchPolicy.WithMemo<?>) {
+        ((IMatchPolicy.WithMemo<E>)matchPolicy_p).clearMemo();
+      }
+    }
+    // Removing all differences first so that new differences do not depend on old ones
+    removeDifferences(matches);
+    for (IMatch<E> match : matches) {
+      if (getDiffPolicy().coverMatch(match)) {
+        // Unchanged regions are ignored since they reflect the state before modification
+        detectAllAttributeDifferences(match, TARGET, REFERENCE, true);
+        detectAllReferenceDifferences(match, TARGET, REFERENCE, true);
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Remove the differences related to the given matches from the comparison,
+   * as well as the dependencies of other differences upon them.
+   * The differences which depend on removed ones are found through the direct dependents
+   * that differences record if available, otherwise through the dependencies and the
+   * value matches of the removed differences.
+   * @see GMergeableDifferenceImpl#getDirectDependents()
+   * @param matches_p a non-null collection of matches such that isUpdatable(match, ...)
+   *          holds for each of them
+   */
+  protected void removeDifferences(Collection<IMatch<E>> matches_p) {
+    List<IMergeableDifference<E>> removed = new ArrayList<IMergeableDifference<E>>();
+    for (IMatch<E> match : matches_p) {
+      List<IDifference<E>> differences =
+          new ArrayList<IDifference<E>>(match.getRelatedDifferences());
+      for (IDifference<E> difference : differences) {
+        ((IMatch.Editable<E>)match).removeRelatedDifference(difference);
+        if (difference instanceof IMergeableDifference<?>) {
+          removed.add((IMergeableDifference<E>)difference);
+        }
+      }
+    }
+    for (IMergeableDifference<E> difference : removed) {
+      Set<IDifference<E>> candidates = new LinkedHashSet<IDifference<E>>();
+      if (difference instanceof GMergeableDifferenceImpl<?, ?, ?>) {
+        candidates.addAll(
+            ((GMergeableDifferenceImpl<E, ?, ?>)difference).getDirectDependents());
+      } else {
+        // Dependencies are set between differences which are related to each other
+        // through their dependencies or their value matches
+        for (Role role : Arrays.asList(TARGET, REFERENCE)) {
+          candidates.addAll(difference.getDirectRequiresDependencies(role));
+          candidates.addAll(difference.getDirectImpliesDependencies(role));
+        }
+        if (difference instanceof IReferenceValuePresence<?>) {
+          IMatch<E> valueMatch = ((IReferenceValuePresence<E>)difference).getValueMatch();
+          if (valueMatch != null) {
+            candidates.addAll(valueMatch.getAllDifferences());
+          }
+        }
+      }
+      for (IDifference<E> candidate : candidates) {
+        if (candidate instanceof IMergeableDifference.Editable<?>) {
+          ((IMergeableDifference.Editable<E>)candidate).unmarkDependency(difference);
+        }
+      }
+      if (difference instanceof IMergeableDifference.Editable<?>) {
+        // The removed difference must no longer be a dependent of the remaining ones
+        IMergeableDifference.Editable<E> editable =
+            (IMergeableDifference.Editable<E>)difference;
+        Set<IMergeableDifference<E>> dependencies =
+            new LinkedHashSet<IMergeableDifference<E>>();
+        for (Role role : Arrays.asList(TARGET, REFERENCE)) {
+          dependencies.addAll(difference.getDirectRequiresDependencies(role));
+          dependencies.addAll(difference.getDirectImpliesDependencies(role));
+        }
+        for (IMergeableDifference<E> dependency : dependencies) {
+          editable.unmarkDependency(dependency);
+        }
+      }
+    }
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.generic.util.IExpensiveOperation#run()
    */
@@ -877,6 +1503,16 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
     }
   }
   
+  /**
+   * Set whether the detection of differences may be distributed over several threads.
+   * This method must be called before the operation is run.
+   * @see DiffOperation#DiffOperation(IComparison.Editable, IDiffPolicy, IMergePolicy, boolean)
+   * @param parallel_p whether parallel detection is allowed
+   */
+  public void setParallel(boolean parallel_p) {
+    _parallel = parallel_p;
+  }
+  
   /**
    * Set the dependencies of a reference value presence
    * @param presence_p a non-null reference value presence
@@ -1089,6 +1725,264 @@ public class DiffOperation<E> extends AbstractExpensiveOperation {
   }
   
   
+  /**
+   * The values of a reference on a given element which remain to be matched during the
+   * detection of reference differences. Values are looked up by identity and, if they
+   * are out of scope, according to the diff policy. Beyond a given number of values,
+   * lookups rely on an identity index and, if the diff policy provides keys, on an
+   * index of out-of-scope values, so that matching is linear in the number of values.
+   * If detectReferenceValueAmong(...) is overridden, lookups are delegated to it instead.
+   * Positions are those of the values in the original list.
+   */
+  protected class ReferenceValueIndex {
+    /** The non-null reference */
+    private final Object _reference;
+    /** The non-null list of values */
+    private final List<E> _values;
+    /** The non-null role the values belong to */
+    private final Role _role;
+    /** The non-null scope the reference is from */
+    private final ITreeDataScope<E> _scope;
+    /** The non-null array that tells whether the value at each position has been matched */
+    private final boolean[] _matched;
+    /** The potentially null map from values to their positions, by identity */
+    private final Map<E, Deque<Integer>> _positions;
+    /** The map from keys to positions of out-of-scope values, null if not available */
+    private Map<Object, Deque<Integer>> _outOfScopePositions;
+    /** Whether the index of out-of-scope values has been computed */
+    private boolean _isOutOfScopeIndexComputed;
+    /**
+     * Constructor
+     * @param reference_p the non-null reference
+     * @param values_p the non-null list of values of the reference
+     * @param role_p the non-null role the values belong to
+     * @param scope_p the non-null scope the reference is from
+     */
+    public ReferenceValueIndex(Object reference_p, List<E> values_p, Role role_p,
+        ITreeDataScope<E> scope_p) {
+      _reference = reference_p;
+      _values = values_p;
+      _role = role_p;
+      _scope = scope_p;
+      _matched = new boolean[values_p.size()];
+      _outOfScopePositions = null;
+      _isOutOfScopeIndexComputed = false;
+      if (values_p.size() > REFERENCE_INDEX_THRESHOLD) {
+        _positions = new IdentityHashMap<E, Deque<Integer>>(values_p.size());
+        for (int i = 0; i < values_p.size(); i++) {
+          addPosition(_positions, values_p.get(i), i);
+        }
+      } else {
+        _positions = null;
+      }
+    }
+    /**
+     * Register the given position for the given key in the given map
+     * @param map_p a non-null map
+     * @param key_p a non-null key
+     * @param position_p a positive int or 0
+     */
+    private <K> void addPosition(Map<K, Deque<Integer>> map_p, K key_p, int position_p) {
+      Deque<Integer> positions = map_p.get(key_p);
+      if (positions == null) {
+        positions = new ArrayDeque<Integer>(1);
+        map_p.put(key_p, positions);
+      }
+      positions.addLast(Integer.valueOf(position_p));
+    }
+    /**
+     * Compute the index of out-of-scope values if the diff policy provides keys for all
+     * the values, since all of them are candidates for out-of-scope equality
+     */
+    private void computeOutOfScopeIndex() {
+      _isOutOfScopeIndexComputed = true;
+      Map<Object, Deque<Integer>> result = new HashMap<Object, Deque<Integer>>();
+      IDiffPolicy.Keyed<E> keyedPolicy = (IDiffPolicy.Keyed<E>)getDiffPolicy();
+      for (int i = 0; i < _values.size(); i++) {
+        Object key = keyedPolicy.getOutOfScopeValueKey(_values.get(i), _reference, _scope);
+        if (key == null) {
+          // Index cannot be relied upon
+          return;
+        }
+        addPosition(result, key, i);
+      }
+      _outOfScopePositions = result;
+    }
+    /**
+     * Return the first unmatched position among the given ones, removing
+     * matched positions encountered
+     * @param positions_p a potentially null set of positions in increasing order
+     * @return a positive int or 0, or -1 if none
+     */
+    private int firstUnmatched(Deque<Integer> positions_p) {
+      if (positions_p != null) {
+        while (!positions_p.isEmpty()) {
+          int position = positions_p.peekFirst().intValue();
+          if (!_matched[position]) {
+            return position;
+          }
+          positions_p.removeFirst();
+        }
+      }
+      return -1;
+    }
+    /**
+     * Return the values which have not been matched, in their original order
+     * @return a non-null, potentially empty list
+     */
+    public List<E> getRemainingValues() {
+      List<E> result = new ArrayList<E>();
+      for (int i = 0; i < _matched.length; i++) {
+        if (!_matched[i]) {
+          result.add(_values.get(i));
+        }
+      }
+      return result;
+    }
+    /**
+     * Return the position of the first unmatched value which corresponds to the given one,
+     * given that it should or not be considered as an out-of-scope value
+     * @see DiffOperation#detectReferenceValueAmong(Object, Object, List, boolean, ITreeDataScope)
+     * @param value_p a non-null element
+     * @param outsideScope_p whether the element is out-of-scope
+     * @return a positive int or 0, or -1 if the element is not found
+     */
+    public int indexOf(E value_p, boolean outsideScope_p) {
+      if (_isReferenceValueDetectionOverridden) {
+        return indexOfThroughDetection(value_p, outsideScope_p);
+      }
+      int result = -1;
+      if (_positions != null) {
+        result = firstUnmatched(_positions.get(value_p));
+      } else {
+        for (int i = 0; i < _matched.length; i++) {
+          if (!_matched[i] && _values.get(i) == value_p) {
+            result = i;
+            break;
+          }
+        }
+      }
+      if (result == -1 && outsideScope_p) {
+        // Outside scope
+        IDiffPolicy<E> diffPolicy = getDiffPolicy();
+        Object key = null;
+        if (_positions != null && diffPolicy instanceof IDiffPolicy.Keyed<?>) {
+          key = ((IDiffPolicy.Keyed<E>)diffPolicy).getOutOfScopeValueKey(
+              value_p, _reference, _scope);
+          if (key != null && !_isOutOfScopeIndexComputed) {
+            computeOutOfScopeIndex();
+          }
+        }
+        if (key != null && _outOfScopePositions != null) {
+          result = firstUnmatched(_outOfScopePositions.get(key));
+        } else {
+          for (int i = 0; i < _matched.length; i++) {
+            if (!_matched[i] && diffPolicy.considerEqualOutOfScope(
+                value_p, _values.get(i), _reference, _scope)) {
+              result = i;
+              break;
+            }
+          }
+        }
+      }
+      return result;
+    }
+    /**
+     * Return the position of the first unmatched value which corresponds to the given one
+     * according to detectReferenceValueAmong(...)
+     * @see DiffOperation#detectReferenceValueAmong(Object, Object, List, boolean, ITreeDataScope)
+     * @param value_p a non-null element
+     * @param outsideScope_p whether the element is out-of-scope
+     * @return a positive int or 0, or -1 if the element is not found
+     */
+    private int indexOfThroughDetection(E value_p, boolean outsideScope_p) {
+      List<E> remainingValues = new ArrayList<E>(_values.size());
+      int[] positions = new int[_values.size()];
+      for (int i = 0; i < _matched.length; i++) {
+        if (!_matched[i]) {
+          positions[remainingValues.size()] = i;
+          remainingValues.add(_values.get(i));
+        }
+      }
+      int index = detectReferenceValueAmong(
+          _reference, value_p, remainingValues, outsideScope_p, _scope);
+      return index < 0? -1: positions[index];
+    }
+    /**
+     * Mark the value at the given position as matched
+     * @param position_p a valid position of an unmatched value
+     */
+    public void remove(int position_p) {
+      _matched[position_p] = true;
+    }
+  }
+  
+  
+  /**
+   * A difference which has been detected and whose creation may be deferred.
+   */
+  protected static interface PendingDifference {
+    /**
+     * Create the difference in the comparison and set its dependencies
+     */
+    void create();
+  }
+  
+  
+  /**
+   * A fork-join task which detects the technical differences of a range of matches
+   * without creating them.
+   */
+  @SuppressWarnings("serial")
+  protected class ParallelDetectionTask extends RecursiveAction {
+    /** The non-null list of all matches */
+    private final List<IMatch<E>> _matches;
+    /** The non-null array of results whose indexes correspond to those of the matches */
+    private final List<PendingDifference>[] _result;
+    /** The non-null counter of the matches handled so far by all tasks */
+    private final AtomicInteger _nbDone;
+    /** The index of the first match to handle, inclusive */
+    private final int _start;
+    /** The index of the last match to handle, exclusive */
+    private final int _end;
+    /**
+     * Constructor
+     * @param matches_p a non-null list of matches
+     * @param result_p a non-null array of the same size as matches_p, to be filled
+     *          as specified by detectTechnicalDifferences(IMatch)
+     * @param nbDone_p a non-null counter of the matches handled so far
+     * @param start_p the index of the first match to handle, inclusive
+     * @param end_p the index of the last match to handle, exclusive
+     */
+    public ParallelDetectionTask(List<IMatch<E>> matches_p,
+        List<PendingDifference>[] result_p, AtomicInteger nbDone_p,
+        int start_p, int end_p) {
+      _matches = matches_p;
+      _result = result_p;
+      _nbDone = nbDone_p;
+      _start = start_p;
+      _end = end_p;
+    }
+    /**
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+      if (_end - _start <= PARALLEL_DETECTION_THRESHOLD) {
+        for (int i = _start; i < _end && !_isDetectionCanceled; i++) {
+          _result[i] = detectTechnicalDifferences(_matches.get(i));
+          _nbDone.incrementAndGet();
+        }
+      } else {
+        int middle = (_start + _end) >>> 1;
+        invokeAll(
+            new ParallelDetectionTask(_matches, _result, _nbDone, _start, middle),
+            new ParallelDetectionTask(_matches, _result, _nbDone, middle, _end));
+      }
+    }
+  }
+  
+  
   /**
    * A trivial data structure that associates an object and an index.
    * Either the object is not null and the index is greater than or equal to 0,
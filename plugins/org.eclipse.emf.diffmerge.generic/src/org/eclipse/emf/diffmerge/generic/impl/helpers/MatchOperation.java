@@ -11,14 +11,18 @@
  **********************************************************************/
 package org.eclipse.emf.diffmerge.generic.impl.helpers;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -55,6 +59,12 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
   /** Duplicate IDs in role 2 which may have an impact on the mapping */
   protected final Set<Object> _duplicateCandidatesRole2;
   
+  /** Whether the computation of match IDs may be distributed over several threads */
+  protected final boolean _parallel;
+  
+  /** The number of elements below which match IDs are computed in the current thread */
+  protected static final int PARALLEL_MATCHING_THRESHOLD = 512;
+  
   
   /**
    * Constructor
@@ -65,12 +75,60 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
    */
   public MatchOperation(IComparison.Editable<E> comparison_p,
       IMatchPolicy<E> policy_p, Map<Role, Set<Object>> duplicateIDs_p) {
+    this(comparison_p, policy_p, duplicateIDs_p, false);
+  }
+  
+  /**
+   * Constructor.
+   * If parallel computation is requested, then match IDs are computed concurrently
+   * for all the elements of a scope before they are registered and mapped in the
+   * current thread, so the resulting mapping and duplicate IDs are the same as in
+   * a sequential computation. This requires the scopes of the comparison to support
+   * concurrent calls to their query operations; match IDs are computed sequentially
+   * if the match policy does not support concurrent calls.
+   * @see IMatchPolicy#supportsConcurrentMatchIDs()
+   * @param comparison_p a non-null comparison whose mapping is to be built
+   * @param policy_p a non-null match policy
+   * @param duplicateIDs_p an optional map that associates each role with an empty,
+   *          modifiable set of duplicate match IDs, to be filled by this operation
+   * @param parallel_p whether the computation of match IDs may be distributed over
+   *          several threads
+   */
+  public MatchOperation(IComparison.Editable<E> comparison_p,
+      IMatchPolicy<E> policy_p, Map<Role, Set<Object>> duplicateIDs_p,
+      boolean parallel_p) {
     super();
     _comparison = comparison_p;
     _policy = policy_p;
     _duplicateIDs = duplicateIDs_p;
     _duplicateCandidatesRole1 = new HashSet<Object>(0);
     _duplicateCandidatesRole2 = new HashSet<Object>(0);
+    _parallel = parallel_p;
+  }
+  
+  /**
+   * Compute the match IDs of the given elements, possibly in parallel
+   * @param elements_p a non-null list of elements from the given scope
+   * @param scope_p a non-null scope
+   * @return a non-null array of potentially null match IDs whose indexes correspond
+   *         to those of the elements
+   */
+  protected Object[] computeMatchIDs(List<E> elements_p, ITreeDataScope<E> scope_p) {
+    Object[] result = new Object[elements_p.size()];
+    ForkJoinPool.commonPool().invoke(new ParallelMatchIDTask(
+        elements_p, scope_p, result, 0, result.length));
+    return result;
+  }
+  
+  /**
+   * Release the data that the match policy may have retained about the elements
+   * of the scopes
+   * @see IMatchPolicy.WithMemo
+   */
+  protected void clearMemo() {
+    if (getMatchPolicy() instanceof IMatchPolicy.WithMemo<?>) {
+      ((IMatchPolicy.WithMemo<?>)getMatchPolicy()).clearMemo();
+    }
   }
   
   /**
@@ -109,14 +167,23 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
     if (scope != null) {
       // Explore the scope, marking its elements as unmatched
       // and registering their match IDs
-      Iterator<E> it = scope.iterator();
+      boolean needsMatchIDs = rememberMatchIDs || fillIDMap_p;
+      List<E> elements = null;
+      Object[] matchIDs = null;
+      if (needsMatchIDs && (isParallel() || usesScopeCache())) {
+        elements = getElements(scope);
+        matchIDs = getMatchIDs(elements, scope);
+      }
+      Iterator<E> it = elements != null? elements.iterator(): scope.iterator();
+      int index = 0;
       IMapping.Editable<E> mapping = getComparison().getMapping();
       while (it.hasNext()) {
         checkProgress();
         E current = it.next();
         IMatch.Editable<E> match = mapping.map(current, role_p);
-        if (rememberMatchIDs || fillIDMap_p) {
-          Object matchID = getMatchPolicy().getMatchID(current, scope);
+        if (needsMatchIDs) {
+          Object matchID = matchIDs != null? matchIDs[index]:
+            getMatchPolicy().getMatchID(current, scope);
           if (matchID != null) {
             if (rememberMatchIDs) {
               match.setMatchID(matchID);
@@ -129,6 +196,7 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
             }
           }
         }
+        index++;
       }
     }
     return result;
@@ -160,14 +228,23 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
     ITreeDataScope<E> scope = getComparison().getScope(role_p);
     boolean rememberMatchIDs = getMatchPolicy().keepMatchIDs();
     if (scope != null) {
-      Iterator<E> targetIt = scope.iterator();
+      List<E> elements = null;
+      Object[] matchIDs = null;
+      if (isParallel() || usesScopeCache()) {
+        elements = getElements(scope);
+        matchIDs = getMatchIDs(elements, scope);
+      }
+      Iterator<E> targetIt = elements != null? elements.iterator(): scope.iterator();
+      int index = 0;
       IMapping.Editable<E> mapping = getComparison().getMapping();
       while (targetIt.hasNext()) {
         checkProgress();
         E current = targetIt.next();
         E counterpart1 = null;
         E counterpart2 = null;
-        Object matchID = getMatchPolicy().getMatchID(current, scope);
+        Object matchID = matchIDs != null? matchIDs[index]:
+          getMatchPolicy().getMatchID(current, scope);
+        index++;
         if (matchID != null) {
           if (fillIDMap_p) {
             E squatter = result.put(matchID, current);
@@ -207,6 +284,59 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
     return result;
   }
   
+  /**
+   * Return the elements of the given scope in iteration order
+   * @param scope_p a non-null scope
+   * @return a non-null, modifiable list
+   */
+  protected List<E> getElements(ITreeDataScope<E> scope_p) {
+    List<E> result = new ArrayList<E>();
+    Iterator<E> it = scope_p.iterator();
+    while (it.hasNext()) {
+      checkProgress();
+      result.add(it.next());
+    }
+    return result;
+  }
+  
+  /**
+   * Return the match IDs of the given elements, from the scope cache of the match
+   * policy if possible, otherwise by computing them, possibly in parallel
+   * @see IMatchPolicy.WithScopeCache
+   * @param elements_p the non-null list of all the elements of the given scope
+   *          in iteration order
+   * @param scope_p a non-null scope
+   * @return a non-null array of potentially null match IDs whose indexes correspond
+   *         to those of the elements
+   */
+  @SuppressWarnings("unchecked")
+  protected Object[] getMatchIDs(List<E> elements_p, ITreeDataScope<E> scope_p) {
+    IMatchPolicy.WithScopeCache<E> cachingPolicy = usesScopeCache()?
+        (IMatchPolicy.WithScopeCache<E>)getMatchPolicy(): null;
+    Object[] result = null;
+    if (cachingPolicy != null) {
+      result = cachingPolicy.getCachedMatchIDs(elements_p, scope_p);
+      if (result != null && result.length != elements_p.size()) {
+        result = null;
+      }
+    }
+    if (result == null) {
+      if (isParallel() && getMatchPolicy().supportsConcurrentMatchIDs()) {
+        result = computeMatchIDs(elements_p, scope_p);
+      } else {
+        result = new Object[elements_p.size()];
+        for (int i = 0; i < result.length; i++) {
+          checkProgress();
+          result[i] = getMatchPolicy().getMatchID(elements_p.get(i), scope_p);
+        }
+      }
+      if (cachingPolicy != null) {
+        cachingPolicy.cacheMatchIDs(elements_p, scope_p, result);
+      }
+    }
+    return result;
+  }
+  
   /**
    * Return the match policy
    * @return a non-null match policy
@@ -238,6 +368,13 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
     return _comparison.isThreeWay()? 6: 7; // 1 init, 2|3 for ID-based matching, 3 for post actions
   }
   
+  /**
+   * Return whether the computation of match IDs may be distributed over several threads
+   */
+  public boolean isParallel() {
+    return _parallel;
+  }
+  
   /**
    * Fill the mapping destructively
    * Postcondition: getOutput().isCompleteFor(TARGET)
@@ -270,7 +407,12 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
    */
   public IStatus run() {
     getMonitor().worked(1);
-    match();
+    clearMemo();
+    try {
+      match();
+    } finally {
+      clearMemo();
+    }
     scopeCovered(Role.TARGET);
     getMonitor().worked(1);
     scopeCovered(Role.REFERENCE);
@@ -290,4 +432,65 @@ public class MatchOperation<E> extends AbstractExpensiveOperation {
     // Nothing by default
   }
   
+  /**
+   * Return whether match IDs are retrieved from the scope cache of the match policy
+   * when possible
+   * @see IMatchPolicy.WithScopeCache
+   */
+  protected boolean usesScopeCache() {
+    return getMatchPolicy() instanceof IMatchPolicy.WithScopeCache<?> &&
+        ((IMatchPolicy.WithScopeCache<?>)getMatchPolicy()).useScopeCache();
+  }
+  
+  
+  /**
+   * A fork-join task which computes the match IDs of a range of elements.
+   */
+  @SuppressWarnings("serial")
+  protected class ParallelMatchIDTask extends RecursiveAction {
+    /** The non-null list of all elements */
+    private final List<E> _elements;
+    /** The non-null scope of the elements */
+    private final ITreeDataScope<E> _scope;
+    /** The non-null array of match IDs whose indexes correspond to those of the elements */
+    private final Object[] _result;
+    /** The start index of the range, inclusive */
+    private final int _start;
+    /** The end index of the range, exclusive */
+    private final int _end;
+    /**
+     * Constructor
+     * @param elements_p the non-null list of all elements
+     * @param scope_p the non-null scope of the elements
+     * @param result_p the non-null array of match IDs to fill
+     * @param start_p the start index of the range, inclusive
+     * @param end_p the end index of the range, exclusive
+     */
+    public ParallelMatchIDTask(List<E> elements_p, ITreeDataScope<E> scope_p,
+        Object[] result_p, int start_p, int end_p) {
+      _elements = elements_p;
+      _scope = scope_p;
+      _result = result_p;
+      _start = start_p;
+      _end = end_p;
+    }
+    /**
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+      if (_end - _start <= PARALLEL_MATCHING_THRESHOLD) {
+        for (int i = _start; i < _end; i++) {
+          checkProgress();
+          _result[i] = getMatchPolicy().getMatchID(_elements.get(i), _scope);
+        }
+      } else {
+        int middle = (_start + _end) >>> 1;
+        invokeAll(
+            new ParallelMatchIDTask(_elements, _scope, _result, _start, middle),
+            new ParallelMatchIDTask(_elements, _scope, _result, middle, _end));
+      }
+    }
+  }
+  
 }
@@ -11,8 +11,14 @@
  **********************************************************************/
 package org.eclipse.emf.diffmerge.generic.impl.helpers;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -24,7 +30,14 @@ import org.eclipse.emf.diffmerge.generic.api.IMergeSelector;
 import org.eclipse.emf.diffmerge.generic.api.Role;
 import org.eclipse.emf.diffmerge.generic.api.diff.IDifference;
 import org.eclipse.emf.diffmerge.generic.api.diff.IMergeableDifference;
+import org.eclipse.emf.diffmerge.generic.gdiffdata.impl.GComparisonImpl;
+import org.eclipse.emf.diffmerge.structures.IEqualityTester;
 import org.eclipse.emf.diffmerge.structures.common.FArrayList;
+import org.eclipse.emf.diffmerge.structures.common.FHashMap;
+import org.eclipse.emf.diffmerge.structures.common.FHashSet;
+import org.eclipse.emf.diffmerge.structures.endo.CondensedEndorelation;
+import org.eclipse.emf.diffmerge.structures.endo.IEndorelation;
+import org.eclipse.osgi.util.NLS;
 
 
 /**
@@ -36,6 +49,9 @@ import org.eclipse.emf.diffmerge.structures.common.FArrayList;
  */
 public class MergeOperation<E> extends AbstractExpensiveOperation {
   
+  /** The number of differences merged between two progress reports in batch mode */
+  protected static final int BATCH_PROGRESS_PERIOD = 500;
+  
   /** The non-null comparison */
   protected final IComparison<E> _comparison;
   
@@ -51,6 +67,9 @@ public class MergeOperation<E> extends AbstractExpensiveOperation {
   /** Whether references of the elements added must be set */
   protected final boolean _updateReferences;
   
+  /** Whether the merge is performed as a single ordered pass (relevant only if isGlobal()) */
+  protected final boolean _batch;
+  
   /** The non-null set of differences that have actually been merged (initially empty) */
   protected final Collection<IDifference<E>> _actuallyMerged;
   
@@ -71,6 +90,7 @@ public class MergeOperation<E> extends AbstractExpensiveOperation {
     _destinationRole = destination_p;
     _merger = null;
     _updateReferences = updateReferences_p;
+    _batch = false;
     _actuallyMerged = new FArrayList<IDifference<E>>();
   }
   
@@ -82,12 +102,28 @@ public class MergeOperation<E> extends AbstractExpensiveOperation {
    */
   public MergeOperation(IComparison<E> comparison_p, IMergeSelector<E> merger_p,
       boolean updateReferences_p) {
+    this(comparison_p, merger_p, updateReferences_p, false);
+  }
+  
+  /**
+   * Constructor for a global merger.
+   * In batch mode, the differences selected by the merger are merged in a single pass
+   * where every difference comes after the differences it requires, and the
+   * differences are merged in one direction and then in the other.
+   * @param comparison_p a non-null comparison
+   * @param merger_p a non-null merger
+   * @param updateReferences_p whether references of the elements added must be set
+   * @param batch_p whether the merge must be performed in batch mode
+   */
+  public MergeOperation(IComparison<E> comparison_p, IMergeSelector<E> merger_p,
+      boolean updateReferences_p, boolean batch_p) {
     super();
     _comparison = comparison_p;
     _toMerge = Collections.emptySet();
     _destinationRole = null;
     _merger = merger_p;
     _updateReferences = updateReferences_p;
+    _batch = batch_p;
     _actuallyMerged = new FArrayList<IDifference<E>>();
   }
   
@@ -116,6 +152,14 @@ public class MergeOperation<E> extends AbstractExpensiveOperation {
     return 1 + nbDiffs + (_updateReferences? 1: 0); 
   }
   
+  /**
+   * Return whether the merge operation is performed as a single ordered pass
+   * over the differences selected by a merger
+   */
+  public boolean isBatch() {
+    return isGlobal() && _batch && _comparison instanceof GComparisonImpl<?, ?, ?>;
+  }
+  
   /**
    * Return whether the merge operation is global (based on a merger) or local
    * (based on a predefined subset of the differences)
@@ -130,7 +174,9 @@ public class MergeOperation<E> extends AbstractExpensiveOperation {
   public IStatus run() {
     getMonitor().worked(1);
     IStatus result;
-    if (isGlobal()) {
+    if (isBatch()) {
+      result = runInBatch();
+    } else if (isGlobal()) {
       result = runOnComparison();
     } else {
       result = runOnSet();
@@ -149,6 +195,188 @@ public class MergeOperation<E> extends AbstractExpensiveOperation {
     return result;
   }
   
+  /**
+   * Return the differences among the given ones that cannot be merged in the given
+   * direction, either directly or because of a difference they require
+   * @param differences_p a non-null list of differences which is closed for the given relation
+   * @param requires_p the non-null relation of explicit dependencies in the given direction
+   * @param destination_p TARGET or REFERENCE
+   * @return a non-null, potentially empty set
+   */
+  protected Set<IMergeableDifference<E>> getBlockedDifferences(
+      List<IMergeableDifference<E>> differences_p,
+      IEndorelation<IMergeableDifference<E>> requires_p, Role destination_p) {
+    Set<IMergeableDifference<E>> result = new FHashSet<IMergeableDifference<E>>(
+        IEqualityTester.BY_REFERENCE);
+    Map<IMergeableDifference<E>, List<IMergeableDifference<E>>> requiredBy =
+      new FHashMap<IMergeableDifference<E>, List<IMergeableDifference<E>>>(
+          IEqualityTester.BY_REFERENCE);
+    Deque<IMergeableDifference<E>> toPropagate = new ArrayDeque<IMergeableDifference<E>>();
+    for (IMergeableDifference<E> difference : differences_p) {
+      if (difference.getMergeDestination() != destination_p &&
+          !difference.canMergeTo(destination_p)) {
+        result.add(difference);
+        toPropagate.add(difference);
+      }
+      for (IMergeableDifference<E> required : requires_p.get(difference)) {
+        List<IMergeableDifference<E>> requiring = requiredBy.get(required);
+        if (requiring == null) {
+          requiring = new FArrayList<IMergeableDifference<E>>(
+              IEqualityTester.BY_REFERENCE);
+          requiredBy.put(required, requiring);
+        }
+        requiring.add(difference);
+      }
+    }
+    while (!toPropagate.isEmpty()) {
+      IMergeableDifference<E> blocked = toPropagate.poll();
+      List<IMergeableDifference<E>> requiring = requiredBy.get(blocked);
+      if (requiring != null) {
+        for (IMergeableDifference<E> difference : requiring) {
+          if (result.add(difference)) {
+            toPropagate.add(difference);
+          }
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Merge the given differences in the given direction in a single pass where
+   * every difference comes after the differences it requires
+   * @param selected_p a non-null list of differences selected for the given direction
+   * @param destination_p TARGET or REFERENCE
+   * @param start_p the time in milliseconds at which the merge operation started
+   */
+  protected void mergeInBatch(List<IMergeableDifference<E>> selected_p,
+      Role destination_p, long start_p) {
+    GComparisonImpl<E, ?, ?> comparison = (GComparisonImpl<E, ?, ?>)_comparison;
+    CondensedEndorelation<IMergeableDifference<E>> requires =
+      comparison.getDependencies(destination_p, true);
+    CondensedEndorelation<IMergeableDifference<E>> implies =
+      comparison.getDependencies(destination_p, false);
+    Set<IMergeableDifference<E>> selected = new FHashSet<IMergeableDifference<E>>(
+        selected_p, IEqualityTester.BY_REFERENCE);
+    List<IMergeableDifference<E>> involved = new FArrayList<IMergeableDifference<E>>(
+        selected_p, IEqualityTester.BY_REFERENCE);
+    for (IMergeableDifference<E> required : requires.getTransitiveClosure(selected_p)) {
+      if (!selected.contains(required)) {
+        involved.add(required);
+      }
+    }
+    involved = requires.getTopologicalOrder(involved);
+    Set<IMergeableDifference<E>> blocked = getBlockedDifferences(
+        involved, requires, destination_p);
+    // Differences to merge: selected ones which are not blocked and what they require
+    List<IMergeableDifference<E>> unblocked = new FArrayList<IMergeableDifference<E>>(
+        IEqualityTester.BY_REFERENCE);
+    for (IMergeableDifference<E> difference : selected_p) {
+      if (!blocked.contains(difference)) {
+        unblocked.add(difference);
+      }
+    }
+    Set<IMergeableDifference<E>> toMerge = new FHashSet<IMergeableDifference<E>>(
+        unblocked, IEqualityTester.BY_REFERENCE);
+    toMerge.addAll(requires.getTransitiveClosure(unblocked));
+    // Differences implied by a difference merged before them are only marked as
+    // merged, as mergeTo does: the others are applied even if they are implied by
+    // a difference which comes later, since differences which require them may
+    // come in between
+    Set<IMergeableDifference<E>> implied = new FHashSet<IMergeableDifference<E>>(
+        IEqualityTester.BY_REFERENCE);
+    for (IMergeableDifference<E> difference : involved) {
+      if (!difference.isMerged() && toMerge.contains(difference)) {
+        checkProgress();
+        IMergeableDifference.Editable<E> editable =
+          (IMergeableDifference.Editable<E>)difference;
+        editable.markAsMergedIn(destination_p);
+        if (!implied.contains(difference)) {
+          editable.doMergeIn(destination_p);
+        }
+        registerImplied(difference, implies, implied);
+        _actuallyMerged.add(difference);
+        if (_actuallyMerged.size() % BATCH_PROGRESS_PERIOD == 0) {
+          reportThroughput(start_p);
+        }
+      }
+    }
+    for (IMergeableDifference<E> difference : implied) {
+      if (!difference.isMerged()) {
+        ((IMergeableDifference.Editable<E>)difference).markAsMergedIn(destination_p);
+        _actuallyMerged.add(difference);
+      }
+    }
+  }
+  
+  /**
+   * Register the differences implied by the given one in the given direction,
+   * transitively, as implied by a difference which has been merged
+   * @param difference_p a non-null difference which has been merged
+   * @param implies_p the non-null relation of implicit dependencies in the given direction
+   * @param implied_p the non-null, modifiable set of the differences implied by
+   *          merged differences
+   */
+  protected void registerImplied(IMergeableDifference<E> difference_p,
+      IEndorelation<IMergeableDifference<E>> implies_p,
+      Set<IMergeableDifference<E>> implied_p) {
+    Deque<IMergeableDifference<E>> toPropagate = new ArrayDeque<IMergeableDifference<E>>();
+    toPropagate.add(difference_p);
+    while (!toPropagate.isEmpty()) {
+      IMergeableDifference<E> current = toPropagate.poll();
+      for (IMergeableDifference<E> difference : implies_p.get(current)) {
+        if (implied_p.add(difference)) {
+          toPropagate.add(difference);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Report the number of differences merged so far and the merge throughput
+   * through the progress monitor
+   * @param start_p the time in milliseconds at which the merge operation started
+   */
+  protected void reportThroughput(long start_p) {
+    long duration = Math.max(1, System.currentTimeMillis() - start_p);
+    long throughput = _actuallyMerged.size() * 1000L / duration;
+    getMonitor().subTask(NLS.bind(Messages.MergeOperation_Throughput,
+        Integer.valueOf(_actuallyMerged.size()), Long.valueOf(throughput)));
+  }
+  
+  /**
+   * Run the merge operation on the whole comparison with a merger in batch mode
+   * @see MergeOperation#MergeOperation(IComparison, IMergeSelector, boolean, boolean)
+   * @return a non-null status
+   */
+  protected IStatus runInBatch() {
+    long start = System.currentTimeMillis();
+    Map<Role, List<IMergeableDifference<E>>> selection =
+      new EnumMap<Role, List<IMergeableDifference<E>>>(Role.class);
+    for (IMatch<E> match : _comparison.getMapping().getContents()) {
+      checkProgress();
+      for (IDifference<E> difference : match.getAllDifferences()) {
+        Role mergeDirection = _merger.getMergeDirection(difference);
+        if (mergeDirection != null && difference instanceof IMergeableDifference &&
+            difference.canMergeTo(mergeDirection)) {
+          List<IMergeableDifference<E>> selected = selection.get(mergeDirection);
+          if (selected == null) {
+            selected = new FArrayList<IMergeableDifference<E>>(
+                IEqualityTester.BY_REFERENCE);
+            selection.put(mergeDirection, selected);
+          }
+          selected.add((IMergeableDifference<E>)difference);
+        }
+      }
+      getMonitor().worked(1);
+    }
+    for (Map.Entry<Role, List<IMergeableDifference<E>>> entry : selection.entrySet()) {
+      mergeInBatch(entry.getValue(), entry.getKey(), start);
+    }
+    reportThroughput(start);
+    return Status.OK_STATUS;
+  }
+  
   /**
    * Run the merge operation on the whole comparison with a merger
    * @return a non-null status
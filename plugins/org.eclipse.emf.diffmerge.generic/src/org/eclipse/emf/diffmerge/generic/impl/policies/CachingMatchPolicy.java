@@ -14,27 +14,36 @@ package org.eclipse.emf.diffmerge.generic.impl.policies;
 import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.eclipse.emf.diffmerge.generic.api.IMatchPolicy;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
 
 
 /**
  * A match policy that supports caching of match IDs.
  * Caching is disabled by default. Matching is by unique IDs by default.
+ * Independently of caching, match IDs obtained via getMatchIDThroughMemo are
+ * retained until the end of the current matching phase.
  *
  * @param <E> The type of data elements.
  * 
  * @author Olivier Constant
  */
-public class CachingMatchPolicy<E> extends DefaultMatchPolicy<E> {
+public class CachingMatchPolicy<E> extends DefaultMatchPolicy<E>
+implements IMatchPolicy.WithMemo<E> {
   
   /** An object that represents a null match ID, to distinguish from non-computed or
    * absent match IDs */
   protected static final Object NULL_MATCH_ID = new Object();
   
-  /** The cache for match IDs */
+  /** The cache for match IDs, which must be accessed while synchronized on it */
   protected final Map<E, WeakReference<Object>> _matchCache;
   
+  /** The non-null map from scopes to the match IDs retained for the current matching phase */
+  protected final ConcurrentMap<ITreeDataScope<E>, Map<E, Object>> _matchMemo;
+  
   
   /**
    * Constructor
@@ -42,6 +51,14 @@ public class CachingMatchPolicy<E> extends DefaultMatchPolicy<E> {
   public CachingMatchPolicy() {
     super();
     _matchCache = new WeakHashMap<E, WeakReference<Object>>();
+    _matchMemo = new ConcurrentHashMap<ITreeDataScope<E>, Map<E, Object>>();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IMatchPolicy.WithMemo#clearMemo()
+   */
+  public void clearMemo() {
+    _matchMemo.clear();
   }
   
   /**
@@ -51,7 +68,11 @@ public class CachingMatchPolicy<E> extends DefaultMatchPolicy<E> {
   public Object getMatchID(E element_p,
       ITreeDataScope<E> scope_p) {
     Object result = null;
-    if (!useCache()) {
+    Map<E, Object> memo = _matchMemo.get(scope_p);
+    Object memoized = (memo == null)? null: memo.get(element_p);
+    if (memoized != null) {
+      result = (memoized == NULL_MATCH_ID)? null: memoized;
+    } else if (!useCache()) {
       result = getUncachedMatchID(element_p, scope_p);
     } else {
       result = getMatchIDThroughCache(element_p, scope_p);
@@ -59,6 +80,35 @@ public class CachingMatchPolicy<E> extends DefaultMatchPolicy<E> {
     return result;
   }
   
+  /**
+   * Return the match ID of the given element and retain it until the end of the
+   * current matching phase. This is typically useful for the match IDs of containers
+   * when the match IDs of their children depend on them.
+   * @see IMatchPolicy.WithMemo#clearMemo()
+   * @param element_p a non-null element
+   * @param scope_p a non-null scope
+   * @return a potentially null object
+   */
+  protected Object getMatchIDThroughMemo(E element_p, ITreeDataScope<E> scope_p) {
+    Map<E, Object> memo = _matchMemo.get(scope_p);
+    if (memo == null) {
+      memo = new ConcurrentHashMap<E, Object>();
+      Map<E, Object> existing = _matchMemo.putIfAbsent(scope_p, memo);
+      if (existing != null) {
+        memo = existing;
+      }
+    }
+    Object result;
+    Object memoized = memo.get(element_p);
+    if (memoized == null) {
+      result = getMatchID(element_p, scope_p);
+      memo.put(element_p, (result == null)? NULL_MATCH_ID: result);
+    } else {
+      result = (memoized == NULL_MATCH_ID)? null: memoized;
+    }
+    return result;
+  }
+  
   /**
    * Return the match ID of the given element using the cache
    * @param element_p a non-null element
@@ -68,13 +118,19 @@ public class CachingMatchPolicy<E> extends DefaultMatchPolicy<E> {
   protected Object getMatchIDThroughCache(E element_p,
       ITreeDataScope<E> scope_p) {
     Object result;
-    WeakReference<Object> cachedRef = _matchCache.get(element_p);
+    WeakReference<Object> cachedRef;
+    // The cache is not thread-safe while match IDs may be computed in parallel
+    synchronized (_matchCache) {
+      cachedRef = _matchCache.get(element_p);
+    }
     Object cachedValue = (cachedRef == null)? null: cachedRef.get();
     if (cachedValue == null) {
       // Match ID is not in cache
       result = getUncachedMatchID(element_p, scope_p);
       Object toCache = (result == null)? NULL_MATCH_ID: result;
-      _matchCache.put(element_p, new WeakReference<Object>(toCache));
+      synchronized (_matchCache) {
+        _matchCache.put(element_p, new WeakReference<Object>(toCache));
+      }
     } else {
       // Match ID is in cache
       result = (cachedValue == NULL_MATCH_ID)? null: cachedValue;
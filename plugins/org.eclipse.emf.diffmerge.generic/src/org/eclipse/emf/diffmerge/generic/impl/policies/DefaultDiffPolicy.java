@@ -20,12 +20,25 @@ import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
 /**
  * A typical implementation of IDiffPolicy.
  * It covers everything except orders and out-of-scope values.
+ * Attribute values are used as their own keys unless considerEqual(...) is overridden.
  * 
  * @param <E> The type of data elements.
  * 
  * @author Olivier Constant
  */
-public class DefaultDiffPolicy<E> implements IDiffPolicy<E> {
+public class DefaultDiffPolicy<E> implements IDiffPolicy.Keyed<E> {
+  
+  /** Whether attribute values are compared through Object#equals(Object) */
+  private final boolean _isAttributeEqualityNative;
+  
+  
+  /**
+   * Default constructor
+   */
+  public DefaultDiffPolicy() {
+    _isAttributeEqualityNative = isDeclaredBy(DefaultDiffPolicy.class, "considerEqual", //$NON-NLS-1$
+        Object.class, Object.class, Object.class, ITreeDataScope.class);
+  }
   
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IDiffPolicy#considerEqual(java.lang.Object, java.lang.Object, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
@@ -93,4 +106,43 @@ public class DefaultDiffPolicy<E> implements IDiffPolicy<E> {
     return true;
   }
   
+  /**
+   * Attribute values are their own keys if they are compared through Object#equals(Object),
+   * i.e., if considerEqual(Object, Object, Object, ITreeDataScope) is not overridden.
+   * Subclasses which override considerEqual(...) may override this method consistently.
+   * @see org.eclipse.emf.diffmerge.generic.api.IDiffPolicy.Keyed#getAttributeValueKey(java.lang.Object, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
+   */
+  public Object getAttributeValueKey(Object value_p, Object attribute_p,
+      ITreeDataScope<E> scope_p) {
+    return _isAttributeEqualityNative? value_p: null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IDiffPolicy.Keyed#getOutOfScopeValueKey(java.lang.Object, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
+   */
+  public Object getOutOfScopeValueKey(E outOfScopeValue_p, Object reference_p,
+      ITreeDataScope<E> scope_p) {
+    // Out-of-scope values are never considered equal
+    return null;
+  }
+  
+  /**
+   * Return whether the public method of the given name and parameter types, as
+   * implemented by the class of this policy, is declared by the given class,
+   * i.e., whether it is not overridden by a subclass of the given class
+   * @param class_p a non-null class
+   * @param name_p a non-null method name
+   * @param parameterTypes_p the non-null parameter types of the method
+   */
+  protected boolean isDeclaredBy(Class<?> class_p, String name_p,
+      Class<?>... parameterTypes_p) {
+    boolean result;
+    try {
+      result = getClass().getMethod(name_p, parameterTypes_p).getDeclaringClass() == class_p;
+    } catch (NoSuchMethodException e) {
+      result = false;
+    }
+    return result;
+  }
+  
 }
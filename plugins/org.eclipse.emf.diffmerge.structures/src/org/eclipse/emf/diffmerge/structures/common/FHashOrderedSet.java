@@ -0,0 +1,171 @@
+/*********************************************************************
+ * Copyright (c) 2019 Thales Global Services S.A.S.
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ **********************************************************************/
+package org.eclipse.emf.diffmerge.structures.common;
+
+import java.util.Collection;
+
+import org.eclipse.emf.diffmerge.structures.IEqualityTester;
+
+
+/**
+ * An ordered set which, unlike FOrderedSet, relies on a hash-based index of its
+ * elements so that contains(Object) and add(E) are O(1) instead of O(n).
+ * As for FHashSet, the index relies on the hashing of the equality tester,
+ * which must therefore be consistent with its equality function.
+ * The index is maintained at the cost of memory, so this class is intended for
+ * sets which are large or frequently queried.
+ * The "F" prefix stands for "Flexible".
+ * @see FOrderedSet
+ * @see FHashSet
+ */
+public class FHashOrderedSet<E> extends FOrderedSet<E> {
+
+  /** The serial version ID */
+  private static final long serialVersionUID = 1L;
+
+  /** The index of the elements of this set, null if not computed yet */
+  private transient FHashSet<Object> _index;
+
+
+  /**
+   * Constructor for empty set with default equality tester
+   */
+  public FHashOrderedSet() {
+    super();
+  }
+
+  /**
+   * Constructor for empty set
+   * @param tester_p the equality tester (null for default tester)
+   */
+  public FHashOrderedSet(IEqualityTester tester_p) {
+    super(tester_p);
+  }
+
+  /**
+   * Constructor for empty set with the given initial capacity
+   * @param tester_p the equality tester (null for default tester)
+   */
+  public FHashOrderedSet(int initialCapacity_p, IEqualityTester tester_p) {
+    super(initialCapacity_p, tester_p);
+  }
+
+  /**
+   * Constructor for a set filled with the elements of the given collection
+   * @param collection_p a non-null, potentially empty collection
+   */
+  public FHashOrderedSet(Collection<? extends E> collection_p)  {
+    this(collection_p, null);
+  }
+
+  /**
+   * Constructor for a set filled with the elements of the given collection,
+   * duplicates excepted
+   * @param collection_p a non-null, potentially empty collection
+   * @param tester_p the equality tester (null for default tester)
+   */
+  public FHashOrderedSet(Collection<? extends E> collection_p,
+      IEqualityTester tester_p)  {
+    super(collection_p.size(), tester_p);
+    for (E element : collection_p) {
+      add(element);
+    }
+  }
+
+
+  /**
+   * @see org.eclipse.emf.diffmerge.structures.common.FArrayList#contains(java.lang.Object)
+   */
+  @Override
+  public boolean contains(Object object_p) {
+    return getIndex().contains(object_p);
+  }
+
+  /**
+   * @see org.eclipse.emf.common.util.AbstractEList#didAdd(int, java.lang.Object)
+   */
+  @Override
+  protected void didAdd(int index_p, E newObject_p) {
+    super.didAdd(index_p, newObject_p);
+    getIndex().add(newObject_p);
+  }
+
+  /**
+   * @see org.eclipse.emf.common.util.AbstractEList#didClear(int, java.lang.Object[])
+   */
+  @Override
+  protected void didClear(int size_p, Object[] oldObjects_p) {
+    super.didClear(size_p, oldObjects_p);
+    _index = null;
+  }
+
+  /**
+   * @see org.eclipse.emf.common.util.AbstractEList#didRemove(int, java.lang.Object)
+   */
+  @Override
+  protected void didRemove(int index_p, E oldObject_p) {
+    super.didRemove(index_p, oldObject_p);
+    getIndex().remove(oldObject_p);
+  }
+
+  /**
+   * @see org.eclipse.emf.common.util.AbstractEList#didSet(int, java.lang.Object, java.lang.Object)
+   */
+  @Override
+  protected void didSet(int index_p, E newObject_p, E oldObject_p) {
+    super.didSet(index_p, newObject_p, oldObject_p);
+    FHashSet<Object> index = getIndex();
+    index.remove(oldObject_p);
+    index.add(newObject_p);
+  }
+
+  /**
+   * Return the index of the elements of this set, computing it if needed
+   * @return a non-null set
+   */
+  protected FHashSet<Object> getIndex() {
+    if (_index == null) {
+      _index = new FHashSet<Object>(Math.max((int) (size/.75f) + 1, 16),
+          getEqualityTester());
+      for (int i = 0; i < size; i++) {
+        _index.add(data[i]);
+      }
+    }
+    return _index;
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.structures.common.FArrayList#indexOf(java.lang.Object)
+   */
+  @Override
+  public int indexOf(Object object_p) {
+    return contains(object_p)? super.indexOf(object_p): -1;
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.structures.common.FArrayList#lastIndexOf(java.lang.Object)
+   */
+  @Override
+  public int lastIndexOf(Object object_p) {
+    return indexOf(object_p);
+  }
+
+  /**
+   * @see org.eclipse.emf.common.util.BasicEList#setData(int, java.lang.Object[])
+   */
+  @Override
+  public void setData(int size_p, Object[] data_p) {
+    super.setData(size_p, data_p);
+    _index = null;
+  }
+
+}
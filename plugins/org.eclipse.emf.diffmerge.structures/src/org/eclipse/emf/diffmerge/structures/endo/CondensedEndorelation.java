@@ -0,0 +1,354 @@
+/*********************************************************************
+ * Copyright (c) 2019 Thales Global Services S.A.S.
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ **********************************************************************/
+package org.eclipse.emf.diffmerge.structures.endo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.diffmerge.structures.common.FArrayList;
+import org.eclipse.emf.diffmerge.structures.common.FHashMap;
+import org.eclipse.emf.diffmerge.structures.common.FHashSet;
+
+
+/**
+ * An endorelation that delegates to a given endorelation and which, on the subset
+ * of elements reachable from given origins, precomputes the strongly connected
+ * components of the delegate and the resulting acyclic graph of components.
+ * Transitive closures of elements in that subset are then derived from the acyclic
+ * graph in time proportional to their size instead of being recomputed from scratch.
+ * Elements of a closure are ordered so that every element comes after the elements
+ * it maps to, except within cycles.
+ * The delegate is assumed to remain unchanged on the covered subset.
+ *
+ * @param <T> the type of the elements
+ */
+public class CondensedEndorelation<T> extends AbstractEndorelation<T> {
+
+  /** The non-null endorelation which is condensed */
+  protected final IEndorelation<T> _rule;
+
+  /** The non-null map from covered elements to their indexes */
+  private final Map<T, Integer> _indexes;
+
+  /** The non-null list of covered elements by index */
+  private final List<T> _elements;
+
+  /** The non-null successor indexes of covered elements by index */
+  private final List<int[]> _successors;
+
+  /** The non-null component of covered elements by index, where the index of a
+   *  component is strictly greater than the indexes of the components it maps to */
+  private int[] _componentOf;
+
+  /** The non-null element indexes of each component */
+  private int[][] _componentMembers;
+
+  /** The non-null successor components of each component */
+  private int[][] _componentSuccessors;
+
+  /** The non-null exploration stamps of components for closure computation */
+  private int[] _stamps;
+
+  /** The current exploration stamp */
+  private int _currentStamp;
+
+
+  /**
+   * Constructor
+   * @param origins_p the non-null set of elements from which the covered subset is defined
+   * @param rule_p the non-null endorelation to condense
+   */
+  public CondensedEndorelation(Collection<? extends T> origins_p,
+      IEndorelation<T> rule_p) {
+    super(rule_p.getEqualityTester());
+    _rule = rule_p;
+    _indexes = new FHashMap<T, Integer>(getEqualityTester());
+    _elements = new ArrayList<T>();
+    _successors = new ArrayList<int[]>();
+    _currentStamp = 0;
+    explore(origins_p);
+    condense();
+  }
+
+  /**
+   * Return whether the given element belongs to the subset on which
+   * closures are precomputed
+   * @param element_p a potentially null element
+   */
+  public boolean covers(T element_p) {
+    return _indexes.containsKey(element_p);
+  }
+
+  /**
+   * Compute the strongly connected components of the covered subset and the
+   * acyclic graph of components, according to Tarjan's algorithm.
+   * Implementation is iterative, not recursive, for scalability reasons.
+   */
+  protected void condense() {
+    final int size = _elements.size();
+    int[] order = new int[size];
+    int[] lowLinks = new int[size];
+    boolean[] onStack = new boolean[size];
+    int[] componentOf = new int[size];
+    Arrays.fill(order, -1);
+    int[] stack = new int[size];
+    int stackSize = 0;
+    int[] callStack = new int[size];
+    int[] nextSuccessor = new int[size];
+    int nextOrder = 0;
+    int nbComponents = 0;
+    List<int[]> components = new ArrayList<int[]>();
+    for (int root = 0; root < size; root++) {
+      if (order[root] >= 0) {
+        continue;
+      }
+      int depth = 0;
+      callStack[0] = root;
+      order[root] = nextOrder;
+      lowLinks[root] = nextOrder;
+      nextOrder++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      while (depth >= 0) {
+        int current = callStack[depth];
+        int[] successors = _successors.get(current);
+        if (nextSuccessor[current] < successors.length) {
+          int successor = successors[nextSuccessor[current]++];
+          if (order[successor] < 0) {
+            // Go deeper
+            order[successor] = nextOrder;
+            lowLinks[successor] = nextOrder;
+            nextOrder++;
+            stack[stackSize++] = successor;
+            onStack[successor] = true;
+            callStack[++depth] = successor;
+          } else if (onStack[successor]) {
+            lowLinks[current] = Math.min(lowLinks[current], order[successor]);
+          }
+        } else {
+          // All successors explored: backtrack
+          if (lowLinks[current] == order[current]) {
+            // Current is the root of a component
+            int start = stackSize;
+            do {
+              start--;
+            } while (stack[start] != current);
+            int[] members = Arrays.copyOfRange(stack, start, stackSize);
+            Arrays.sort(members);
+            for (int member : members) {
+              onStack[member] = false;
+              componentOf[member] = nbComponents;
+            }
+            stackSize = start;
+            components.add(members);
+            nbComponents++;
+          }
+          depth--;
+          if (depth >= 0) {
+            int parent = callStack[depth];
+            lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[current]);
+          }
+        }
+      }
+    }
+    _componentOf = componentOf;
+    _componentMembers = components.toArray(new int[nbComponents][]);
+    _componentSuccessors = new int[nbComponents][];
+    int[] lastSeen = new int[nbComponents];
+    Arrays.fill(lastSeen, -1);
+    for (int component = 0; component < nbComponents; component++) {
+      int[] buffer = new int[0];
+      int nbSuccessors = 0;
+      for (int member : _componentMembers[component]) {
+        for (int successor : _successors.get(member)) {
+          int target = componentOf[successor];
+          if (lastSeen[target] != component) {
+            lastSeen[target] = component;
+            if (nbSuccessors == buffer.length) {
+              buffer = Arrays.copyOf(buffer, Math.max(4, 2 * nbSuccessors));
+            }
+            buffer[nbSuccessors++] = target;
+          }
+        }
+      }
+      _componentSuccessors[component] = Arrays.copyOf(buffer, nbSuccessors);
+    }
+    _stamps = new int[nbComponents];
+  }
+
+  /**
+   * Register the elements which are reachable from the given ones
+   * @param origins_p a non-null collection
+   */
+  protected void explore(Collection<? extends T> origins_p) {
+    for (T origin : origins_p) {
+      indexOf(origin);
+    }
+    // The list of elements grows while it is being explored
+    for (int i = 0; i < _elements.size(); i++) {
+      Collection<T> targets = _rule.get(_elements.get(i));
+      int[] successors = new int[targets.size()];
+      int j = 0;
+      for (T target : targets) {
+        successors[j++] = indexOf(target);
+      }
+      _successors.add(successors);
+    }
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.structures.binary.IBinaryRelation#get(java.lang.Object)
+   */
+  public Collection<T> get(T element_p) {
+    return _rule.get(element_p);
+  }
+
+  /**
+   * Return the endorelation which is condensed
+   * @return a non-null endorelation
+   */
+  public IEndorelation<T> getRule() {
+    return _rule;
+  }
+
+  /**
+   * Return the given elements ordered so that every element comes after the elements
+   * it transitively maps to, except within cycles. Elements which are not covered
+   * come last in their original order.
+   * @param elements_p a non-null collection
+   * @return a non-null, modifiable list
+   */
+  public List<T> getTopologicalOrder(Collection<? extends T> elements_p) {
+    long[] keys = new long[elements_p.size()];
+    List<T> uncovered = new ArrayList<T>();
+    int nbCovered = 0;
+    for (T element : elements_p) {
+      Integer index = _indexes.get(element);
+      if (index == null) {
+        uncovered.add(element);
+      } else {
+        int value = index.intValue();
+        keys[nbCovered++] = ((long) _componentOf[value] << 32) | value;
+      }
+    }
+    Arrays.sort(keys, 0, nbCovered);
+    List<T> result = new FArrayList<T>(elements_p.size(), getEqualityTester());
+    for (int i = 0; i < nbCovered; i++) {
+      result.add(_elements.get((int) keys[i]));
+    }
+    result.addAll(uncovered);
+    return result;
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.structures.endo.AbstractEndorelation#getTransitiveClosure(java.lang.Object)
+   */
+  @Override
+  public List<T> getTransitiveClosure(T element_p) {
+    return getTransitiveClosure(Collections.singleton(element_p));
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.structures.endo.AbstractEndorelation#getTransitiveClosure(java.util.Collection)
+   */
+  @Override
+  public List<T> getTransitiveClosure(Collection<? extends T> elements_p) {
+    for (T element : elements_p) {
+      if (!covers(element)) {
+        return super.getTransitiveClosure(elements_p);
+      }
+    }
+    int[] reached = reachableComponents(elements_p);
+    Arrays.sort(reached);
+    Collection<T> excluded = new FHashSet<T>(elements_p, getEqualityTester());
+    List<T> result = new FArrayList<T>(getEqualityTester());
+    for (int component : reached) {
+      for (int member : _componentMembers[component]) {
+        T element = _elements.get(member);
+        if (!excluded.contains(element)) {
+          result.add(element);
+        }
+      }
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Return the index of the given element, registering it if needed
+   * @param element_p a non-null element
+   * @return a positive int
+   */
+  protected int indexOf(T element_p) {
+    Integer result = _indexes.get(element_p);
+    if (result == null) {
+      result = Integer.valueOf(_elements.size());
+      _indexes.put(element_p, result);
+      _elements.add(element_p);
+    }
+    return result.intValue();
+  }
+
+  /**
+   * Return the components which are reachable from the given covered elements
+   * through at least one step
+   * @param elements_p a non-null collection of covered elements
+   * @return a non-null, potentially empty array of distinct components
+   */
+  protected synchronized int[] reachableComponents(
+      Collection<? extends T> elements_p) {
+    _currentStamp++;
+    if (_currentStamp == 0) {
+      // Overflow: reset stamps
+      Arrays.fill(_stamps, 0);
+      _currentStamp = 1;
+    }
+    int[] result = new int[16];
+    int nbReached = 0;
+    int[] toExplore = new int[16];
+    int nbToExplore = 0;
+    for (T element : elements_p) {
+      int index = _indexes.get(element).intValue();
+      for (int successor : _successors.get(index)) {
+        int component = _componentOf[successor];
+        if (_stamps[component] != _currentStamp) {
+          _stamps[component] = _currentStamp;
+          if (nbToExplore == toExplore.length) {
+            toExplore = Arrays.copyOf(toExplore, 2 * nbToExplore);
+          }
+          toExplore[nbToExplore++] = component;
+        }
+      }
+    }
+    while (nbToExplore > 0) {
+      int current = toExplore[--nbToExplore];
+      if (nbReached == result.length) {
+        result = Arrays.copyOf(result, 2 * nbReached);
+      }
+      result[nbReached++] = current;
+      for (int successor : _componentSuccessors[current]) {
+        if (_stamps[successor] != _currentStamp) {
+          _stamps[successor] = _currentStamp;
+          if (nbToExplore == toExplore.length) {
+            toExplore = Arrays.copyOf(toExplore, 2 * nbToExplore);
+          }
+          toExplore[nbToExplore++] = successor;
+        }
+      }
+    }
+    return Arrays.copyOf(result, nbReached);
+  }
+
+}
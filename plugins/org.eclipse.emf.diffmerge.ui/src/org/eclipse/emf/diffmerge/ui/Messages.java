@@ -186,13 +186,16 @@ public class Messages extends NLS {
   public static String EMFDiffMergeEditorInput_LeftScopeNull;
   public static String EMFDiffMergeEditorInput_Loading;
   public static String EMFDiffMergeEditorInput_LoadingAncestor;
+  public static String EMFDiffMergeEditorInput_LoadingDuration;
   public static String EMFDiffMergeEditorInput_LoadingLeft;
+  public static String EMFDiffMergeEditorInput_LoadingParallel;
   public static String EMFDiffMergeEditorInput_LoadingRight;
   public static String EMFDiffMergeEditorInput_MigrationNeeded;
   public static String InconsistencyDialog_ReferenceScope;
   public static String EMFDiffMergeEditorInput_RightScopeNull;
   public static String InconsistencyDialog_TargetScope;
   public static String EMFDiffMergeEditorInput_Title;
+  public static String EMFDiffMergeEditorInput_Unloading;
   public static String EMFDiffMergeEditorInput_WrongMetamodel;
   public static String EMFDiffMergeLabelProvider_Addition;
   public static String EMFDiffMergeLabelProvider_AdditionInto;
@@ -207,6 +210,7 @@ public class Messages extends NLS {
   public static String EMFDiffMergeLabelProvider_ValueAddition;
   public static String EMFDiffMergeLabelProvider_ValueDeletion;
   public static String EMFDiffMergeUIPlugin_Label;
+  public static String EMFDiffNode_Filtering;
   public static String DefaultComparisonMethodFactory_Label;
   public static String EnhancedComparisonTreeViewer_DefaultHeader;
   public static String EnhancedFeaturesViewer_DetailsWithSelection;
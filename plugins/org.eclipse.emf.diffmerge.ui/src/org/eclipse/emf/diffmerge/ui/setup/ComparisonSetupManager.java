@@ -94,13 +94,29 @@ public class ComparisonSetupManager {
       ComparisonSetup setup =
           createComparisonSetup(entrypoint1_p, entrypoint2_p, entrypoint3_p);
       if (setup != null && setup.getComparisonMethod() != null)
-        result = new EMFDiffMergeEditorInput(setup.getComparisonMethod());
+        result = createEditorInput(setup.getComparisonMethod());
     } catch (IllegalArgumentException e) {
       handleSetupError(null, e.getLocalizedMessage());
     }
     return result;
   }
   
+  /**
+   * Create and return a compare editor input for the given comparison method.
+   * Scopes are loaded sequentially, fragments are kept after comparison and scopes are
+   * unloaded synchronously: clients may override this method to opt in to concurrent
+   * loading, to background unloading or to the release of fragments which are not
+   * involved in differences, which may change the results of merges.
+   * @see EMFDiffMergeEditorInput#setParallelLoading(boolean)
+   * @see EMFDiffMergeEditorInput#setBackgroundUnloading(boolean)
+   * @see EMFDiffMergeEditorInput#setFragmentReleasing(boolean)
+   * @param method_p a non-null comparison method
+   * @return a non-null object
+   */
+  public EMFDiffMergeEditorInput createEditorInput(IComparisonMethod<?> method_p) {
+    return new EMFDiffMergeEditorInput(method_p);
+  }
+  
   /**
    * Create and return a compare editor input as a result of user interactions
    * for the given entry points, if possible
@@ -136,7 +152,7 @@ public class ComparisonSetupManager {
     if (setup_p != null) {
       IComparisonMethod<?> method = openSetupWizard(shell_p, setup_p);
       if (method != null)
-        result = new EMFDiffMergeEditorInput(method);
+        result = createEditorInput(method);
     } else {
       handleSetupError(shell_p, null);
     }
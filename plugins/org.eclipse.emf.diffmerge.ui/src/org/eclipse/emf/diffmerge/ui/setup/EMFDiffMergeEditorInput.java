@@ -12,11 +12,24 @@
 package org.eclipse.emf.diffmerge.ui.setup;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EventObject;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.compare.CompareConfiguration;
 import org.eclipse.compare.CompareEditorInput;
@@ -25,10 +38,14 @@ import org.eclipse.compare.INavigatable;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.common.command.CommandStackListener;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.common.util.WrappedException;
+import org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope;
+import org.eclipse.emf.diffmerge.diffdata.EComparison;
 import org.eclipse.emf.diffmerge.generic.api.IComparison;
 import org.eclipse.emf.diffmerge.generic.api.IDiffPolicy;
 import org.eclipse.emf.diffmerge.generic.api.IMatchPolicy;
@@ -37,6 +54,8 @@ import org.eclipse.emf.diffmerge.generic.api.Role;
 import org.eclipse.emf.diffmerge.generic.api.scopes.IEditableTreeDataScope;
 import org.eclipse.emf.diffmerge.generic.api.scopes.IPersistentDataScope;
 import org.eclipse.emf.diffmerge.generic.gdiffdata.GComparison;
+import org.eclipse.emf.diffmerge.impl.helpers.FragmentReleaser;
+import org.eclipse.emf.diffmerge.impl.scopes.FragmentedModelScope;
 import org.eclipse.emf.diffmerge.ui.EMFDiffMergeUIPlugin;
 import org.eclipse.emf.diffmerge.ui.Messages;
 import org.eclipse.emf.diffmerge.ui.diffuidata.UIComparison;
@@ -47,20 +66,24 @@ import org.eclipse.emf.diffmerge.ui.util.MiscUtil;
 import org.eclipse.emf.diffmerge.ui.util.MiscUtil.ExtendedUnloader;
 import org.eclipse.emf.diffmerge.ui.viewers.AbstractComparisonViewer;
 import org.eclipse.emf.diffmerge.ui.viewers.EMFDiffNode;
+import org.eclipse.emf.ecore.impl.EPackageRegistryImpl;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.xmi.PackageNotFoundException;
 import org.eclipse.emf.edit.domain.AdapterFactoryEditingDomain;
 import org.eclipse.emf.edit.domain.EditingDomain;
 import org.eclipse.emf.edit.domain.IEditingDomainProvider;
 import org.eclipse.emf.edit.ui.provider.AdapterFactoryContentProvider;
 import org.eclipse.emf.edit.ui.view.ExtendedPropertySheetPage;
+import org.eclipse.emf.transaction.TransactionalEditingDomain;
 import org.eclipse.jface.action.ToolBarManager;
 import org.eclipse.jface.dialogs.IDialogConstants;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
@@ -112,6 +135,18 @@ implements IEditingDomainProvider {
   /** Whether the editor is dirty (required for compatibility with Indigo) */ //OCO
   private boolean _isDirty;
   
+  /** Whether scopes must be loaded concurrently when possible (initially false) */
+  private boolean _parallelLoading;
+  
+  /** Whether scopes must be unloaded in a background job when possible (initially false) */
+  private boolean _backgroundUnloading;
+  
+  /** Whether fragments without differences must be released after comparison (initially false) */
+  private boolean _fragmentReleasing;
+  
+  /** The non-null, thread-safe map from roles to the loading durations of their scopes in ms */
+  private final Map<Role, Long> _loadingDurations;
+  
   /** The (initially null) property sheet page to show in the Properties view */
   protected PropertySheetPage _propertySheetPage;
   
@@ -135,10 +170,27 @@ implements IEditingDomainProvider {
     _comparisonResource = null;
     _foundDifferences = true;
     _isDirty = false;
+    _parallelLoading = false;
+    _backgroundUnloading = false;
+    _fragmentReleasing = false;
+    _loadingDurations = Collections.synchronizedMap(new EnumMap<Role, Long>(Role.class));
     _navigator = createNavigator();
     initializeCompareConfiguration();
   }
   
+  /**
+   * Return whether the scopes can be loaded in resource sets of their own which are
+   * bound to the given editing domain instead of its resource set.
+   * This is only the case for a non-transactional editing domain which is dedicated
+   * to the comparison, since the resources of the scopes are then of no concern to
+   * other clients of the editing domain.
+   * @param domain_p a non-null editing domain
+   */
+  protected boolean canLoadOutsideEditingDomain(EditingDomain domain_p) {
+    return _comparisonMethod.isDedicatedEditingDomain() &&
+        !(domain_p instanceof TransactionalEditingDomain);
+  }
+  
   /**
    * @see org.eclipse.compare.CompareEditorInput#canRunAsJob()
    */
@@ -217,6 +269,20 @@ implements IEditingDomainProvider {
     return _viewer.getControl();
   }
   
+  /**
+   * Return whether the resources which have been added during the comparison process
+   * can be unloaded in a background job. This requires that the editing domain, if any,
+   * be dedicated to the comparison: the job then runs write transactions on a domain
+   * that no other client uses, while it would otherwise compete with the editors of
+   * the domain. Disconnecting the resources from the domain and disposing the
+   * comparison method remain in the UI thread.
+   * @see EMFDiffMergeEditorInput#setBackgroundUnloading(boolean)
+   */
+  protected boolean canUnloadInBackground() {
+    return isBackgroundUnloading() && _comparisonMethod != null &&
+        (getEditingDomain() == null || _comparisonMethod.isDedicatedEditingDomain());
+  }
+  
   /**
    * Create and return a navigator
    * @see EMFDiffMergeEditorInput#getNavigator()
@@ -237,6 +303,30 @@ implements IEditingDomainProvider {
     };
   }
   
+  /**
+   * Create and return a resource set in which the scope that plays the given role
+   * can be loaded independently of the other scopes, on behalf of the given editing domain.
+   * The configuration of the resource set of the editing domain is copied so that
+   * resources are loaded in the same way.
+   * @param role_p a non-null role
+   * @param domain_p a non-null editing domain
+   * @return a non-null resource set
+   */
+  protected ResourceSet createParallelLoadingResourceSet(Role role_p,
+      EditingDomain domain_p) {
+    ResourceSet shared = domain_p.getResourceSet();
+    ResourceSet result = new ParallelLoadingResourceSet(domain_p);
+    result.getURIConverter().getURIMap().putAll(shared.getURIConverter().getURIMap());
+    Resource.Factory.Registry sharedRegistry = shared.getResourceFactoryRegistry();
+    Resource.Factory.Registry registry = result.getResourceFactoryRegistry();
+    registry.getExtensionToFactoryMap().putAll(sharedRegistry.getExtensionToFactoryMap());
+    registry.getProtocolToFactoryMap().putAll(sharedRegistry.getProtocolToFactoryMap());
+    registry.getContentTypeToFactoryMap().putAll(sharedRegistry.getContentTypeToFactoryMap());
+    result.setPackageRegistry(new EPackageRegistryImpl(shared.getPackageRegistry()));
+    result.getLoadOptions().putAll(shared.getLoadOptions());
+    return result;
+  }
+  
   /**
    * Generate a title for the editor
    * @return a potentially null string
@@ -437,9 +527,13 @@ implements IEditingDomainProvider {
       public void run() {
         if (getCompareResult() != null)
           getCompareResult().dispose();
-        disposeResources();
-        if (_comparisonMethod != null)
-          _comparisonMethod.dispose();
+        if (canUnloadInBackground()) {
+          scheduleUnloading();
+        } else {
+          disposeResources();
+          if (_comparisonMethod != null)
+            _comparisonMethod.dispose();
+        }
         _comparisonMethod = null;
         _ancestorScope = null;
         _leftScope = null;
@@ -566,6 +660,19 @@ implements IEditingDomainProvider {
     EditingDomain domain = getEditingDomain();
     boolean threeWay = _comparisonMethod.isThreeWay();
     Role leftRole = getLeftRole();
+    if (isParallelLoading()) {
+      List<Role> roles = new LinkedList<Role>();
+      roles.add(leftRole);
+      roles.add(leftRole.opposite());
+      if (threeWay) {
+        roles.add(Role.ANCESTOR);
+      }
+      Map<Role, ResourceSet> contexts = getParallelLoadingContexts(roles);
+      if (contexts != null) {
+        loadScopesInParallel(contexts, monitor_p);
+        return;
+      }
+    }
     String mainTaskName = Messages.EMFDiffMergeEditorInput_Loading;
     SubMonitor loadingMonitor = SubMonitor.convert(
         monitor_p, mainTaskName, threeWay ? 4 : 3);
@@ -574,15 +681,8 @@ implements IEditingDomainProvider {
     loadingMonitor.subTask(Messages.EMFDiffMergeEditorInput_LoadingLeft);
     Object leftLoadingContext = (domain != null)? domain:
       _comparisonMethod.getResourceSet(leftRole);
-    _leftScope = _comparisonMethod.getModelScopeDefinition(leftRole).createScope(
-        leftLoadingContext);
-    if (_leftScope == null) {
-      throw new RuntimeException(Messages.EMFDiffMergeEditorInput_LeftScopeNull);
-    }
-    if (_leftScope instanceof IPersistentDataScope<?>) {
-      IStatus status = ((IPersistentDataScope<?>)_leftScope).load();
-      checkStatus(status);
-    }
+    _leftScope = createAndLoadScope(leftRole, leftLoadingContext,
+        Messages.EMFDiffMergeEditorInput_LeftScopeNull);
     loadingMonitor.worked(1);
     if (loadingMonitor.isCanceled()) {
       throw new OperationCanceledException();
@@ -591,15 +691,8 @@ implements IEditingDomainProvider {
     loadingMonitor.subTask(Messages.EMFDiffMergeEditorInput_LoadingRight);
     Object rightLoadingContext = (domain != null)? domain: _comparisonMethod.getResourceSet(
         leftRole.opposite());
-    _rightScope = _comparisonMethod.getModelScopeDefinition(leftRole.opposite()).createScope(
-        rightLoadingContext);
-    if (_rightScope == null) {
-      throw new RuntimeException(Messages.EMFDiffMergeEditorInput_RightScopeNull);
-    }
-    if (_rightScope instanceof IPersistentDataScope<?>) {
-      IStatus status = ((IPersistentDataScope<?>)_rightScope).load();
-      checkStatus(status);
-    }
+    _rightScope = createAndLoadScope(leftRole.opposite(), rightLoadingContext,
+        Messages.EMFDiffMergeEditorInput_RightScopeNull);
     loadingMonitor.worked(1);
     if (loadingMonitor.isCanceled()) {
       throw new OperationCanceledException();
@@ -609,15 +702,8 @@ implements IEditingDomainProvider {
       loadingMonitor.subTask(Messages.EMFDiffMergeEditorInput_LoadingAncestor);
       Object ancestorLoadingContext = (domain != null)? domain:
         _comparisonMethod.getResourceSet(Role.ANCESTOR);
-      _ancestorScope = _comparisonMethod.getModelScopeDefinition(Role.ANCESTOR).createScope(
-          ancestorLoadingContext);
-      if (_ancestorScope == null) {
-        throw new RuntimeException(Messages.EMFDiffMergeEditorInput_AncestorScopeNull);
-      }
-      if (_ancestorScope instanceof IPersistentDataScope<?>) {
-        IStatus status = ((IPersistentDataScope<?>)_ancestorScope).load();
-        checkStatus(status);
-      }
+      _ancestorScope = createAndLoadScope(Role.ANCESTOR, ancestorLoadingContext,
+          Messages.EMFDiffMergeEditorInput_AncestorScopeNull);
       loadingMonitor.worked(1);
       if (loadingMonitor.isCanceled()) {
         throw new OperationCanceledException();
@@ -625,6 +711,181 @@ implements IEditingDomainProvider {
     }
   }
   
+  /**
+   * Create and load the scope that plays the given role
+   * @param role_p a non-null role
+   * @param loadingContext_p a non-null editing domain or resource set for loading the scope
+   * @param nullScopeMessage_p the non-null message to use if no scope can be created
+   * @return a non-null scope
+   */
+  protected IEditableTreeDataScope<?> createAndLoadScope(Role role_p,
+      Object loadingContext_p, String nullScopeMessage_p) {
+    long start = System.currentTimeMillis();
+    IEditableTreeDataScope<?> result =
+        _comparisonMethod.getModelScopeDefinition(role_p).createScope(loadingContext_p);
+    if (result == null) {
+      throw new RuntimeException(nullScopeMessage_p);
+    }
+    if (result instanceof IPersistentDataScope<?>) {
+      IStatus status = ((IPersistentDataScope<?>)result).load();
+      checkStatus(status);
+    }
+    _loadingDurations.put(role_p, Long.valueOf(System.currentTimeMillis() - start));
+    return result;
+  }
+  
+  /**
+   * Return the time that was needed to create and load the scope that plays the given role
+   * @param role_p a non-null role
+   * @return a duration in milliseconds, or -1 if the scope has not been loaded
+   */
+  public long getLoadingDuration(Role role_p) {
+    Long result = _loadingDurations.get(role_p);
+    return result == null? -1: result.longValue();
+  }
+  
+  /**
+   * Return the contexts in which the scopes must be loaded, or null if they cannot
+   * be loaded concurrently. Concurrent loading requires that every scope be loaded
+   * in its own resource set since resource sets are not thread-safe.
+   * If there is an editing domain, every scope is loaded in a resource set of its own
+   * which is bound to the editing domain, provided that the editing domain allows it.
+   * @see EMFDiffMergeEditorInput#canLoadOutsideEditingDomain(EditingDomain)
+   * @param roles_p the non-null, non-empty roles of the scopes to load
+   * @return a potentially null map from roles to resource sets
+   */
+  protected Map<Role, ResourceSet> getParallelLoadingContexts(List<Role> roles_p) {
+    EditingDomain domain = getEditingDomain();
+    if (domain != null && !canLoadOutsideEditingDomain(domain)) {
+      // The scopes must share the resource set of the editing domain
+      return null;
+    }
+    Map<Role, ResourceSet> result = new EnumMap<Role, ResourceSet>(Role.class);
+    Set<ResourceSet> resourceSets = new HashSet<ResourceSet>();
+    for (Role role : roles_p) {
+      ResourceSet resourceSet = (domain != null)?
+          createParallelLoadingResourceSet(role, domain):
+            _comparisonMethod.getResourceSet(role);
+      if (resourceSet == null || !resourceSets.add(resourceSet)) {
+        return null;
+      }
+      result.put(role, resourceSet);
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether scopes must be unloaded in a background job when possible
+   * @see EMFDiffMergeEditorInput#canUnloadInBackground()
+   */
+  public boolean isBackgroundUnloading() {
+    return _backgroundUnloading;
+  }
+  
+  /**
+   * Return whether fragments which are not involved in differences must be released
+   * once the comparison is computed
+   * @see EMFDiffMergeEditorInput#releaseFragments(GComparison)
+   */
+  public boolean isFragmentReleasing() {
+    return _fragmentReleasing;
+  }
+  
+  /**
+   * Return whether scopes must be loaded concurrently when possible
+   * @see EMFDiffMergeEditorInput#getParallelLoadingContexts(List)
+   */
+  public boolean isParallelLoading() {
+    return _parallelLoading;
+  }
+  
+  /**
+   * Load the model scopes concurrently, each one in its own resource set
+   * @param contexts_p the non-null, non-empty map from the roles of the scopes to load
+   *          to their resource sets
+   * @param monitor_p a non-null monitor for reporting progress
+   */
+  protected void loadScopesInParallel(Map<Role, ResourceSet> contexts_p,
+      IProgressMonitor monitor_p) {
+    final Role leftRole = getLeftRole();
+    SubMonitor loadingMonitor = SubMonitor.convert(
+        monitor_p, Messages.EMFDiffMergeEditorInput_Loading, contexts_p.size() + 1);
+    loadingMonitor.worked(1);
+    loadingMonitor.subTask(Messages.EMFDiffMergeEditorInput_LoadingParallel);
+    ExecutorService executor = Executors.newFixedThreadPool(contexts_p.size());
+    Map<Role, Future<IEditableTreeDataScope<?>>> futures =
+        new EnumMap<Role, Future<IEditableTreeDataScope<?>>>(Role.class);
+    for (Map.Entry<Role, ResourceSet> entry : contexts_p.entrySet()) {
+      final Role role = entry.getKey();
+      final ResourceSet context = entry.getValue();
+      final String nullScopeMessage = role == Role.ANCESTOR?
+          Messages.EMFDiffMergeEditorInput_AncestorScopeNull: role == leftRole?
+              Messages.EMFDiffMergeEditorInput_LeftScopeNull:
+                Messages.EMFDiffMergeEditorInput_RightScopeNull;
+      futures.put(role, executor.submit(new Callable<IEditableTreeDataScope<?>>() {
+        /**
+         * @see java.util.concurrent.Callable#call()
+         */
+        public IEditableTreeDataScope<?> call() throws Exception {
+          return createAndLoadScope(role, context, nullScopeMessage);
+        }
+      }));
+    }
+    executor.shutdown();
+    boolean canceled = false;
+    boolean interrupted = false;
+    Throwable failure = null;
+    for (Map.Entry<Role, Future<IEditableTreeDataScope<?>>> entry : futures.entrySet()) {
+      Role role = entry.getKey();
+      IEditableTreeDataScope<?> scope = null;
+      boolean done = false;
+      // Loading cannot be interrupted: in case of cancellation, interruption or failure,
+      // wait for every loading to end so that loaded scopes are unloaded when disposing
+      while (!done) {
+        try {
+          scope = entry.getValue().get(100, TimeUnit.MILLISECONDS);
+          done = true;
+        } catch (TimeoutException e) {
+          canceled = canceled || loadingMonitor.isCanceled();
+        } catch (InterruptedException e) {
+          interrupted = true;
+          canceled = true;
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+          }
+          done = true;
+        }
+      }
+      if (scope != null) {
+        if (role == Role.ANCESTOR) {
+          _ancestorScope = scope;
+        } else if (role == leftRole) {
+          _leftScope = scope;
+        } else {
+          _rightScope = scope;
+        }
+        loadingMonitor.subTask(NLS.bind(Messages.EMFDiffMergeEditorInput_LoadingDuration,
+            _comparisonMethod.getModelScopeDefinition(role).getShortLabel(),
+            Long.valueOf(getLoadingDuration(role))));
+        loadingMonitor.worked(1);
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException)failure;
+    } else if (failure instanceof Error) {
+      throw (Error)failure;
+    } else if (failure != null) {
+      throw new WrappedException((Exception)failure);
+    }
+    if (canceled || loadingMonitor.isCanceled()) {
+      throw new OperationCanceledException();
+    }
+  }
+  
   /**
    * Return whether merge can be considered complete
    */
@@ -658,6 +919,8 @@ implements IEditingDomainProvider {
       checkInconsistency(comparison);
       _foundDifferences = comparison.hasRemainingDifferences();
       if (_foundDifferences) {
+        if (isFragmentReleasing())
+          releaseFragments(comparison);
         result = initializeDiffNode(comparison);
       } else {
         handleDispose();
@@ -710,6 +973,20 @@ implements IEditingDomainProvider {
     }
   }
   
+  /**
+   * Release the fragments of the scopes of the given computed comparison which are not
+   * involved in differences, and remove the matches that they held from the comparison.
+   * This only concerns comparisons of EMF models whose scopes are fully explored
+   * fragmented model scopes, and it bounds the memory retained while the comparison is open.
+   * @see FragmentReleaser
+   * @param comparison_p a non-null comparison which has been computed
+   */
+  protected void releaseFragments(GComparison<?,?,?> comparison_p) {
+    if (comparison_p instanceof EComparison) {
+      new FragmentReleaser((EComparison)comparison_p).releaseAll();
+    }
+  }
+  
   /**
    * @see org.eclipse.compare.CompareEditorInput#run(org.eclipse.core.runtime.IProgressMonitor)
    */
@@ -742,6 +1019,40 @@ implements IEditingDomainProvider {
     }
   }
   
+  /**
+   * Schedule the unloading of the resources which have been added during the comparison
+   * process in a background job, after which the resources are disconnected and the
+   * comparison method is disposed in the UI thread.
+   * Precondition: canUnloadInBackground()
+   */
+  protected void scheduleUnloading() {
+    List<IEditableTreeDataScope<?>> scopes = new ArrayList<IEditableTreeDataScope<?>>();
+    if (_leftScope != null)
+      scopes.add(_leftScope);
+    if (_rightScope != null)
+      scopes.add(_rightScope);
+    if (_ancestorScope != null)
+      scopes.add(_ancestorScope);
+    EditingDomain domain = getEditingDomain();
+    if (domain != null) {
+      // The commands of the comparison refer to the scopes: forget them in the UI thread
+      domain.getCommandStack().flush();
+    }
+    Job job = new UnloadingJob(_comparisonMethod, domain,
+        _comparisonResource, scopes, Display.getDefault());
+    job.schedule();
+  }
+  
+  /**
+   * Set whether scopes must be unloaded in a background job when possible, so that
+   * closing a comparison does not block the UI
+   * @see EMFDiffMergeEditorInput#canUnloadInBackground()
+   * @param backgroundUnloading_p whether scopes must be unloaded in a background job
+   */
+  public void setBackgroundUnloading(boolean backgroundUnloading_p) {
+    _backgroundUnloading = backgroundUnloading_p;
+  }
+  
   /**
    * Update the comparison method
    * @param comparisonMethod_p a non-null comparison method
@@ -772,6 +1083,27 @@ implements IEditingDomainProvider {
     }
   }
   
+  /**
+   * Set whether fragments which are not involved in differences must be released once
+   * the comparison is computed, so that large fragmented models do not remain entirely
+   * in memory while the comparison is open
+   * @see EMFDiffMergeEditorInput#releaseFragments(GComparison)
+   * @param fragmentReleasing_p whether fragments must be released
+   */
+  public void setFragmentReleasing(boolean fragmentReleasing_p) {
+    _fragmentReleasing = fragmentReleasing_p;
+  }
+  
+  /**
+   * Set whether scopes must be loaded concurrently when possible, that is, when every
+   * scope is loaded in its own resource set
+   * @see EMFDiffMergeEditorInput#getParallelLoadingContexts(List)
+   * @param parallelLoading_p whether scopes must be loaded concurrently
+   */
+  public void setParallelLoading(boolean parallelLoading_p) {
+    _parallelLoading = parallelLoading_p;
+  }
+  
   /**
    * @see org.eclipse.compare.CompareEditorInput#setFocus2()
    */
@@ -784,6 +1116,29 @@ implements IEditingDomainProvider {
   }
   
   
+  /**
+   * A resource set in which a scope is loaded concurrently with other scopes
+   * on behalf of an editing domain.
+   */
+  protected static class ParallelLoadingResourceSet extends ResourceSetImpl
+  implements IEditingDomainProvider {
+    /** The non-null editing domain on behalf of which resources are loaded */
+    private final EditingDomain _editingDomain;
+    /**
+     * Constructor
+     * @param editingDomain_p the non-null editing domain on behalf of which resources are loaded
+     */
+    public ParallelLoadingResourceSet(EditingDomain editingDomain_p) {
+      _editingDomain = editingDomain_p;
+    }
+    /**
+     * @see org.eclipse.emf.edit.domain.IEditingDomainProvider#getEditingDomain()
+     */
+    public EditingDomain getEditingDomain() {
+      return _editingDomain;
+    }
+  }
+  
   /**
    * A slightly enhanced property sheet page for model elements.
    */
@@ -856,4 +1211,295 @@ implements IEditingDomainProvider {
     }
   }
   
+  
+  /**
+   * The job that unloads the resources which have been added during the comparison
+   * process. Scopes are unloaded concurrently when their resources belong to different
+   * resource sets, and fragmented model scopes are unloaded resource by resource.
+   * The unloaded resources are then disconnected and the comparison method is disposed
+   * in the UI thread, since these operations involve the workbench.
+   * It does not reference the editor input so that the editor input can be garbage
+   * collected while unloading is in progress. It cannot be canceled since the
+   * resources must be disposed.
+   * @see EMFDiffMergeEditorInput#scheduleUnloading()
+   */
+  protected static class UnloadingJob extends Job {
+    /** The potentially null comparison method to dispose */
+    protected final IComparisonMethod<?> _comparisonMethod;
+    /** The potentially null editing domain, dedicated to the comparison, of the scopes */
+    protected final EditingDomain _editingDomain;
+    /** The potentially null resource that holds the comparison */
+    protected final Resource _comparisonResource;
+    /** The non-null, potentially empty list of the scopes to unload */
+    protected final List<IEditableTreeDataScope<?>> _scopes;
+    /** The non-null display in whose thread unloading is completed */
+    protected final Display _display;
+    /**
+     * Constructor
+     * @param comparisonMethod_p a potentially null comparison method to dispose
+     * @param editingDomain_p a potentially null editing domain which is dedicated to the
+     *          comparison and whose command stack has been flushed
+     * @param comparisonResource_p a potentially null resource that holds the comparison
+     * @param scopes_p a non-null, potentially empty collection of scopes to unload
+     * @param display_p the non-null display in whose thread unloading must be completed
+     */
+    public UnloadingJob(IComparisonMethod<?> comparisonMethod_p,
+        EditingDomain editingDomain_p, Resource comparisonResource_p,
+        Collection<? extends IEditableTreeDataScope<?>> scopes_p, Display display_p) {
+      super(Messages.EMFDiffMergeEditorInput_Unloading);
+      _comparisonMethod = comparisonMethod_p;
+      _editingDomain = editingDomain_p;
+      _comparisonResource = comparisonResource_p;
+      _scopes = new ArrayList<IEditableTreeDataScope<?>>(scopes_p);
+      _display = display_p;
+      setSystem(false);
+      setPriority(Job.LONG);
+    }
+    /**
+     * Complete unloading in the UI thread by disconnecting the given resources
+     * and disposing the comparison method
+     * @param unloaded_p a non-null set of the resources that have been unloaded
+     */
+    protected void complete(final Set<Resource> unloaded_p) {
+      Runnable completion = new Runnable() {
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+          ExtendedUnloader.getDefault().disconnectResources(_editingDomain, unloaded_p);
+          if (_comparisonMethod != null)
+            _comparisonMethod.dispose();
+        }
+      };
+      if (_display.isDisposed()) {
+        // Workbench being disposed: proceed
+        completion.run();
+      } else {
+        _display.asyncExec(completion);
+      }
+    }
+    /**
+     * Create and return an error status for the given problem
+     * @param problem_p a non-null throwable
+     * @return a non-null status
+     */
+    protected IStatus createErrorStatus(Throwable problem_p) {
+      return new Status(IStatus.ERROR, EMFDiffMergeUIPlugin.getDefault().getPluginId(),
+          problem_p.getLocalizedMessage(), problem_p);
+    }
+    /**
+     * Return the editing domain through which the resources of the given resource set
+     * must be unloaded, if any
+     * @param resourceSet_p a potentially null resource set, where null stands for unknown
+     * @return a potentially null editing domain
+     */
+    protected EditingDomain getEditingDomain(ResourceSet resourceSet_p) {
+      EditingDomain result = null;
+      if (_editingDomain != null && (resourceSet_p == null ||
+          _editingDomain.getResourceSet() == resourceSet_p)) {
+        result = _editingDomain;
+      }
+      return result;
+    }
+    /**
+     * Return the resource set of the given scope, if it can be determined
+     * @param scope_p a non-null scope
+     * @return a potentially null resource set
+     */
+    protected ResourceSet getResourceSet(IEditableTreeDataScope<?> scope_p) {
+      ResourceSet result = null;
+      if (scope_p instanceof IPersistentModelScope) {
+        Resource holdingResource = ((IPersistentModelScope)scope_p).getHoldingResource();
+        if (holdingResource != null) {
+          result = holdingResource.getResourceSet();
+        }
+      }
+      return result;
+    }
+    /**
+     * Return the scopes grouped by resource set, so that different groups can be
+     * unloaded concurrently. There is a single group if the resource set of a scope
+     * cannot be determined.
+     * @return a non-null, potentially empty collection of non-empty lists
+     */
+    protected Collection<List<IEditableTreeDataScope<?>>> getScopeGroups() {
+      Map<ResourceSet, List<IEditableTreeDataScope<?>>> result =
+          new LinkedHashMap<ResourceSet, List<IEditableTreeDataScope<?>>>();
+      for (IEditableTreeDataScope<?> scope : _scopes) {
+        ResourceSet resourceSet = getResourceSet(scope);
+        if (resourceSet == null) {
+          return Collections.singletonList(_scopes);
+        }
+        List<IEditableTreeDataScope<?>> group = result.get(resourceSet);
+        if (group == null) {
+          group = new ArrayList<IEditableTreeDataScope<?>>();
+          result.put(resourceSet, group);
+        }
+        group.add(scope);
+      }
+      return result.values();
+    }
+    /**
+     * Register the resources among the given unloaded objects into the given set
+     * @param unloaded_p a non-null list
+     * @param resources_p a non-null, modifiable set
+     */
+    protected void register(List<?> unloaded_p, Set<Resource> resources_p) {
+      for (Object unloadedElement : unloaded_p) {
+        if (unloadedElement instanceof Resource) {
+          resources_p.add((Resource)unloadedElement);
+        }
+      }
+    }
+    /**
+     * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor_p) {
+      int steps = 2;
+      for (IEditableTreeDataScope<?> scope : _scopes) {
+        steps++;
+        if (scope instanceof FragmentedModelScope) {
+          steps += ((FragmentedModelScope)scope).getResources().size();
+        }
+      }
+      final SubMonitor subMonitor = SubMonitor.convert(
+          monitor_p, Messages.EMFDiffMergeEditorInput_Unloading, steps);
+      final ExtendedUnloader unloader = ExtendedUnloader.getDefault();
+      final Set<Resource> unloaded = Collections.synchronizedSet(new HashSet<Resource>());
+      IStatus result = Status.OK_STATUS;
+      if (_comparisonResource != null) {
+        MiscUtil.executeAndForget(getEditingDomain(_comparisonResource.getResourceSet()),
+            new Runnable() {
+          /**
+           * @see java.lang.Runnable#run()
+           */
+          public void run() {
+            unloader.unloadResource(_comparisonResource, true);
+          }
+        });
+        unloaded.add(_comparisonResource);
+      }
+      subMonitor.worked(1);
+      Collection<List<IEditableTreeDataScope<?>>> groups = getScopeGroups();
+      if (groups.size() > 1) {
+        ExecutorService executor = Executors.newFixedThreadPool(groups.size());
+        List<Future<IStatus>> futures = new ArrayList<Future<IStatus>>(groups.size());
+        for (final List<IEditableTreeDataScope<?>> group : groups) {
+          futures.add(executor.submit(new Callable<IStatus>() {
+            /**
+             * @see java.util.concurrent.Callable#call()
+             */
+            public IStatus call() throws Exception {
+              return unloadScopes(group, unloaded, subMonitor);
+            }
+          }));
+        }
+        executor.shutdown();
+        // Wait for every group, including after a failure, so that all are unloaded
+        boolean interrupted = false;
+        for (Future<IStatus> future : futures) {
+          boolean done = false;
+          while (!done) {
+            try {
+              IStatus status = future.get();
+              if (!status.isOK()) {
+                result = status;
+              }
+              done = true;
+            } catch (InterruptedException e) {
+              // Unloading must be completed
+              interrupted = true;
+            } catch (ExecutionException e) {
+              result = createErrorStatus(e.getCause());
+              done = true;
+            }
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      } else {
+        for (List<IEditableTreeDataScope<?>> group : groups) {
+          IStatus status = unloadScopes(group, unloaded, subMonitor);
+          if (!status.isOK()) {
+            result = status;
+          }
+        }
+      }
+      complete(unloaded);
+      subMonitor.worked(1);
+      return result;
+    }
+    /**
+     * Unload the given scope if applicable, resource by resource in the case of
+     * a fragmented model scope
+     * @param scope_p a non-null scope
+     * @param unloaded_p a non-null, thread-safe, modifiable set in which the unloaded
+     *          resources are registered
+     * @param monitor_p a non-null monitor which may be shared with concurrent unloading
+     */
+    protected void unloadScope(final IEditableTreeDataScope<?> scope_p,
+        final Set<Resource> unloaded_p, IProgressMonitor monitor_p) {
+      EditingDomain domain = getEditingDomain(getResourceSet(scope_p));
+      if (scope_p instanceof FragmentedModelScope) {
+        final FragmentedModelScope fragmentedScope = (FragmentedModelScope)scope_p;
+        for (final Resource resource : new ArrayList<Resource>(fragmentedScope.getResources())) {
+          MiscUtil.executeAndForget(domain, new Runnable() {
+            /**
+             * @see java.lang.Runnable#run()
+             */
+            public void run() {
+              if (fragmentedScope.unload(resource)) {
+                unloaded_p.add(resource);
+              }
+            }
+          });
+          worked(monitor_p);
+        }
+      }
+      if (scope_p instanceof IPersistentDataScope<?>) {
+        MiscUtil.executeAndForget(domain, new Runnable() {
+          /**
+           * @see java.lang.Runnable#run()
+           */
+          public void run() {
+            register(((IPersistentDataScope<?>)scope_p).unload(), unloaded_p);
+          }
+        });
+      }
+      worked(monitor_p);
+    }
+    /**
+     * Unload the given scopes one after the other, going on if one of them fails
+     * @param scopes_p a non-null list of scopes which share their resource set, if any
+     * @param unloaded_p a non-null, thread-safe, modifiable set in which the unloaded
+     *          resources are registered
+     * @param monitor_p a non-null monitor which may be shared with concurrent unloading
+     * @return a non-null status
+     */
+    protected IStatus unloadScopes(List<IEditableTreeDataScope<?>> scopes_p,
+        Set<Resource> unloaded_p, IProgressMonitor monitor_p) {
+      IStatus result = Status.OK_STATUS;
+      for (IEditableTreeDataScope<?> scope : scopes_p) {
+        try {
+          unloadScope(scope, unloaded_p, monitor_p);
+        } catch (RuntimeException e) {
+          result = createErrorStatus(e);
+        }
+      }
+      return result;
+    }
+    /**
+     * Report a unit of work to the given monitor, which may be shared with
+     * concurrent unloading
+     * @param monitor_p a non-null monitor
+     */
+    protected void worked(IProgressMonitor monitor_p) {
+      synchronized (monitor_p) {
+        monitor_p.worked(1);
+      }
+    }
+  }
+  
 }
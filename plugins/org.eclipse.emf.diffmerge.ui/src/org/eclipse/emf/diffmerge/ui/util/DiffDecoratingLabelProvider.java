@@ -11,6 +11,8 @@
  **********************************************************************/
 package org.eclipse.emf.diffmerge.ui.util;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 
 import org.eclipse.emf.common.ui.viewer.IUndecoratingLabelProvider;
@@ -53,6 +55,9 @@ import org.eclipse.swt.graphics.Image;
 public abstract class DiffDecoratingLabelProvider extends DelegatingLabelProvider
 implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorator.Provider {
   
+  /** The default maximal number of elements in the cache */
+  public static final int DEFAULT_CACHE_SIZE = 1000;
+  
   /**
    * Data that is in a cache to improve performance.
    */
@@ -63,6 +68,12 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
     private final Object _elementToRepresent;
     /** The diff status of the element concerned */
     private final DifferenceKind _differenceKind;
+    /** The decorated styled text of the element concerned, or null if not computed yet */
+    private StyledString _styledText;
+    /** The potentially null decorated image of the element concerned */
+    private Image _image;
+    /** Whether the decorated image of the element concerned has been computed */
+    private boolean _isImageComputed;
     /**
      * Constructor covering the concerned element, its represented counterpart
      * and its diff status
@@ -74,6 +85,9 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
       _element = element_p;
       _elementToRepresent = elementToRepresent;
       _differenceKind = differenceKind_p;
+      _styledText = null;
+      _image = null;
+      _isImageComputed = false;
     }
     /**
      * @see java.lang.Object#equals(java.lang.Object)
@@ -111,6 +125,21 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
     public Object getElementToRepresent() {
       return _elementToRepresent;
     }
+    /**
+     * Return the decorated image of the element concerned, if computed
+     * @see CacheEntry#isImageComputed()
+     * @return a potentially null image
+     */
+    public Image getImage() {
+      return _image;
+    }
+    /**
+     * Return the decorated styled text of the element concerned, if computed
+     * @return a potentially null styled string, where null stands for "not computed yet"
+     */
+    public StyledString getStyledText() {
+      return _styledText;
+    }
     /**
      * @see java.lang.Object#hashCode()
      */
@@ -119,15 +148,91 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
       return getDifferenceKind().hashCode() + getElement().hashCode() +
           getElementToRepresent().hashCode();
     }
+    /**
+     * Return whether the decorated image of the element concerned has been computed
+     */
+    public boolean isImageComputed() {
+      return _isImageComputed;
+    }
+    /**
+     * Set the decorated image of the element concerned
+     * @param image_p a potentially null image
+     */
+    public void setImage(Image image_p) {
+      _image = image_p;
+      _isImageComputed = true;
+    }
+    /**
+     * Set the decorated styled text of the element concerned
+     * @param styledText_p a potentially null styled string, where null stands for
+     *          "not computed yet"
+     */
+    public void setStyledText(StyledString styledText_p) {
+      _styledText = styledText_p;
+    }
+  }
+  
+  /**
+   * A key of the cache which identifies an element by reference, since distinct
+   * elements may be equal, e.g., structurally equal values or matches.
+   */
+  protected static class CacheKey {
+    /** The non-null element concerned */
+    private final Object _element;
+    /**
+     * Constructor
+     * @param element_p a non-null object
+     */
+    public CacheKey(Object element_p) {
+      _element = element_p;
+    }
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object object_p) {
+      return object_p instanceof CacheKey &&
+          ((CacheKey)object_p)._element == _element; // == is intentional
+    }
+    /**
+     * Return the element concerned
+     * @return a non-null object
+     */
+    public Object getElement() {
+      return _element;
+    }
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(_element);
+    }
   }
   
   
   /** The non-null diff label decorator */
   private IDiffLabelDecorator _diffDecorator;
   
-  /** The potentially null cache that associates a given object with pre-computed data.
-      It is not synchronized since it is supposed to be solely used through the UI thread. */
-  private CacheEntry _diffCache;
+  /** The non-null cache that associates objects, by reference, with pre-computed data in
+      access order. It is not synchronized since it is supposed to be solely used through
+      the UI thread. */
+  private final Map<CacheKey, CacheEntry> _diffCache;
+  
+  /** The maximal number of elements in the cache */
+  private int _cacheSize;
+  
+  /** The potentially null diff node for which the cache is valid */
+  private EMFDiffNode _cacheNode;
+  
+  /** The update stamp of the category manager for which the cache is valid */
+  private long _cacheStamp;
+  
+  /** The number of elements whose data has been found in the cache */
+  private long _cacheHits;
+  
+  /** The number of elements whose data had to be computed */
+  private long _cacheMisses;
   
   
   /**
@@ -136,7 +241,12 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
   public DiffDecoratingLabelProvider() {
     super();
     _diffDecorator = getDefaultDiffLabelDecorator();
-    _diffCache = null;
+    _diffCache = createCache();
+    _cacheSize = DEFAULT_CACHE_SIZE;
+    _cacheNode = null;
+    _cacheStamp = 0;
+    _cacheHits = 0;
+    _cacheMisses = 0;
   }
   
   /**
@@ -146,14 +256,39 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
   public DiffDecoratingLabelProvider(ILabelProvider delegate_p) {
     super(delegate_p);
     _diffDecorator = getDefaultDiffLabelDecorator();
-    _diffCache = null;
+    _diffCache = createCache();
+    _cacheSize = DEFAULT_CACHE_SIZE;
+    _cacheNode = null;
+    _cacheStamp = 0;
+    _cacheHits = 0;
+    _cacheMisses = 0;
+  }
+  
+  /**
+   * Clear the cache if the comparison has changed since its contents were computed,
+   * i.e., if the diff node or the update stamp of its category manager has changed
+   * @see CategoryManager#getUpdateStamp()
+   */
+  protected void cacheCheckValidity() {
+    EMFDiffNode node = getDiffNode();
+    long stamp = (node == null)? 0: node.getCategoryManager().getUpdateStamp();
+    if (node != _cacheNode || stamp != _cacheStamp) {
+      cacheClear();
+      _cacheNode = node;
+      _cacheStamp = stamp;
+    }
   }
   
   /**
-   * Clear the (element, diff status) cache
+   * Clear the (element, diff status and labels) cache.
+   * Changes to the comparison are detected automatically, so this method only needs to
+   * be called when labels may have changed independently, e.g., when the viewer refreshes
+   * its labels.
    */
-  protected void cacheClear() {
-    _diffCache = null;
+  public void cacheClear() {
+    _diffCache.clear();
+    _cacheNode = null;
+    _cacheStamp = 0;
   }
   
   /**
@@ -163,27 +298,51 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
    */
   protected CacheEntry cacheGet(Object element_p) {
     CacheEntry result = null;
-    if (_diffCache != null && element_p != null &&
-        element_p == _diffCache.getElement() /* == is intentional */) {
-      result = _diffCache;
+    if (element_p != null) {
+      cacheCheckValidity();
+      result = _diffCache.get(new CacheKey(element_p));
     }
     return result;
   }
   
   /**
-   * Put data for the given element into the cache
-   * @param element_p a potentially null object, where null clears the cache
+   * Put data for the given element into the cache if it is not already there
+   * @param element_p a potentially null object, where null has no effect
    */
   protected void cachePut(Object element_p) {
-    if (element_p == null) {
-      cacheClear();
-    } else {
-      DifferenceKind diffKind = doGetDiffStatus(element_p);
-      Object representedElement = doGetElementToRepresent(element_p);
-      _diffCache = new CacheEntry(element_p, representedElement, diffKind);
+    if (element_p != null) {
+      if (cacheGet(element_p) != null) {
+        _cacheHits++;
+      } else {
+        _cacheMisses++;
+        DifferenceKind diffKind = doGetDiffStatus(element_p);
+        Object representedElement = doGetElementToRepresent(element_p);
+        _diffCache.put(new CacheKey(element_p),
+            new CacheEntry(element_p, representedElement, diffKind));
+      }
     }
   }
   
+  /**
+   * Create and return the cache that associates objects, by reference, with pre-computed
+   * data. The least recently used entries are evicted when the size of the cache is exceeded.
+   * @see DiffDecoratingLabelProvider#getCacheSize()
+   * @return a non-null, modifiable map
+   */
+  protected Map<CacheKey, CacheEntry> createCache() {
+    return new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+      /** The serial version ID */
+      private static final long serialVersionUID = 1L;
+      /**
+       * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+       */
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest_p) {
+        return size() > getCacheSize();
+      }
+    };
+  }
+  
   /**
    * @see org.eclipse.jface.viewers.StyledCellLabelProvider#dispose()
    */
@@ -263,6 +422,32 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
     return result;
   }
   
+  /**
+   * Return the number of elements whose data has been found in the cache when
+   * updating their labels
+   * @return a positive long or 0
+   */
+  public long getCacheHits() {
+    return _cacheHits;
+  }
+  
+  /**
+   * Return the number of elements whose data had to be computed when updating
+   * their labels
+   * @return a positive long or 0
+   */
+  public long getCacheMisses() {
+    return _cacheMisses;
+  }
+  
+  /**
+   * Return the maximal number of elements in the cache
+   * @return a strictly positive int
+   */
+  public int getCacheSize() {
+    return _cacheSize;
+  }
+  
   /**
    * Return the container of the given element on the given side
    * @param element_p a non-null element
@@ -397,12 +582,21 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
    */
   @Override
   public Image getImage(Object element_p) {
-    Image result = getDiffLabelDecorator().getImage(
-        element_p,
-        getUndecoratedImage(element_p),
-        getDifferenceKind(element_p),
-        getSide(),
-        getDiffNode());
+    Image result;
+    CacheEntry data = cacheGet(element_p);
+    if (data != null && data.isImageComputed()) {
+      result = data.getImage();
+    } else {
+      result = getDiffLabelDecorator().getImage(
+          element_p,
+          getUndecoratedImage(element_p),
+          getDifferenceKind(element_p),
+          getSide(),
+          getDiffNode());
+      if (data != null) {
+        data.setImage(result);
+      }
+    }
     return result;
   }
   
@@ -481,21 +675,27 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
    */
   @Override
   public StyledString getStyledText(Object element_p) {
-    CharSequence base = getUndecoratedStyledText(element_p);
-    if (base == null) {
-      base = getUndecoratedText(element_p);
-    }
-    CharSequence label = getDiffLabelDecorator().getText(
-        element_p,
-        base,
-        getDifferenceKind(element_p),
-        getSide(),
-        getDiffNode());
-    StyledString result;
-    if (label instanceof StyledString) {
-      result = (StyledString)label;
-    } else {
-      result = new StyledString(label.toString());
+    CacheEntry data = cacheGet(element_p);
+    StyledString result = (data == null)? null: data.getStyledText();
+    if (result == null) {
+      CharSequence base = getUndecoratedStyledText(element_p);
+      if (base == null) {
+        base = getUndecoratedText(element_p);
+      }
+      CharSequence label = getDiffLabelDecorator().getText(
+          element_p,
+          base,
+          getDifferenceKind(element_p),
+          getSide(),
+          getDiffNode());
+      if (label instanceof StyledString) {
+        result = (StyledString)label;
+      } else {
+        result = new StyledString(label.toString());
+      }
+      if (data != null) {
+        data.setStyledText(result);
+      }
     }
     return result;
   }
@@ -728,6 +928,19 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
     return false;
   }
   
+  /**
+   * Set the maximal number of elements in the cache
+   * @param cacheSize_p a strictly positive int, otherwise this method has no effect
+   */
+  public void setCacheSize(int cacheSize_p) {
+    if (cacheSize_p > 0) {
+      _cacheSize = cacheSize_p;
+      if (_diffCache.size() > _cacheSize) {
+        cacheClear();
+      }
+    }
+  }
+  
   /**
    * Set the diff label decorator of this label provider
    * @param diffDecorator_p a potentially null object, where null stands for default
@@ -739,6 +952,7 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
       _diffDecorator = getDefaultDiffLabelDecorator();
     }
     if (_diffDecorator != old) {
+      cacheClear();
       fireLabelProviderChanged(new LabelProviderChangedEvent(this));
     }
   }
@@ -751,7 +965,6 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
     Object element = cell_p.getElement();
     cachePut(element);
     super.update(cell_p);
-    cacheClear();
   }
   
   /**
@@ -770,7 +983,6 @@ implements IUndecoratingLabelProvider, ITreePathLabelProvider, IDiffLabelDecorat
         UIUtil.getBase(label_p.getFont()): null;
     label_p.setFont(getFont(element));
     _defaultFont = null;
-    cacheClear();
   }
   
 }
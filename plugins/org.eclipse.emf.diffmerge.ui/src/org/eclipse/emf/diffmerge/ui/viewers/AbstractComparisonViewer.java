@@ -899,14 +899,23 @@ implements IFlushable, IPropertyChangeNotifier, ICompareInputChangeListener, IAd
         public void run() {
           final CommandStack stack = editingDomain.getCommandStack();
           final ComparisonSelection lastActionSelection = getUIComparison().getLastActionSelection();
-          if (undo_p && stack.canUndo()) {
-            stack.undo();
-          } else if (!undo_p && stack.canRedo()) {
-            stack.redo();
-          }
           EMFDiffNode input = getInput();
-          if (input != null && !input.isReactive()) {
-            input.updateDifferenceNumbers();
+          if (input != null) {
+            input.suspendBackgroundFiltering();
+          }
+          try {
+            if (undo_p && stack.canUndo()) {
+              stack.undo();
+            } else if (!undo_p && stack.canRedo()) {
+              stack.redo();
+            }
+            if (input != null && !input.isReactive()) {
+              input.updateDifferenceNumbers();
+            }
+          } finally {
+            if (input != null) {
+              input.resumeBackgroundFiltering();
+            }
           }
           if (lastActionSelection != null) {
             setSelection(lastActionSelection, true);
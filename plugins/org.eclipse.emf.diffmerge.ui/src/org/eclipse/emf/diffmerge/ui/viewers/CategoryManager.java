@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.emf.common.util.EMap;
 import org.eclipse.emf.diffmerge.generic.api.IComparison;
 import org.eclipse.emf.diffmerge.generic.api.IMatch;
@@ -56,9 +58,6 @@ public class CategoryManager {
   /** The modifiable set of (ID, category) registered categories */
   private final Map<String, IDifferenceCategory> _categories;
   
-  /** The modifiable set of active categories among the registered ones */
-  protected final Set<IDifferenceCategory> _activeCategories;
-  
   /** The set of default category states */
   protected final Set<IDifferenceCategory> _defaultConfiguration;
   
@@ -68,8 +67,11 @@ public class CategoryManager {
   /** The modifiable (parent, children) map of category items that should be visible in the UI */
   protected final Map<IDifferenceCategorySet, Collection<IDifferenceCategoryItem>> _uiChildrenItems;
   
-  /** The map from matches to difference numbers */
-  private final EMap<IMatch<?>, Integer> _matchToNb;
+  /** The non-null, immutable current state of filtering and difference numbers */
+  private volatile FilteringState _filteringState;
+  
+  /** The number of times filtering and difference numbers have been re-computed */
+  private long _updateStamp;
   
   
   /**
@@ -79,11 +81,11 @@ public class CategoryManager {
   public CategoryManager(EMFDiffNode node_p) {
     _node = node_p;
     _categories = new LinkedHashMap<String, IDifferenceCategory>();
-    _activeCategories = new HashSet<IDifferenceCategory>();
     _defaultConfiguration = new HashSet<IDifferenceCategory>();
     _uiRootItems = new ArrayList<IDifferenceCategoryItem>();
     _uiChildrenItems = new HashMap<IDifferenceCategorySet, Collection<IDifferenceCategoryItem>>();
-    _matchToNb = new FHashMap<IMatch<?>, Integer>();
+    _filteringState = new FilteringState();
+    _updateStamp = 0;
   }
   
   /**
@@ -127,6 +129,108 @@ public class CategoryManager {
     return result;
   }
   
+  /**
+   * Add to the given set the matches whose own difference numbers may change
+   * when the given difference is merged or ignored
+   * @param difference_p a non-null difference
+   * @param matches_p a non-null, modifiable set
+   */
+  protected void addImpactedMatches(IDifference<?> difference_p, Set<IMatch<?>> matches_p) {
+    List<IDifference<?>> impacted = new ArrayList<IDifference<?>>(3);
+    impacted.add(difference_p);
+    // Symmetrical differences are merged or ignored together
+    if (difference_p instanceof IValuePresence) {
+      IValuePresence<?> symmetrical = ((IValuePresence<?>)difference_p).getSymmetrical();
+      if (symmetrical != null) {
+        impacted.add(symmetrical);
+      }
+      if (difference_p instanceof IReferenceValuePresence) {
+        IReferenceValuePresence<?> symmetricalOwnership =
+            ((IReferenceValuePresence<?>)difference_p).getSymmetricalOwnership();
+        if (symmetricalOwnership != null) {
+          impacted.add(symmetricalOwnership);
+        }
+      }
+    }
+    for (IDifference<?> difference : impacted) {
+      if (difference instanceof IElementRelativeDifference) {
+        IMatch<?> elementMatch = ((IElementRelativeDifference<?>)difference).getElementMatch();
+        if (elementMatch != null) {
+          matches_p.add(elementMatch);
+        }
+      }
+      if (difference instanceof IReferenceValuePresence) {
+        // Ownership differences are counted on their value
+        IMatch<?> valueMatch = ((IReferenceValuePresence<?>)difference).getValueMatch();
+        if (valueMatch != null) {
+          matches_p.add(valueMatch);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Throw an exception if the given progress monitor has been canceled
+   * @param monitor_p a potentially null progress monitor
+   * @throws OperationCanceledException if the monitor has been canceled
+   */
+  protected void checkCanceled(IProgressMonitor monitor_p) {
+    if (monitor_p != null && monitor_p.isCanceled()) {
+      throw new OperationCanceledException();
+    }
+  }
+  
+  /**
+   * Return the categories that are currently applicable and active, along with
+   * whether they are in focus mode
+   * @return a non-null, modifiable map
+   */
+  public Map<IDifferenceCategory, Boolean> computeActiveCategories() {
+    Map<IDifferenceCategory, Boolean> result = new HashMap<IDifferenceCategory, Boolean>();
+    for (IDifferenceCategory category : getCategories()) {
+      if (category.isApplicable(_node) && category.isActive()) {
+        result.put(category, Boolean.valueOf(category.isInFocusMode()));
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Compute and return the filtering state that corresponds to the given configuration
+   * of categories. Difference numbers are derived incrementally from the given base
+   * state when possible, assuming that the comparison has only changed with respect to
+   * the given differences since the base state was computed.
+   * This manager is not modified, so this method may be called from a background
+   * thread as long as the comparison is not modified concurrently.
+   * @see CategoryManager#setFilteringState(FilteringState)
+   * @param activeCategories_p a non-null map from the active categories to whether
+   *          they are in focus mode
+   * @param base_p a potentially null state to start from, where null stands for none
+   * @param changedDifferences_p a non-null, potentially empty collection of differences
+   * @param monitor_p a potentially null progress monitor, only used for cancellation
+   * @return a non-null state
+   * @throws OperationCanceledException if the monitor has been canceled
+   */
+  public FilteringState computeFilteringState(
+      Map<IDifferenceCategory, Boolean> activeCategories_p, FilteringState base_p,
+      Collection<? extends IDifference<?>> changedDifferences_p, IProgressMonitor monitor_p) {
+    FilteringState result = new FilteringState(
+        activeCategories_p, _node.getActualComparison(), _node.getDrivingRole());
+    Set<IMatch<?>> impactedMatches = (base_p == null)? null:
+      getImpactedMatches(result, base_p, changedDifferences_p, monitor_p);
+    boolean done = false;
+    if (impactedMatches != null) {
+      result._matchToNb.putAll(base_p._matchToNb);
+      result._matchToOwnNb.putAll(base_p._matchToOwnNb);
+      result._matchToContainer.putAll(base_p._matchToContainer);
+      done = updateDifferenceNumbers(impactedMatches, result, monitor_p);
+    }
+    if (!done) {
+      updateDifferenceNumbers(result, monitor_p);
+    }
+    return result;
+  }
+  
   /**
    * Count and return the number of differences on the given match,
    * excluding differences on children
@@ -135,14 +239,26 @@ public class CategoryManager {
    * @return a positive int
    */
   protected int countDifferences(IMatch<?> match_p, boolean withFilters_p) {
+    return countDifferences(match_p, withFilters_p? getFilteringState(): null);
+  }
+  
+  /**
+   * Count and return the number of differences on the given match,
+   * excluding differences on children
+   * @param match_p a non-null match
+   * @param filtering_p the potentially null filtering state to take into account,
+   *          where null stands for no filtering
+   * @return a positive int
+   */
+  protected int countDifferences(IMatch<?> match_p, FilteringState filtering_p) {
     // Non-containment differences
-    int result = countNonContainmentDifferences(match_p, withFilters_p);
+    int result = countNonContainmentDifferences(match_p, filtering_p);
     // Move
-    if (isMove(match_p, withFilters_p)) {
+    if (isMove(match_p, filtering_p)) {
       result++;
     }
     // Addition/deletion
-    if (isUnmatched(match_p, withFilters_p)) {
+    if (isUnmatched(match_p, filtering_p)) {
       result++;
     }
     return result;
@@ -155,12 +271,24 @@ public class CategoryManager {
    * @return a positive int or 0
    */
   protected int countNonContainmentDifferences(IMatch<?> match_p, boolean withFilters_p) {
+    return countNonContainmentDifferences(match_p, withFilters_p? getFilteringState(): null);
+  }
+  
+  /**
+   * Count and return the number of non-containment differences on the given match
+   * @param match_p a non-null match
+   * @param filtering_p the potentially null filtering state to take into account,
+   *          where null stands for no filtering
+   * @return a positive int or 0
+   */
+  protected int countNonContainmentDifferences(IMatch<?> match_p,
+      FilteringState filtering_p) {
     int result = 0;
     if (!match_p.isPartial()) {
       Set<Object> uniFeatures = new HashSet<Object>();
       for (IDifference<?> difference : match_p.getRelatedDifferences()) {
         if (difference instanceof IElementRelativeDifference &&
-            (!withFilters_p || !isFiltered(difference))) {
+            (filtering_p == null || !filtering_p.isFiltered(difference, _node))) {
           IElementRelativeDifference<?> eltDiff = (IElementRelativeDifference<?>)difference;
           if (eltDiff.isUnrelatedToContainmentTree()) {
             if (eltDiff instanceof IValuePresence) {
@@ -383,19 +511,60 @@ public class CategoryManager {
    * @return a positive int or 0
    */
   public int getDifferenceNumber(IMatch<?> match_p) {
-    Integer currentNb = getMatchToNb().get(match_p);
-    if (currentNb == null) {
-      currentNb = Integer.valueOf(0);
-    }
-    return currentNb.intValue();
+    return getFilteringState().getDifferenceNumber(match_p);
   }
   
   /**
-   * Return the map from matches to differences numbers
-   * @return a non-null, modifiable map
+   * Return the current state of filtering and difference numbers
+   * @return a non-null, immutable state
    */
-  protected EMap<IMatch<?>, Integer> getMatchToNb() {
-    return _matchToNb;
+  public FilteringState getFilteringState() {
+    return _filteringState;
+  }
+  
+  /**
+   * Return the matches whose own difference numbers may differ between the given
+   * states, assuming that the comparison has only changed with respect to the given
+   * differences since the base state was computed
+   * @param state_p a non-null state whose difference numbers are being computed
+   * @param base_p a non-null state whose difference numbers have been computed
+   * @param changedDifferences_p a non-null, potentially empty collection of differences
+   * @param monitor_p a potentially null progress monitor, only used for cancellation
+   * @return a potentially null set, where null means that all matches may be impacted
+   *         including the hierarchy of matches
+   * @throws OperationCanceledException if the monitor has been canceled
+   */
+  protected Set<IMatch<?>> getImpactedMatches(FilteringState state_p,
+      FilteringState base_p, Collection<? extends IDifference<?>> changedDifferences_p,
+      IProgressMonitor monitor_p) {
+    IComparison<?> comparison = state_p._comparison;
+    if (comparison == null || comparison != base_p._comparison ||
+        state_p._drivingRole != base_p._drivingRole ||
+        !state_p.getFocusedCategories().equals(base_p.getFocusedCategories())) {
+      // Focus mode has a global effect on filtering
+      return null;
+    }
+    Set<IMatch<?>> result = new HashSet<IMatch<?>>();
+    for (IDifference<?> difference : changedDifferences_p) {
+      addImpactedMatches(difference, result);
+    }
+    // Categories whose activation changed, necessarily in filtering mode at this point
+    Set<IDifferenceCategory> toggledCategories =
+        new HashSet<IDifferenceCategory>(base_p.getActiveCategories());
+    toggledCategories.addAll(state_p.getActiveCategories());
+    Set<IDifferenceCategory> unchangedCategories =
+        new HashSet<IDifferenceCategory>(base_p.getActiveCategories());
+    unchangedCategories.retainAll(state_p.getActiveCategories());
+    toggledCategories.removeAll(unchangedCategories);
+    if (!toggledCategories.isEmpty()) {
+      for (IMatch<?> match : comparison.getMapping().getContents()) {
+        checkCanceled(monitor_p);
+        if (!result.contains(match) && isCoveredByAny(match, toggledCategories)) {
+          result.add(match);
+        }
+      }
+    }
+    return result;
   }
   
   /**
@@ -508,6 +677,16 @@ public class CategoryManager {
     return Collections.unmodifiableList(_uiRootItems);
   }
   
+  /**
+   * Return a number which changes every time filtering and difference numbers are
+   * re-computed, so that data derived from them can be detected as obsolete
+   * @see CategoryManager#setFilteringState(FilteringState)
+   * @return a positive long or 0
+   */
+  public long getUpdateStamp() {
+    return _updateStamp;
+  }
+  
   /**
    * Return whether the given match has visible children for merge
    * @param match_p a non-null match
@@ -546,27 +725,36 @@ public class CategoryManager {
   
   /**
    * Increment the number of differences by the given increment for the given match
+   * in the given state under computation
    * @param match_p a non-null match
-   * @param increment_p a positive int
+   * @param increment_p an int which may be negative
+   * @param state_p a non-null state which has not been installed yet
    */
-  protected void incrementDifferenceNumbers(IMatch<?> match_p, int increment_p) {
-    int currentNb = getDifferenceNumber(match_p);
-    Integer newNb = Integer.valueOf(increment_p + currentNb);
-    getMatchToNb().put(match_p, newNb);
+  protected void incrementDifferenceNumbers(IMatch<?> match_p, int increment_p,
+      FilteringState state_p) {
+    int currentNb = state_p.getDifferenceNumber(match_p);
+    int newNb = increment_p + currentNb;
+    if (newNb == 0) {
+      state_p._matchToNb.removeKey(match_p);
+    } else {
+      state_p._matchToNb.put(match_p, Integer.valueOf(newNb));
+    }
   }
   
   /**
    * Increment the number of differences by the given increment for the given match
-   * and its parents according to the driving role
+   * and its parents according to the driving role in the given state under computation
    * @param match_p a non-null match
-   * @param increment_p a positive int
+   * @param increment_p an int which may be negative
+   * @param state_p a non-null state which has not been installed yet
    */
-  protected void incrementDifferenceNumbersInHierarchy(IMatch<?> match_p, int increment_p) {
-    if (increment_p > 0) {
-      incrementDifferenceNumbers(match_p, increment_p);
+  protected void incrementDifferenceNumbersInHierarchy(IMatch<?> match_p, int increment_p,
+      FilteringState state_p) {
+    if (increment_p != 0) {
+      incrementDifferenceNumbers(match_p, increment_p, state_p);
       IMatch<?> current = _node.getContainerOf(match_p);
       while (current != null) {
-        incrementDifferenceNumbers(current, increment_p);
+        incrementDifferenceNumbers(current, increment_p, state_p);
         current = _node.getContainerOf(current);
       }
     }
@@ -631,28 +819,29 @@ public class CategoryManager {
   }
   
   /**
-   * Return whether the given difference is filtered out by categories
-   * @param difference_p a non-null difference
+   * Return whether any of the differences related to the given match, container
+   * differences included, is covered by any of the given categories
+   * @param match_p a non-null match
+   * @param categories_p a non-null collection of categories
    */
-  public boolean isFiltered(IDifference<?> difference_p) {
-    boolean globalFocus = false; // At least one category is in focus mode
-    boolean diffFocus = false; // At least one covering category is in focus mode
-    for (IDifferenceCategory category : _activeCategories) {
-      boolean catFocus = category.isInFocusMode();
-      globalFocus = globalFocus || catFocus;
-      boolean covered = category.covers(difference_p, _node);
-      if (covered) {
-        // Covered by active category
-        if (!catFocus) {
-          // Covered by category in filtering mode
+  protected boolean isCoveredByAny(IMatch<?> match_p,
+      Collection<IDifferenceCategory> categories_p) {
+    for (IDifference<?> difference : match_p.getAllDifferences()) {
+      for (IDifferenceCategory category : categories_p) {
+        if (category.covers(difference, _node)) {
           return true;
         }
-        // Else covered by category in focus mode: proceed
-        diffFocus = true;
       }
     }
-    // Not filtered out by any category
-    return globalFocus && !diffFocus; // All categories in focus mode are non-covering
+    return false;
+  }
+  
+  /**
+   * Return whether the given difference is filtered out by categories
+   * @param difference_p a non-null difference
+   */
+  public boolean isFiltered(IDifference<?> difference_p) {
+    return getFilteringState().isFiltered(difference_p, _node);
   }
   
   /**
@@ -699,12 +888,24 @@ public class CategoryManager {
    * @param withFilters_p whether filters must be taken into account
    */
   public boolean isMove(IMatch<?> match_p, boolean withFilters_p) {
+    return isMove(match_p, withFilters_p? getFilteringState(): null);
+  }
+  
+  /**
+   * Return whether the given match represents a moved element
+   * @param match_p a non-null match
+   * @param filtering_p the potentially null filtering state to take into account,
+   *          where null stands for no filtering
+   */
+  protected boolean isMove(IMatch<?> match_p, FilteringState filtering_p) {
     boolean result = false;
     if (!match_p.isPartial() && match_p.getElementPresenceDifference() == null) {
       IReferenceValuePresence<?> onTarget = match_p.getOwnershipDifference(Role.TARGET);
       IReferenceValuePresence<?> onReference = match_p.getOwnershipDifference(Role.REFERENCE);
-      result = (onTarget != null && (!withFilters_p || !isFiltered(onTarget))) ||
-          (onReference != null && (!withFilters_p || !isFiltered(onReference)));
+      result = (onTarget != null &&
+          (filtering_p == null || !filtering_p.isFiltered(onTarget, _node))) ||
+          (onReference != null &&
+              (filtering_p == null || !filtering_p.isFiltered(onReference, _node)));
     }
     return result;
   }
@@ -794,8 +995,8 @@ public class CategoryManager {
    * pending differences
    */
   public boolean isUIFiltering() {
-    for (IDifferenceCategory category : _activeCategories) {
-      if (isUIFiltering(category)) {
+    for (IDifferenceCategory category : getCategories()) {
+      if (category.isApplicable(_node) && isUIFiltering(category)) {
         return true;
       }
     }
@@ -822,7 +1023,7 @@ public class CategoryManager {
     for (IDifferenceCategory defaultCat : defaultConfig) {
       String id = defaultCat.getID();
       IDifferenceCategory actualCat = getCategory(id);
-      if (actualCat != null && _activeCategories.contains(actualCat) &&
+      if (actualCat != null && actualCat.isApplicable(_node) &&
           isUIFiltering(actualCat)) {
         if (!isUIFiltering(defaultCat) ||
             defaultCat.isInFocusMode() != actualCat.isInFocusMode()) {
@@ -839,8 +1040,19 @@ public class CategoryManager {
    * @param withFilters_p whether filters must be taken into account
    */
   public boolean isUnmatched(IMatch<?> match_p, boolean withFilters_p) {
+    return isUnmatched(match_p, withFilters_p? getFilteringState(): null);
+  }
+  
+  /**
+   * Return whether the given match represents an element addition/deletion
+   * @param match_p a non-null match
+   * @param filtering_p the potentially null filtering state to take into account,
+   *          where null stands for no filtering
+   */
+  protected boolean isUnmatched(IMatch<?> match_p, FilteringState filtering_p) {
     IElementPresence<?> presence = match_p.getElementPresenceDifference();
-    return presence != null && (!withFilters_p || !isFiltered(presence));
+    return presence != null &&
+        (filtering_p == null || !filtering_p.isFiltered(presence, _node));
   }
   
   /**
@@ -955,6 +1167,19 @@ public class CategoryManager {
     }
   }
   
+  /**
+   * Install the given filtering state, which becomes visible through this manager,
+   * and update the category items that should be visible in the UI.
+   * This method must be called from the UI thread.
+   * @see CategoryManager#computeFilteringState(Map, FilteringState, Collection, IProgressMonitor)
+   * @param state_p a non-null state
+   */
+  public void setFilteringState(FilteringState state_p) {
+    updateUIItems();
+    _filteringState = state_p;
+    _updateStamp++;
+  }
+  
   /**
    * Set the set of current states of all current categories as the default
    */
@@ -970,35 +1195,87 @@ public class CategoryManager {
    * Re-compute filtering and differences numbers
    */
   public void update() {
-    updateActiveCategories();
-    updateUIItems();
-    updateDifferenceNumbers();
+    setFilteringState(computeFilteringState(computeActiveCategories(), null,
+        Collections.<IDifference<?>>emptyList(), null));
   }
   
   /**
-   * Re-compute the set of active categories
+   * Re-compute filtering and differences numbers incrementally, assuming that the
+   * comparison has not changed since the last update except for the given differences,
+   * e.g., because they have been merged or ignored.
+   * Only the numbers of the matches that are impacted by these differences or by
+   * categories whose activation changed are re-computed, and the resulting deltas are
+   * propagated along their container chains. If this is not possible, for example
+   * because categories in focus mode or the driving role changed, then all numbers
+   * are re-computed as in update().
+   * @see CategoryManager#update()
+   * @param changedDifferences_p a non-null, potentially empty collection of differences
    */
-  protected void updateActiveCategories() {
-    _activeCategories.clear();
-    for (IDifferenceCategory category : getCategories()) {
-      if (category.isApplicable(_node) && category.isActive()) {
-        _activeCategories.add(category);
-      }
-    }
+  public void update(Collection<? extends IDifference<?>> changedDifferences_p) {
+    setFilteringState(computeFilteringState(computeActiveCategories(),
+        getFilteringState(), changedDifferences_p, null));
   }
   
   /**
-   * Re-compute difference numbers
+   * Compute all difference numbers in the given state under computation
+   * @param state_p a non-null state which has not been installed yet
+   * @param monitor_p a potentially null progress monitor, only used for cancellation
+   * @throws OperationCanceledException if the monitor has been canceled
    */
-  protected void updateDifferenceNumbers() {
-    getMatchToNb().clear();
-    IComparison<?> comparison = _node.getActualComparison();
+  protected void updateDifferenceNumbers(FilteringState state_p,
+      IProgressMonitor monitor_p) {
+    state_p._matchToNb.clear();
+    state_p._matchToOwnNb.clear();
+    state_p._matchToContainer.clear();
+    IComparison<?> comparison = state_p._comparison;
     if (comparison != null) {
       for (IMatch<?> match : comparison.getMapping().getContents()) {
-        int nb = countDifferences(match, true);
-        incrementDifferenceNumbersInHierarchy(match, nb);
+        checkCanceled(monitor_p);
+        int nb = countDifferences(match, state_p);
+        if (nb > 0) {
+          state_p._matchToOwnNb.put(match, Integer.valueOf(nb));
+        }
+        IMatch<?> container = _node.getContainerOf(match);
+        if (container != null) {
+          state_p._matchToContainer.put(match, container);
+        }
+        incrementDifferenceNumbersInHierarchy(match, nb, state_p);
+      }
+    }
+  }
+  
+  /**
+   * Re-compute the difference numbers of the given matches in the given state under
+   * computation and propagate the changes to their containers, if the containers of
+   * the matches have not changed
+   * @param matches_p a non-null collection of matches
+   * @param state_p a non-null state which has not been installed yet
+   * @param monitor_p a potentially null progress monitor, only used for cancellation
+   * @return whether the operation was possible
+   * @throws OperationCanceledException if the monitor has been canceled
+   */
+  protected boolean updateDifferenceNumbers(Collection<IMatch<?>> matches_p,
+      FilteringState state_p, IProgressMonitor monitor_p) {
+    for (IMatch<?> match : matches_p) {
+      if (_node.getContainerOf(match) != state_p._matchToContainer.get(match)) {
+        // Moved, e.g., by merge: the hierarchy of numbers is obsolete
+        return false;
       }
     }
+    for (IMatch<?> match : matches_p) {
+      checkCanceled(monitor_p);
+      int formerNb = state_p.getOwnDifferenceNumber(match);
+      int newNb = countDifferences(match, state_p);
+      if (newNb != formerNb) {
+        if (newNb == 0) {
+          state_p._matchToOwnNb.removeKey(match);
+        } else {
+          state_p._matchToOwnNb.put(match, Integer.valueOf(newNb));
+        }
+        incrementDifferenceNumbersInHierarchy(match, newNb - formerNb, state_p);
+      }
+    }
+    return true;
   }
   
   /**
@@ -1036,4 +1313,120 @@ public class CategoryManager {
     }
   }
   
+  
+  /**
+   * An immutable state of the filtering of differences by categories: the categories
+   * that were active when the state was computed along with their focus modes, and the
+   * resulting difference numbers of matches.
+   * States are computed without side effects on the manager then installed at once,
+   * so that they can be computed in the background while the current one remains
+   * in use.
+   * @see CategoryManager#computeFilteringState(Map, FilteringState, Collection, IProgressMonitor)
+   * @see CategoryManager#setFilteringState(FilteringState)
+   */
+  public static class FilteringState {
+    /** The non-null, unmodifiable map from active categories to their focus modes */
+    private final Map<IDifferenceCategory, Boolean> _activeCategories;
+    /** Whether at least one active category is in focus mode */
+    private final boolean _focus;
+    /** The potentially null comparison on which numbers have been computed */
+    private final IComparison<?> _comparison;
+    /** The potentially null driving role with which numbers have been computed */
+    private final Role _drivingRole;
+    /** The non-null map from matches to difference numbers */
+    private final EMap<IMatch<?>, Integer> _matchToNb;
+    /** The non-null map from matches to the numbers of differences on them only */
+    private final EMap<IMatch<?>, Integer> _matchToOwnNb;
+    /** The non-null map from matches to the containers used for propagating numbers */
+    private final EMap<IMatch<?>, IMatch<?>> _matchToContainer;
+    /**
+     * Constructor for an empty state with no active category
+     */
+    public FilteringState() {
+      this(Collections.<IDifferenceCategory, Boolean>emptyMap(), null, null);
+    }
+    /**
+     * Constructor
+     * @param activeCategories_p a non-null map from the active categories to whether
+     *          they are in focus mode
+     * @param comparison_p a potentially null comparison
+     * @param drivingRole_p a potentially null driving role
+     */
+    protected FilteringState(Map<IDifferenceCategory, Boolean> activeCategories_p,
+        IComparison<?> comparison_p, Role drivingRole_p) {
+      _activeCategories = Collections.unmodifiableMap(
+          new HashMap<IDifferenceCategory, Boolean>(activeCategories_p));
+      _focus = _activeCategories.containsValue(Boolean.TRUE);
+      _comparison = comparison_p;
+      _drivingRole = drivingRole_p;
+      _matchToNb = new FHashMap<IMatch<?>, Integer>();
+      _matchToOwnNb = new FHashMap<IMatch<?>, Integer>();
+      _matchToContainer = new FHashMap<IMatch<?>, IMatch<?>>();
+    }
+    /**
+     * Return the categories that were active when this state was computed
+     * @return a non-null, unmodifiable set
+     */
+    public Set<IDifferenceCategory> getActiveCategories() {
+      return _activeCategories.keySet();
+    }
+    /**
+     * Return the number of differences associated to the given match
+     * @param match_p a non-null match
+     * @return a positive int or 0
+     */
+    public int getDifferenceNumber(IMatch<?> match_p) {
+      Integer currentNb = _matchToNb.get(match_p);
+      return currentNb == null? 0: currentNb.intValue();
+    }
+    /**
+     * Return the categories that were active and in focus mode when this state was
+     * computed
+     * @return a non-null, modifiable set
+     */
+    public Set<IDifferenceCategory> getFocusedCategories() {
+      Set<IDifferenceCategory> result = new HashSet<IDifferenceCategory>();
+      for (Map.Entry<IDifferenceCategory, Boolean> entry : _activeCategories.entrySet()) {
+        if (entry.getValue().booleanValue()) {
+          result.add(entry.getKey());
+        }
+      }
+      return result;
+    }
+    /**
+     * Return the number of differences on the given match, excluding differences on
+     * children
+     * @param match_p a non-null match
+     * @return a positive int or 0
+     */
+    public int getOwnDifferenceNumber(IMatch<?> match_p) {
+      Integer currentNb = _matchToOwnNb.get(match_p);
+      return currentNb == null? 0: currentNb.intValue();
+    }
+    /**
+     * Return whether the given difference is filtered out by the categories of
+     * this state
+     * @param difference_p a non-null difference
+     * @param node_p the non-null diff node that is the context of categories
+     */
+    public boolean isFiltered(IDifference<?> difference_p, EMFDiffNode node_p) {
+      boolean diffFocus = false; // At least one covering category is in focus mode
+      for (Map.Entry<IDifferenceCategory, Boolean> entry : _activeCategories.entrySet()) {
+        boolean catFocus = entry.getValue().booleanValue();
+        boolean covered = entry.getKey().covers(difference_p, node_p);
+        if (covered) {
+          // Covered by active category
+          if (!catFocus) {
+            // Covered by category in filtering mode
+            return true;
+          }
+          // Else covered by category in focus mode: proceed
+          diffFocus = true;
+        }
+      }
+      // Not filtered out by any category
+      return _focus && !diffFocus; // All categories in focus mode are non-covering
+    }
+  }
+  
 }
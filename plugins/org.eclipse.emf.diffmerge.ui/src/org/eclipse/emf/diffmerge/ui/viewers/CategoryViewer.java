@@ -336,7 +336,8 @@ public class CategoryViewer extends Viewer {
           applyChange(change.getKey(), change.getValue());
         }
         _changedCategories.clear();
-        _node.updateDifferenceNumbers();
+        // Only category states changed: compute filtering without blocking the UI
+        _node.updateDifferenceNumbersInBackground();
         firePropertyChangeEvent(PROPERTY_HAS_CHANGES, Boolean.FALSE);
       }
     }
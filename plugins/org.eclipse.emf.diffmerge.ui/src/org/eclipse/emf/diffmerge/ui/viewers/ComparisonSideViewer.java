@@ -100,6 +100,18 @@ public class ComparisonSideViewer extends TreeViewer implements IComparisonSideV
           getSideRole());
   }
   
+  /**
+   * @see org.eclipse.jface.viewers.AbstractTreeViewer#internalRefresh(java.lang.Object, boolean)
+   */
+  @Override
+  protected void internalRefresh(Object element_p, boolean updateLabels_p) {
+    if (updateLabels_p && getLabelProvider() instanceof DiffDecoratingLabelProvider) {
+      // Labels may have changed independently of the comparison
+      ((DiffDecoratingLabelProvider)getLabelProvider()).cacheClear();
+    }
+    super.internalRefresh(element_p, updateLabels_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.ui.viewers.IComparisonSideViewer#isLeftSide()
    */
@@ -11,10 +11,16 @@
  **********************************************************************/
 package org.eclipse.emf.diffmerge.ui.viewers;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.emf.diffmerge.generic.api.IComparison;
 import org.eclipse.emf.diffmerge.generic.api.IMatch;
@@ -39,6 +45,14 @@ import org.eclipse.swt.widgets.Composite;
  */
 public class ComparisonTreeViewer extends TreeViewer {
   
+  /** The potentially null index of the paths that represent user differences,
+   *  where null stands for obsolete */
+  private UserDifferenceIndex _userDifferenceIndex;
+  
+  /** The potentially null cache of the paths of matches, where null stands for obsolete */
+  private MatchPathCache _matchPathCache;
+  
+  
   /**
    * Constructor
    * @param parent_p a non-null composite
@@ -58,6 +72,110 @@ public class ComparisonTreeViewer extends TreeViewer {
     setLabelProvider(new LabelProvider());
     ColumnViewerToolTipSupport.enableFor(this);
     getControl().setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+    _userDifferenceIndex = null;
+    _matchPathCache = null;
+  }
+  
+  /**
+   * Build and return an index of the paths that currently represent user differences
+   * @return a non-null index
+   */
+  protected UserDifferenceIndex buildUserDifferenceIndex() {
+    CategoryManager categoryManager = getInput().getCategoryManager();
+    List<TreePath> paths = new ArrayList<TreePath>();
+    // Depth-first search (graphical order) without recursion since trees may be deep
+    Deque<TreePath> toVisit = new ArrayDeque<TreePath>();
+    toVisit.push(TreePath.EMPTY);
+    while (!toVisit.isEmpty()) {
+      TreePath current = toVisit.pop();
+      if (current.getSegmentCount() > 0 &&
+          categoryManager.representAsUserDifference(current))
+        paths.add(current);
+      Object[] children = getSortedChildren(current);
+      for (int i = children.length - 1; i >= 0; i--) {
+        toVisit.push(current.createChildPath(children[i]));
+      }
+    }
+    return new UserDifferenceIndex(paths, categoryManager.getUpdateStamp());
+  }
+  
+  /**
+   * Compare the given paths according to depth-first search (graphical order)
+   * @param path1_p a non-null path that belongs to the tree
+   * @param path2_p a non-null path that belongs to the tree
+   * @param siblings_p a non-null, modifiable map from parent paths to their sorted
+   *          children, used as a cache
+   * @return a negative int, 0 or a positive int if path1_p is respectively before,
+   *         equal to or after path2_p
+   */
+  protected int compareInTree(TreePath path1_p, TreePath path2_p,
+      Map<TreePath, List<?>> siblings_p) {
+    int count1 = path1_p.getSegmentCount();
+    int count2 = path2_p.getSegmentCount();
+    int common = 0;
+    while (common < count1 && common < count2 &&
+        path1_p.getSegment(common).equals(path2_p.getSegment(common))) {
+      common++;
+    }
+    if (common == count1 || common == count2) {
+      // One is a prefix of the other: the shorter comes first
+      return count1 - count2;
+    }
+    TreePath parentPath = path1_p;
+    while (parentPath.getSegmentCount() > common) {
+      parentPath = parentPath.getParentPath();
+    }
+    List<?> siblings = siblings_p.get(parentPath);
+    if (siblings == null) {
+      siblings = Arrays.asList(getSortedChildren(parentPath));
+      siblings_p.put(parentPath, siblings);
+    }
+    return siblings.indexOf(path1_p.getSegment(common)) -
+        siblings.indexOf(path2_p.getSegment(common));
+  }
+  
+  /**
+   * Compute the possible paths to the parent of the given match
+   * @param match_p a non-null match
+   * @param coverOppositeSide_p whether paths in the non-driving side must be covered too
+   * @param cache_p a non-null, valid cache
+   * @return a non-null, modifiable list of modifiable paths
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected List<List<IMatch<?>>> computeParentPaths(IMatch<?> match_p,
+      boolean coverOppositeSide_p, MatchPathCache cache_p) {
+    List<List<IMatch<?>>> result;
+    IComparison<?> comparison = getInput().getActualComparison();
+    Role drivingRole = getDrivingRole();
+    // Must the element be represented as a root?
+    if (cache_p.isRoot(match_p)) {
+      result = new ArrayList<List<IMatch<?>>>();
+      result.add(new ArrayList<IMatch<?>>());
+    } else {
+      // We only consider paths to containers on the driving side because
+      // the children of a move origin are not provided by the content provider
+      // in order to prevent infinite recursion cases due to "cyclic" moves
+      final boolean coverContainerOppositeSide = false;
+      // Get the paths of the driving container
+      IMatch<?> drivingContainer = ((IComparison)comparison).getContainerOf(
+          match_p, drivingRole);
+      result = getPathsFor(drivingContainer, false, coverContainerOppositeSide);
+      // Consider the non-driving container if required
+      if (coverOppositeSide_p) {
+        IMatch<?> oppositeContainer = ((IComparison)comparison).getContainerOf(
+            match_p, drivingRole.opposite());
+        if (oppositeContainer != null && oppositeContainer != drivingContainer) {
+          List<List<IMatch<?>>> oppositePaths =
+              getPathsFor(oppositeContainer, false, coverContainerOppositeSide);
+          CategoryManager categoryManager = getInput().getCategoryManager();
+          for (List<IMatch<?>> oppositePath : oppositePaths) {
+            if (!categoryManager.representAsMoveOrigin(UIUtil.toTreePath(oppositePath)))
+              result.add(oppositePath);
+          }
+        }
+      }
+    }
+    return result;
   }
   
   /**
@@ -117,6 +235,20 @@ public class ComparisonTreeViewer extends TreeViewer {
     return result;
   }
   
+  /**
+   * Return the cache of the paths of matches, creating it if needed
+   * Precondition: getInput() != null
+   * @return a non-null cache
+   */
+  protected MatchPathCache getMatchPathCache() {
+    MatchPathCache result = _matchPathCache;
+    if (result == null || !result.isValid()) {
+      result = new MatchPathCache();
+      _matchPathCache = result;
+    }
+    return result;
+  }
+  
   /**
    * Return the successor of the given path in depth-first search (graphical order).
    * The successor of the empty path is the first path, if any.
@@ -170,12 +302,11 @@ public class ComparisonTreeViewer extends TreeViewer {
    */
   public TreePath getNextUserDifference(TreePath path_p) {
     TreePath result = null;
-    TreePath next = getNextOf(path_p);
-    while (result == null && next != null) {
-      if (getInput().getCategoryManager().representAsUserDifference(next))
-        result = next;
-      else
-        next = getNextOf(next);
+    if (getInput() != null) {
+      UserDifferenceIndex index = getUserDifferenceIndex();
+      int position = index.getPositionAfter(path_p);
+      if (position < index.size())
+        result = index.get(position);
     }
     return result;
   }
@@ -187,7 +318,6 @@ public class ComparisonTreeViewer extends TreeViewer {
    * @param coverOppositeSide_p whether paths in the non-driving side must be covered too
    * @return a non-null list
    */
-  @SuppressWarnings({ "unchecked", "rawtypes" })
   protected List<List<IMatch<?>>> getPathsFor(IMatch<?> match_p, boolean parentsOnly_p,
       boolean coverOppositeSide_p) {
     List<List<IMatch<?>>> result;
@@ -198,42 +328,20 @@ public class ComparisonTreeViewer extends TreeViewer {
       result = new ArrayList<List<IMatch<?>>>();
     } else {
       // Comparison and match are well-defined
-      Role drivingRole = getDrivingRole();
-      // Must the element be represented as a root?
-      boolean isRoot = comparison.getContents(drivingRole).contains(match_p) ||
-        match_p.getUncoveredRole() == drivingRole &&
-        comparison.getContents(drivingRole.opposite()).contains(match_p);
-      if (isRoot) {
-        result = new ArrayList<List<IMatch<?>>>();
-        result.add(new ArrayList<IMatch<?>>());
-      } else {
-        // We only consider paths to containers on the driving side because
-        // the children of a move origin are not provided by the content provider
-        // in order to prevent infinite recursion cases due to "cyclic" moves
-        final boolean coverContainerOppositeSide = false;
-        // Get the paths of the driving container
-        IMatch<?> drivingContainer = ((IComparison)comparison).getContainerOf(
-            match_p, drivingRole);
-        result = getPathsFor(drivingContainer, false, coverContainerOppositeSide);
-        // Consider the non-driving container if required
-        if (coverOppositeSide_p) {
-          IMatch<?> oppositeContainer = ((IComparison)comparison).getContainerOf(
-              match_p, drivingRole.opposite());
-          if (oppositeContainer != null && oppositeContainer != drivingContainer) {
-            List<List<IMatch<?>>> oppositePaths =
-                getPathsFor(oppositeContainer, false, coverContainerOppositeSide);
-            CategoryManager categoryManager = getInput().getCategoryManager();
-            for (List<IMatch<?>> oppositePath : oppositePaths) {
-              if (!categoryManager.representAsMoveOrigin(UIUtil.toTreePath(oppositePath)))
-                result.add(oppositePath);
-            }
-          }
-        }
+      MatchPathCache cache = getMatchPathCache();
+      List<List<IMatch<?>>> parentPaths = cache.getParentPaths(match_p, coverOppositeSide_p);
+      if (parentPaths == null) {
+        parentPaths = computeParentPaths(match_p, coverOppositeSide_p, cache);
+        cache.putParentPaths(match_p, coverOppositeSide_p, parentPaths);
       }
-      if (!parentsOnly_p) {
-        for (List<IMatch<?>> path : result) {
+      // Copy since callers are free to modify the result
+      result = new ArrayList<List<IMatch<?>>>(parentPaths.size());
+      for (List<IMatch<?>> parentPath : parentPaths) {
+        List<IMatch<?>> path = new ArrayList<IMatch<?>>(parentPath.size() + 1);
+        path.addAll(parentPath);
+        if (!parentsOnly_p)
           path.add(match_p);
-        }
+        result.add(path);
       }
     }
     return result;
@@ -297,12 +405,15 @@ public class ComparisonTreeViewer extends TreeViewer {
    */
   public TreePath getPreviousUserDifference(TreePath path_p) {
     TreePath result = null;
-    TreePath previous = getPreviousOf(path_p);
-    while (result == null && previous != null) {
-      if (getInput().getCategoryManager().representAsUserDifference(previous))
-        result = previous;
-      else
-        previous = getPreviousOf(previous);
+    if (getInput() != null) {
+      UserDifferenceIndex index = getUserDifferenceIndex();
+      // The predecessor of the empty path is the last path
+      int position = path_p.getSegmentCount() == 0? index.size() - 1:
+        index.getPositionAfter(path_p) - 1;
+      if (position >= 0 && index.get(position).equals(path_p))
+        position--;
+      if (position >= 0)
+        result = index.get(position);
     }
     return result;
   }
@@ -338,6 +449,234 @@ public class ComparisonTreeViewer extends TreeViewer {
     return super.getSortedChildren(parentElementOrTreePath_p);
   }
   
+  /**
+   * Return the index of the paths that currently represent user differences,
+   * building it if needed
+   * Precondition: getInput() != null
+   * @return a non-null index
+   */
+  protected UserDifferenceIndex getUserDifferenceIndex() {
+    UserDifferenceIndex result = _userDifferenceIndex;
+    if (result == null ||
+        result.getStamp() != getInput().getCategoryManager().getUpdateStamp()) {
+      result = buildUserDifferenceIndex();
+      _userDifferenceIndex = result;
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.jface.viewers.AbstractTreeViewer#inputChanged(java.lang.Object, java.lang.Object)
+   */
+  @Override
+  protected void inputChanged(Object input_p, Object oldInput_p) {
+    invalidateMatchPathCache();
+    invalidateUserDifferenceIndex();
+    super.inputChanged(input_p, oldInput_p);
+  }
+  
+  /**
+   * @see org.eclipse.jface.viewers.AbstractTreeViewer#internalRefresh(java.lang.Object, boolean)
+   */
+  @Override
+  protected void internalRefresh(Object element_p, boolean updateLabels_p) {
+    // The tree may have changed, e.g., due to merges or to a new sorter or filter
+    invalidateMatchPathCache();
+    invalidateUserDifferenceIndex();
+    if (updateLabels_p && getLabelProvider() instanceof DiffDecoratingLabelProvider) {
+      // Labels may have changed independently of the comparison
+      ((DiffDecoratingLabelProvider)getLabelProvider()).cacheClear();
+    }
+    super.internalRefresh(element_p, updateLabels_p);
+  }
+  
+  /**
+   * Mark the cache of the paths of matches as obsolete
+   */
+  protected void invalidateMatchPathCache() {
+    _matchPathCache = null;
+  }
+  
+  /**
+   * Mark the index of the paths that represent user differences as obsolete
+   */
+  protected void invalidateUserDifferenceIndex() {
+    _userDifferenceIndex = null;
+  }
+  
+  
+  /**
+   * A cache of the paths to the parents of matches in the tree, together with the
+   * sets of root matches of both sides, which allows selection synchronization
+   * without re-building the lists of roots and walking up the containers every time.
+   * It is only valid for the comparison, driving role and state of the category
+   * manager at the time it was created.
+   */
+  protected class MatchPathCache {
+    
+    /** The non-null comparison at the time of creation */
+    private final IComparison<?> _comparison;
+    
+    /** The non-null driving role at the time of creation */
+    private final Role _drivingRole;
+    
+    /** The update stamp of the category manager at the time of creation */
+    private final long _stamp;
+    
+    /** The non-null set of the root matches on the driving side */
+    private final Set<IMatch<?>> _drivingRoots;
+    
+    /** The non-null set of the root matches on the non-driving side */
+    private final Set<IMatch<?>> _oppositeRoots;
+    
+    /** The non-null map from matches to the paths to their parents, driving side only */
+    private final Map<IMatch<?>, List<List<IMatch<?>>>> _drivingParentPaths;
+    
+    /** The non-null map from matches to the paths to their parents, both sides */
+    private final Map<IMatch<?>, List<List<IMatch<?>>>> _allParentPaths;
+    
+    /**
+     * Constructor
+     * Precondition: getInput() != null
+     */
+    public MatchPathCache() {
+      EMFDiffNode input = getInput();
+      _comparison = input.getActualComparison();
+      _drivingRole = getDrivingRole();
+      _stamp = input.getCategoryManager().getUpdateStamp();
+      _drivingRoots = new HashSet<IMatch<?>>(_comparison.getContents(_drivingRole));
+      _oppositeRoots = new HashSet<IMatch<?>>(
+          _comparison.getContents(_drivingRole.opposite()));
+      _drivingParentPaths = new HashMap<IMatch<?>, List<List<IMatch<?>>>>();
+      _allParentPaths = new HashMap<IMatch<?>, List<List<IMatch<?>>>>();
+    }
+    
+    /**
+     * Return the cached paths to the parent of the given match, if any
+     * @param match_p a non-null match
+     * @param coverOppositeSide_p whether paths in the non-driving side are covered
+     * @return a potentially null list which must not be modified
+     */
+    public List<List<IMatch<?>>> getParentPaths(IMatch<?> match_p,
+        boolean coverOppositeSide_p) {
+      return (coverOppositeSide_p? _allParentPaths: _drivingParentPaths).get(match_p);
+    }
+    
+    /**
+     * Return whether the given match must be represented as a root
+     * @param match_p a non-null match
+     */
+    public boolean isRoot(IMatch<?> match_p) {
+      return _drivingRoots.contains(match_p) ||
+          match_p.getUncoveredRole() == _drivingRole && _oppositeRoots.contains(match_p);
+    }
+    
+    /**
+     * Return whether this cache is still consistent with the input of the viewer
+     */
+    public boolean isValid() {
+      EMFDiffNode input = getInput();
+      return input != null && input.getActualComparison() == _comparison &&
+          getDrivingRole() == _drivingRole &&
+          input.getCategoryManager().getUpdateStamp() == _stamp;
+    }
+    
+    /**
+     * Register the given paths to the parent of the given match
+     * @param match_p a non-null match
+     * @param coverOppositeSide_p whether paths in the non-driving side are covered
+     * @param parentPaths_p a non-null list which must not be modified afterwards
+     */
+    public void putParentPaths(IMatch<?> match_p, boolean coverOppositeSide_p,
+        List<List<IMatch<?>>> parentPaths_p) {
+      (coverOppositeSide_p? _allParentPaths: _drivingParentPaths).put(
+          match_p, parentPaths_p);
+    }
+  }
+  
+  
+  /**
+   * An ordered index of the paths of the tree that represent user differences, which
+   * allows retrieving the user difference that precedes or follows any path by binary
+   * search instead of walking the tree.
+   * It is only valid for the state of the category manager and of the tree at the
+   * time it was built.
+   */
+  protected class UserDifferenceIndex {
+    
+    /** The non-null, unmodifiable list of paths in depth-first order */
+    private final List<TreePath> _paths;
+    
+    /** The non-null map from the paths to their positions */
+    private final Map<TreePath, Integer> _positions;
+    
+    /** The update stamp of the category manager at the time of construction */
+    private final long _stamp;
+    
+    /**
+     * Constructor
+     * @param paths_p a non-null list of paths in depth-first order
+     * @param stamp_p the update stamp of the category manager
+     */
+    public UserDifferenceIndex(List<TreePath> paths_p, long stamp_p) {
+      _paths = Collections.unmodifiableList(paths_p);
+      _positions = new HashMap<TreePath, Integer>(paths_p.size() * 4 / 3 + 1);
+      for (int i = 0; i < paths_p.size(); i++) {
+        _positions.put(paths_p.get(i), Integer.valueOf(i));
+      }
+      _stamp = stamp_p;
+    }
+    
+    /**
+     * Return the path at the given position
+     * @param position_p a position between 0 (inclusive) and size() (exclusive)
+     * @return a non-null path
+     */
+    public TreePath get(int position_p) {
+      return _paths.get(position_p);
+    }
+    
+    /**
+     * Return the position of the first path of this index which comes after the given
+     * path in depth-first order
+     * @param path_p a non-null path that belongs to the tree
+     * @return a position between 0 and size(), both inclusive
+     */
+    public int getPositionAfter(TreePath path_p) {
+      Integer known = _positions.get(path_p);
+      if (known != null)
+        return known.intValue() + 1;
+      Map<TreePath, List<?>> siblings = new HashMap<TreePath, List<?>>();
+      int low = 0;
+      int high = _paths.size();
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (compareInTree(_paths.get(middle), path_p, siblings) <= 0)
+          low = middle + 1;
+        else
+          high = middle;
+      }
+      return low;
+    }
+    
+    /**
+     * Return the update stamp of the category manager at the time of construction
+     * @see CategoryManager#getUpdateStamp()
+     * @return a positive long or 0
+     */
+    public long getStamp() {
+      return _stamp;
+    }
+    
+    /**
+     * Return the number of paths in this index
+     * @return a positive int or 0
+     */
+    public int size() {
+      return _paths.size();
+    }
+  }
+  
   
   /**
    * The content provider for this viewer.
@@ -2263,18 +2263,23 @@ public class ComparisonViewer extends AbstractComparisonViewer {
     final EMFDiffNode input = getInput();
     final ComparisonSelection selection = getSelection();
     if (input != null && !differences_p.isEmpty()) {
-      executeOnComparison(new Runnable() {
-        /**
-         * @see java.lang.Runnable#run()
-         */
-        public void run() {
-          input.ignore(differences_p);
-          getUIComparison().setLastActionSelection(selection);
-        }
-      });
+      input.suspendBackgroundFiltering();
+      try {
+        executeOnComparison(new Runnable() {
+          /**
+           * @see java.lang.Runnable#run()
+           */
+          public void run() {
+            input.ignore(differences_p);
+            getUIComparison().setLastActionSelection(selection);
+          }
+        });
+      } finally {
+        input.resumeBackgroundFiltering();
+      }
       if (!input.isReactive()) {
         firePropertyChangeEvent(CompareEditorInput.DIRTY_STATE, Boolean.valueOf(true));
-        input.updateDifferenceNumbers();
+        input.updateDifferenceNumbers(differences_p);
       }
     }
   }
@@ -2531,18 +2536,23 @@ public class ComparisonViewer extends AbstractComparisonViewer {
       }
       if (proceed) {
         // Merge is confirmed
-        executeOnModel(new IRunnableWithProgress() {
-          /**
-           * @see org.eclipse.jface.operation.IRunnableWithProgress#run(org.eclipse.core.runtime.IProgressMonitor)
-           */
-          @SuppressWarnings({ "unchecked", "rawtypes" })
-          public void run(IProgressMonitor monitor_p) throws InvocationTargetException,
-          InterruptedException {
-            merged.addAll(((IComparison)getComparison()).merge(
-                toMerge, destination, true, monitor_p));
-            getUIComparison().setLastActionSelection(selection_p);
-          }
-        }, toLeft_p);
+        input.suspendBackgroundFiltering();
+        try {
+          executeOnModel(new IRunnableWithProgress() {
+            /**
+             * @see org.eclipse.jface.operation.IRunnableWithProgress#run(org.eclipse.core.runtime.IProgressMonitor)
+             */
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            public void run(IProgressMonitor monitor_p) throws InvocationTargetException,
+            InterruptedException {
+              merged.addAll(((IComparison)getComparison()).merge(
+                  toMerge, destination, true, monitor_p));
+              getUIComparison().setLastActionSelection(selection_p);
+            }
+          }, toLeft_p);
+        } finally {
+          input.resumeBackgroundFiltering();
+        }
         done = true;
       }
     } else {
@@ -2555,7 +2565,7 @@ public class ComparisonViewer extends AbstractComparisonViewer {
       input.setModified(true, toLeft_p);
       if (!input.isReactive()) {
         firePropertyChangeEvent(CompareEditorInput.DIRTY_STATE, Boolean.valueOf(true));
-        input.updateDifferenceNumbers();
+        input.updateDifferenceNumbers(merged);
       }
       if (input.isUserPropertyTrue(P_LOG_EVENTS)) {
         getLogger().log(new MergeLogEvent(input, merged, toLeft_p));
@@ -2583,23 +2593,28 @@ public class ComparisonViewer extends AbstractComparisonViewer {
       final boolean onLeft = leftMergedValue != null;
       final String newValue = onLeft? leftMergedValue: rightMergedValue;
       final IEditableTreeDataScope<?> impactedScope = node_p.getScope(onLeft);
-      executeOnModel(new IRunnableWithProgress() {
-        /**
-         * @see org.eclipse.jface.operation.IRunnableWithProgress#run(org.eclipse.core.runtime.IProgressMonitor)
-         */
-        @SuppressWarnings({ "unchecked", "rawtypes" })
-        public void run(IProgressMonitor monitor_p)
-            throws InvocationTargetException, InterruptedException {
-          Object holder = match_p.get(node_p.getRoleForSide(onLeft));
-          ((IEditableTreeDataScope)impactedScope).addAttributeValue(holder, attribute_p, newValue);
-          node_p.setModified(true, onLeft);
-          node_p.ignore(toIgnore);
-          getUIComparison().setLastActionSelection(selection);
-        }
-      }, onLeft);
+      node_p.suspendBackgroundFiltering();
+      try {
+        executeOnModel(new IRunnableWithProgress() {
+          /**
+           * @see org.eclipse.jface.operation.IRunnableWithProgress#run(org.eclipse.core.runtime.IProgressMonitor)
+           */
+          @SuppressWarnings({ "unchecked", "rawtypes" })
+          public void run(IProgressMonitor monitor_p)
+              throws InvocationTargetException, InterruptedException {
+            Object holder = match_p.get(node_p.getRoleForSide(onLeft));
+            ((IEditableTreeDataScope)impactedScope).addAttributeValue(holder, attribute_p, newValue);
+            node_p.setModified(true, onLeft);
+            node_p.ignore(toIgnore);
+            getUIComparison().setLastActionSelection(selection);
+          }
+        }, onLeft);
+      } finally {
+        node_p.resumeBackgroundFiltering();
+      }
       setSelection(null);
       firePropertyChangeEvent(CompareEditorInput.DIRTY_STATE, Boolean.TRUE);
-      getInput().updateDifferenceNumbers();
+      getInput().updateDifferenceNumbers(toIgnore);
     }
   }
   
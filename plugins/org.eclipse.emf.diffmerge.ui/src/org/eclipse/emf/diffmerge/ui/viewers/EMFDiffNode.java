@@ -15,7 +15,9 @@ package org.eclipse.emf.diffmerge.ui.viewers;
 import static org.eclipse.emf.diffmerge.ui.viewers.DefaultUserProperties.P_SUPPORT_UNDO_REDO;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 
 import org.eclipse.compare.structuremergeviewer.DiffNode;
 import org.eclipse.compare.structuremergeviewer.Differencer;
@@ -23,6 +25,11 @@ import org.eclipse.core.commands.operations.IOperationHistory;
 import org.eclipse.core.commands.operations.IOperationHistoryListener;
 import org.eclipse.core.commands.operations.IUndoContext;
 import org.eclipse.core.commands.operations.OperationHistoryEvent;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.diffmerge.generic.api.IComparison;
 import org.eclipse.emf.diffmerge.generic.api.IMatch;
 import org.eclipse.emf.diffmerge.generic.api.Role;
@@ -33,6 +40,7 @@ import org.eclipse.emf.diffmerge.generic.api.scopes.IEditableTreeDataScope;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
 import org.eclipse.emf.diffmerge.generic.gdiffdata.GComparison;
 import org.eclipse.emf.diffmerge.ui.EMFDiffMergeUIPlugin;
+import org.eclipse.emf.diffmerge.ui.Messages;
 import org.eclipse.emf.diffmerge.ui.diffuidata.UIComparison;
 import org.eclipse.emf.diffmerge.ui.diffuidata.impl.UIComparisonImpl;
 import org.eclipse.emf.diffmerge.ui.setup.ModelScopeTypedElement;
@@ -41,6 +49,7 @@ import org.eclipse.emf.diffmerge.ui.util.CompositeUndoContext;
 import org.eclipse.emf.diffmerge.ui.util.IUserPropertyOwner;
 import org.eclipse.emf.diffmerge.ui.util.UserProperty.Identifier;
 import org.eclipse.emf.diffmerge.ui.util.UserPropertyOwner;
+import org.eclipse.emf.diffmerge.ui.viewers.CategoryManager.FilteringState;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.edit.domain.EditingDomain;
 import org.eclipse.emf.edit.domain.IEditingDomainProvider;
@@ -48,6 +57,7 @@ import org.eclipse.emf.transaction.TransactionalEditingDomain;
 import org.eclipse.emf.workspace.IWorkspaceCommandStack;
 import org.eclipse.emf.workspace.ResourceUndoContext;
 import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorInput;
 
 
@@ -85,6 +95,9 @@ IUserPropertyOwner {
   /** The non-null difference category manager */
   private final CategoryManager _categoryManager;
   
+  /** The potentially null job that re-computes filtering in the background */
+  private FilteringJob _filteringJob;
+  
   /** Whether the left model is editable */
   private boolean _isTargetEditable;
   
@@ -161,6 +174,7 @@ IUserPropertyOwner {
     _leftRole = leftRole_p;
     _twoWayReferenceRole = null;
     _categoryManager = new CategoryManager(this);
+    _filteringJob = null;
     _isTargetEditionPossible = (leftRole_p == Role.TARGET)? isLeftEditionPossible_p:
       isRightEditionPossible_p;
     _isReferenceEditionPossible = (leftRole_p == Role.TARGET)? isRightEditionPossible_p:
@@ -210,6 +224,8 @@ IUserPropertyOwner {
       IOperationHistory opHistory =
           ((IWorkspaceCommandStack)domain_p.getCommandStack()).getOperationHistory();
       result = new IOperationHistoryListener() {
+        /** Whether an undo or redo is in progress, during which filtering is suspended */
+        private boolean _undoRedoInProgress = false;
         /**
          * @see org.eclipse.core.commands.operations.IOperationHistoryListener#historyNotification(org.eclipse.core.commands.operations.OperationHistoryEvent)
          */
@@ -217,15 +233,35 @@ IUserPropertyOwner {
           IUndoContext undoContext = getUndoContext();
           if (undoContext != null && event_p.getOperation().hasContext(undoContext)) {
             switch (event_p.getEventType()) {
+            case OperationHistoryEvent.ABOUT_TO_REDO:
+            case OperationHistoryEvent.ABOUT_TO_UNDO:
+              if (!_undoRedoInProgress) {
+                _undoRedoInProgress = true;
+                suspendBackgroundFiltering();
+              }
+              break;
             case OperationHistoryEvent.OPERATION_ADDED:
             case OperationHistoryEvent.REDONE:
             case OperationHistoryEvent.UNDONE:
               updateDifferenceNumbers();
+              endUndoRedo();
+              break;
+            case OperationHistoryEvent.OPERATION_NOT_OK:
+              endUndoRedo();
               break;
             default: // Ignore
             }
           }
         }
+        /**
+         * Resume filtering if it has been suspended by an undo or redo
+         */
+        private void endUndoRedo() {
+          if (_undoRedoInProgress) {
+            _undoRedoInProgress = false;
+            resumeBackgroundFiltering();
+          }
+        }
       };
       opHistory.addOperationHistoryListener(result);
     }
@@ -236,6 +272,11 @@ IUserPropertyOwner {
    * @see org.eclipse.emf.edit.provider.IDisposable#dispose()
    */
   public void dispose() {
+    // Background filtering
+    if (_filteringJob != null) {
+      _filteringJob.cancel();
+      _filteringJob = null;
+    }
     // Resource manager
     _resourceManager.dispose();
     // User properties
@@ -706,4 +747,225 @@ IUserPropertyOwner {
     fireChange();
   }
   
+  /**
+   * Re-compute filtering and differences numbers incrementally, assuming that the
+   * comparison has only changed with respect to the given differences since the
+   * last update
+   * @see CategoryManager#update(Collection)
+   * @param changedDifferences_p a non-null, potentially empty collection of differences
+   */
+  public void updateDifferenceNumbers(Collection<? extends IDifference<?>> changedDifferences_p) {
+    getCategoryManager().update(changedDifferences_p);
+    fireChange();
+  }
+  
+  /**
+   * Resume the background computation of filtering after a call to
+   * suspendBackgroundFiltering(), completing the pending request if any.
+   * This method must be called from the UI thread.
+   * @see EMFDiffNode#suspendBackgroundFiltering()
+   */
+  public void resumeBackgroundFiltering() {
+    if (_filteringJob != null) {
+      _filteringJob.resume();
+    }
+  }
+  
+  /**
+   * Cancel the background computation of filtering, if any, and wait for its
+   * completion, so that the comparison can be modified safely. The pending request,
+   * if any, is kept and no computation is started until resumeBackgroundFiltering()
+   * is called as many times as this method.
+   * This method must be called from the UI thread.
+   * @see EMFDiffNode#resumeBackgroundFiltering()
+   */
+  public void suspendBackgroundFiltering() {
+    if (_filteringJob != null) {
+      _filteringJob.suspend();
+    }
+  }
+  
+  /**
+   * Re-compute filtering and differences numbers according to the current states of
+   * categories in a background job, then install the result and notify listeners
+   * from the UI thread. The current filtering remains in use in the meantime.
+   * Successive calls before completion are coalesced into one computation.
+   * This method must be called from the UI thread.
+   */
+  public void updateDifferenceNumbersInBackground() {
+    if (_filteringJob == null) {
+      _filteringJob = new FilteringJob();
+    }
+    _filteringJob.request(getCategoryManager().computeActiveCategories());
+  }
+  
+  
+  /**
+   * A job that computes the filtering state for a configuration of categories then
+   * installs it into the category manager from the UI thread.
+   * A new request cancels the computation in progress, if any, so that only the last
+   * one is completed. A result is discarded if the filtering state of the manager has
+   * changed in the meantime, e.g., due to a merge, in which case the computation is
+   * started again. Computations are suspended while the comparison is being modified,
+   * and a computation which fails, e.g., due to a concurrent modification, is retried
+   * a bounded number of times.
+   */
+  protected class FilteringJob extends Job {
+    /** The maximal number of successive retries after failures */
+    private static final int MAX_RETRIES = 3;
+    /** The delay in ms before retrying after a failure */
+    private static final long RETRY_DELAY = 200L;
+    /** The potentially null configuration of categories to apply, where null stands for none */
+    private Map<IDifferenceCategory, Boolean> _pendingConfiguration;
+    /** The number of suspensions in progress, during which no computation is started */
+    private volatile int _suspensions;
+    /** The number of successive failures of the computation */
+    private int _failures;
+    /**
+     * Constructor
+     */
+    public FilteringJob() {
+      super(Messages.EMFDiffNode_Filtering);
+      _pendingConfiguration = null;
+      _suspensions = 0;
+      _failures = 0;
+      setPriority(Job.INTERACTIVE);
+    }
+    /**
+     * Install the given state unless it is obsolete, otherwise compute again
+     * Precondition: this method is called from the UI thread
+     * @param configuration_p the non-null configuration of categories of the state
+     * @param base_p the non-null state from which the given one has been computed
+     * @param state_p the non-null state to install
+     */
+    protected void install(Map<IDifferenceCategory, Boolean> configuration_p,
+        FilteringState base_p, FilteringState state_p) {
+      if (_filteringJob != this) {
+        return; // Node disposed
+      }
+      CategoryManager manager = getCategoryManager();
+      if (manager.getFilteringState() == base_p) {
+        manager.setFilteringState(state_p);
+        fireChange();
+      } else {
+        // Re-compute from the new state unless a more recent request exists
+        restore(configuration_p);
+        reschedule(0L);
+      }
+    }
+    /**
+     * Schedule the computation after the given delay if a request is pending and
+     * computations are not suspended
+     * @param delay_p a positive delay in ms or 0
+     */
+    protected void reschedule(long delay_p) {
+      boolean pending;
+      synchronized (this) {
+        pending = _pendingConfiguration != null;
+      }
+      if (pending && _suspensions == 0) {
+        schedule(delay_p);
+      }
+    }
+    /**
+     * Request the computation of the filtering state for the given configuration of
+     * categories, canceling the computation in progress if any
+     * @param configuration_p a non-null map from the active categories to whether
+     *          they are in focus mode
+     */
+    public void request(Map<IDifferenceCategory, Boolean> configuration_p) {
+      synchronized (this) {
+        _pendingConfiguration = configuration_p;
+        _failures = 0;
+      }
+      cancel();
+      reschedule(0L);
+    }
+    /**
+     * Restore the given configuration as the pending request unless a more recent
+     * request exists
+     * @param configuration_p a non-null configuration of categories
+     */
+    protected synchronized void restore(Map<IDifferenceCategory, Boolean> configuration_p) {
+      if (_pendingConfiguration == null) {
+        _pendingConfiguration = configuration_p;
+      }
+    }
+    /**
+     * Resume computations after a call to suspend()
+     * Precondition: this method is called from the UI thread
+     */
+    public void resume() {
+      if (_suspensions > 0) {
+        _suspensions--;
+      }
+      reschedule(0L);
+    }
+    /**
+     * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor_p) {
+      final Map<IDifferenceCategory, Boolean> configuration;
+      synchronized (this) {
+        configuration = _pendingConfiguration;
+        _pendingConfiguration = null;
+      }
+      if (configuration == null) {
+        return Status.OK_STATUS;
+      }
+      final FilteringState base = getCategoryManager().getFilteringState();
+      final FilteringState result;
+      try {
+        result = getCategoryManager().computeFilteringState(configuration, base,
+            Collections.<IDifference<?>>emptyList(), monitor_p);
+      } catch (OperationCanceledException e) {
+        // Keep the request unless a more recent one exists
+        restore(configuration);
+        return Status.CANCEL_STATUS;
+      } catch (RuntimeException e) {
+        // The comparison may have been modified concurrently: keep the request and retry
+        restore(configuration);
+        boolean retry;
+        synchronized (this) {
+          _failures++;
+          retry = _failures <= MAX_RETRIES;
+        }
+        if (!retry) {
+          return new Status(IStatus.ERROR, EMFDiffMergeUIPlugin.getDefault().getPluginId(),
+              e.getLocalizedMessage(), e);
+        }
+        reschedule(RETRY_DELAY);
+        return Status.CANCEL_STATUS;
+      }
+      synchronized (this) {
+        _failures = 0;
+      }
+      Display.getDefault().asyncExec(new Runnable() {
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+          install(configuration, base, result);
+        }
+      });
+      return Status.OK_STATUS;
+    }
+    /**
+     * Cancel the computation in progress, if any, and wait for its completion while
+     * keeping its request, then prevent computations from starting until resume()
+     * is called
+     * Precondition: this method is called from the UI thread
+     */
+    public void suspend() {
+      _suspensions++;
+      cancel();
+      try {
+        join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+  
 }
\ No newline at end of file
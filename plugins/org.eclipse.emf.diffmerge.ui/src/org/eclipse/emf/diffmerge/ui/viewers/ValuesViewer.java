@@ -210,6 +210,18 @@ IDifferenceRelatedViewer {
     super.inputChanged(input_p, oldInput_p);
   }
   
+  /**
+   * @see org.eclipse.jface.viewers.AbstractTableViewer#internalRefresh(java.lang.Object, boolean)
+   */
+  @Override
+  protected void internalRefresh(Object element_p, boolean updateLabels_p) {
+    if (updateLabels_p && getLabelProvider() instanceof DiffDecoratingLabelProvider) {
+      // Labels may have changed independently of the comparison
+      ((DiffDecoratingLabelProvider)getLabelProvider()).cacheClear();
+    }
+    super.internalRefresh(element_p, updateLabels_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.ui.viewers.IDifferenceRelatedViewer#isDifferenceAgnostic()
    */
@@ -111,6 +111,17 @@ public class EComparisonImpl extends
     return new MatchOperation(this, policy_p, duplicateIDs_p);
   }
 
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.gdiffdata.impl.GComparisonImpl#getMatchOperation(org.eclipse.emf.diffmerge.generic.api.IMatchPolicy, java.util.Map, boolean)
+   * @generated NOT
+   */
+  @Override
+  protected IExpensiveOperation getMatchOperation(
+      IMatchPolicy<EObject> policy_p, Map<Role, Set<Object>> duplicateIDs_p,
+      boolean parallel_p) {
+    return new MatchOperation(this, policy_p, duplicateIDs_p, parallel_p);
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.IComparison.Editable#newAttributeValuePresence(org.eclipse.emf.diffmerge.generic.api.IMatch, java.lang.Object, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.Role, boolean)
    * @generated NOT
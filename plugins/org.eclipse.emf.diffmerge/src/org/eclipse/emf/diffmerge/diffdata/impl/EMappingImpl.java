@@ -13,8 +13,12 @@ package org.eclipse.emf.diffmerge.diffdata.impl;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
+import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
 import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.TreeIterator;
@@ -25,6 +29,7 @@ import org.eclipse.emf.diffmerge.diffdata.EMatch;
 import org.eclipse.emf.diffmerge.generic.api.Role;
 import org.eclipse.emf.diffmerge.generic.api.scopes.IEditableTreeDataScope;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
+import org.eclipse.emf.diffmerge.generic.gdiffdata.GdiffdataPackage;
 import org.eclipse.emf.diffmerge.generic.gdiffdata.impl.GMappingImpl;
 import org.eclipse.emf.diffmerge.structures.common.FArrayList;
 import org.eclipse.emf.ecore.EAttribute;
@@ -61,10 +66,22 @@ public class EMappingImpl extends GMappingImpl<EObject, EAttribute, EReference>
   private final ScopeCrossReferencer _referenceCrossReferencer;
 
   /**
-   * A non-null cross reference adapter on this mapping for retrieving matches from model elements
+   * The non-null, modifiable index of matches per TARGET element
    * @generated NOT
    */
-  private MatchCrossReferenceAdapter _matchAdapter;
+  private final Map<EObject, EMatch> _targetMatchIndex;
+
+  /**
+   * The non-null, modifiable index of matches per REFERENCE element
+   * @generated NOT
+   */
+  private final Map<EObject, EMatch> _referenceMatchIndex;
+
+  /**
+   * The non-null, modifiable index of matches per ANCESTOR element
+   * @generated NOT
+   */
+  private final Map<EObject, EMatch> _ancestorMatchIndex;
 
   /**
    * <!-- begin-user-doc -->
@@ -75,8 +92,10 @@ public class EMappingImpl extends GMappingImpl<EObject, EAttribute, EReference>
     super();
     _targetCrossReferencer = new ScopeCrossReferencer(this, Role.TARGET);
     _referenceCrossReferencer = new ScopeCrossReferencer(this, Role.REFERENCE);
-    _matchAdapter = new MatchCrossReferenceAdapter();
-    eAdapters().add(_matchAdapter);
+    _targetMatchIndex = new IdentityHashMap<EObject, EMatch>();
+    _referenceMatchIndex = new IdentityHashMap<EObject, EMatch>();
+    _ancestorMatchIndex = new IdentityHashMap<EObject, EMatch>();
+    eAdapters().add(new MatchIndexAdapter(this));
   }
 
   /**
@@ -98,9 +117,9 @@ public class EMappingImpl extends GMappingImpl<EObject, EAttribute, EReference>
     super.clear();
     _targetCrossReferencer.clear();
     _referenceCrossReferencer.clear();
-    eAdapters().remove(_matchAdapter);
-    _matchAdapter = new MatchCrossReferenceAdapter();
-    eAdapters().add(_matchAdapter);
+    _targetMatchIndex.clear();
+    _referenceMatchIndex.clear();
+    _ancestorMatchIndex.clear();
   }
 
   /**
@@ -150,25 +169,28 @@ public class EMappingImpl extends GMappingImpl<EObject, EAttribute, EReference>
   public EMatch getMatchFor(Object element_p, Role role_p) {
     EMatch result = null;
     if (role_p != null && element_p instanceof EObject) {
-      EReference matchReference;
-      switch (role_p) {
-      case ANCESTOR:
-        matchReference = DiffdataPackage.eINSTANCE.getEMatch_Ancestor();
-        break;
-      case REFERENCE:
-        matchReference = DiffdataPackage.eINSTANCE.getEMatch_Reference();
-        break;
-      default:
-        matchReference = DiffdataPackage.eINSTANCE.getEMatch_Target();
-      }
-      Collection<Setting> settings = _matchAdapter
-          .getNonNavigableInverseReferences((EObject) element_p);
-      for (Setting setting : settings) {
-        if (setting.getEStructuralFeature() == matchReference) {
-          result = (EMatch) setting.getEObject();
-          break;
-        }
-      }
+      result = getMatchIndex(role_p).get(element_p);
+    }
+    return result;
+  }
+
+  /**
+   * Return the index of matches per element for the given role
+   * @param role_p a non-null role
+   * @return a non-null, modifiable map
+   * @generated NOT
+   */
+  protected Map<EObject, EMatch> getMatchIndex(Role role_p) {
+    Map<EObject, EMatch> result;
+    switch (role_p) {
+    case ANCESTOR:
+      result = _ancestorMatchIndex;
+      break;
+    case REFERENCE:
+      result = _referenceMatchIndex;
+      break;
+    default:
+      result = _targetMatchIndex;
     }
     return result;
   }
@@ -199,10 +221,148 @@ public class EMappingImpl extends GMappingImpl<EObject, EAttribute, EReference>
     return result;
   }
 
+  /**
+   * An adapter that is in charge of synchronizing the match indexes of a mapping
+   * with its contents and with the elements of its matches.
+   * @generated NOT
+   */
+  protected static class MatchIndexAdapter extends AdapterImpl {
+    /** The non-null mapping whose indexes are synchronized */
+    protected final EMappingImpl _mapping;
+
+    /**
+     * Constructor
+     * @param mapping_p the non-null mapping whose indexes are synchronized
+     */
+    public MatchIndexAdapter(EMappingImpl mapping_p) {
+      _mapping = mapping_p;
+    }
+
+    /**
+     * @see org.eclipse.emf.common.notify.impl.AdapterImpl#isAdapterForType(java.lang.Object)
+     */
+    @Override
+    public boolean isAdapterForType(Object type_p) {
+      return type_p == MatchIndexAdapter.class;
+    }
+
+    /**
+     * @see org.eclipse.emf.common.notify.impl.AdapterImpl#notifyChanged(org.eclipse.emf.common.notify.Notification)
+     */
+    @Override
+    public void notifyChanged(Notification msg_p) {
+      Object feature = msg_p.getFeature();
+      int eventType = msg_p.getEventType();
+      if (feature == GdiffdataPackage.eINSTANCE
+          .getGMapping_ModifiableContents()) {
+        switch (eventType) {
+        case Notification.ADD:
+          matchAdded(msg_p.getNewValue());
+          break;
+        case Notification.ADD_MANY:
+          for (Object added : (Collection<?>) msg_p.getNewValue()) {
+            matchAdded(added);
+          }
+          break;
+        case Notification.REMOVE:
+          matchRemoved(msg_p.getOldValue());
+          break;
+        case Notification.REMOVE_MANY:
+          for (Object removed : (Collection<?>) msg_p.getOldValue()) {
+            matchRemoved(removed);
+          }
+          break;
+        case Notification.SET:
+          matchRemoved(msg_p.getOldValue());
+          matchAdded(msg_p.getNewValue());
+          break;
+        default:
+          // Nothing
+        }
+      } else if (msg_p.getNotifier() instanceof EMatch
+          && (eventType == Notification.SET
+              || eventType == Notification.RESOLVE)) {
+        Role role = getRole(feature);
+        if (role != null) {
+          EMatch match = (EMatch) msg_p.getNotifier();
+          Map<EObject, EMatch> index = _mapping.getMatchIndex(role);
+          Object oldElement = msg_p.getOldValue();
+          if (oldElement != null && index.get(oldElement) == match) {
+            index.remove(oldElement);
+          }
+          Object newElement = msg_p.getNewValue();
+          if (newElement instanceof EObject) {
+            index.put((EObject) newElement, match);
+          }
+        }
+      }
+    }
+
+    /**
+     * Return the role that corresponds to the given feature of matches, if any
+     * @param feature_p a potentially null feature
+     * @return a potentially null role
+     */
+    protected Role getRole(Object feature_p) {
+      Role result = null;
+      if (feature_p == DiffdataPackage.eINSTANCE.getEMatch_Target()) {
+        result = Role.TARGET;
+      } else if (feature_p == DiffdataPackage.eINSTANCE
+          .getEMatch_Reference()) {
+        result = Role.REFERENCE;
+      } else if (feature_p == DiffdataPackage.eINSTANCE.getEMatch_Ancestor()) {
+        result = Role.ANCESTOR;
+      }
+      return result;
+    }
+
+    /**
+     * Register the given match which has been added to the mapping
+     * @param match_p a potentially null object
+     */
+    protected void matchAdded(Object match_p) {
+      if (match_p instanceof EMatch) {
+        EMatch match = (EMatch) match_p;
+        if (!match.eAdapters().contains(this)) {
+          match.eAdapters().add(this);
+        }
+        for (Role role : Role.values()) {
+          EObject element = match.get(role);
+          if (element != null) {
+            _mapping.getMatchIndex(role).put(element, match);
+          }
+        }
+      }
+    }
+
+    /**
+     * Unregister the given match which has been removed from the mapping
+     * @param match_p a potentially null object
+     */
+    protected void matchRemoved(Object match_p) {
+      if (match_p instanceof EMatch) {
+        EMatch match = (EMatch) match_p;
+        match.eAdapters().remove(this);
+        for (Role role : Role.values()) {
+          EObject element = match.get(role);
+          if (element != null) {
+            Map<EObject, EMatch> index = _mapping.getMatchIndex(role);
+            if (index.get(element) == match) {
+              index.remove(element);
+            }
+          }
+        }
+      }
+    }
+  }
+
   /**
    * A cross reference adapter for retrieving matches from model elements.
+   * @deprecated Matches are now retrieved through the per-role indexes that
+   *             are maintained by MatchIndexAdapter
    * @generated NOT
    */
+  @Deprecated
   protected static class MatchCrossReferenceAdapter
       extends ECrossReferenceAdapter {
     /**
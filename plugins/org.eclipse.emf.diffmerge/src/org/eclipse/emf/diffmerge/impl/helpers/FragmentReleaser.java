@@ -0,0 +1,336 @@
+/*********************************************************************
+ * Copyright (c) 2019 Thales Global Services S.A.S.
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ **********************************************************************/
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.diffmerge.generic.api.IComparison;
+import org.eclipse.emf.diffmerge.generic.api.IMapping;
+import org.eclipse.emf.diffmerge.generic.api.IMatch;
+import org.eclipse.emf.diffmerge.generic.api.Role;
+import org.eclipse.emf.diffmerge.generic.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.generic.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
+import org.eclipse.emf.diffmerge.impl.scopes.FragmentedModelScope;
+import org.eclipse.emf.diffmerge.structures.IEqualityTester;
+import org.eclipse.emf.diffmerge.structures.common.FHashSet;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+
+
+/**
+ * A helper for releasing the fragments of the scopes of a computed comparison which
+ * are not involved in any difference, so as to bound the memory that a comparison of
+ * large fragmented models retains for as long as it is open.
+ * Fragments are released once the comparison has been computed, because matching is
+ * global: elements may move across fragments and references cross fragment boundaries,
+ * so no fragment can be released while the other scope is still being read. Releasing
+ * therefore lowers the memory retained after computation, not the peak memory during it.
+ * A fragment is involved in a difference if it holds an element that has differences,
+ * that has no match in the other scope, that is the value of a reference value
+ * presence, that is referenced by an element which has no match in the other scope,
+ * or that contains such an element in the containment tree.
+ * A fragment is only released if the fragments which hold the matching elements in
+ * the other scopes are released as well, so that no match is partially released.
+ * Matches whose elements have all been released are removed from the mapping, so that
+ * they are neither displayed nor merged afterwards.
+ * @see FragmentedModelScope#release(java.util.Collection)
+ */
+public class FragmentReleaser {
+  
+  /** The non-null comparison whose scopes are concerned */
+  protected final IComparison<EObject> _comparison;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p a non-null comparison which has been computed
+   */
+  public FragmentReleaser(IComparison<EObject> comparison_p) {
+    _comparison = comparison_p;
+  }
+  
+  /**
+   * Return the comparison whose scopes are concerned
+   * @return a non-null comparison
+   */
+  public IComparison<EObject> getComparison() {
+    return _comparison;
+  }
+  
+  /**
+   * Return the resources of the scopes which can be released because they are not
+   * involved in differences, and neither are the resources which hold the matching
+   * elements in the other scopes
+   * @return a non-null, potentially empty map from roles to non-empty lists of resources
+   */
+  public Map<Role, List<Resource>> getReleasableResources() {
+    Map<Role, List<Resource>> result = new EnumMap<Role, List<Resource>>(Role.class);
+    for (Role role : Role.values()) {
+      ITreeDataScope<EObject> scope = _comparison.getScope(role);
+      if (scope instanceof FragmentedModelScope &&
+          ((FragmentedModelScope)scope).isFullyExplored()) {
+        List<Resource> candidates =
+            new ArrayList<Resource>(((FragmentedModelScope)scope).getResources());
+        candidates.removeAll(getResourcesWithDifferences(role));
+        result.put(role, candidates);
+      }
+    }
+    // Candidates are removed until they are consistent with the constraints of the
+    // scopes and across matches, which only removes candidates so it terminates
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      Set<Resource> releasable = new HashSet<Resource>();
+      for (Map.Entry<Role, List<Resource>> entry : result.entrySet()) {
+        FragmentedModelScope scope =
+            (FragmentedModelScope)_comparison.getScope(entry.getKey());
+        List<Resource> resources = scope.getReleasableResources(entry.getValue());
+        changed = changed || resources.size() != entry.getValue().size();
+        entry.setValue(resources);
+        releasable.addAll(resources);
+      }
+      Set<Resource> retained = getResourcesRetainedByMatches(releasable);
+      for (List<Resource> resources : result.values()) {
+        changed = resources.removeAll(retained) || changed;
+      }
+    }
+    for (Role role : Role.values()) {
+      List<Resource> resources = result.get(role);
+      if (resources != null && resources.isEmpty()) {
+        result.remove(role);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return the representative of the group of resources which must be released together
+   * that the given resource belongs to
+   * @param resource_p a non-null resource
+   * @param representatives_p the non-null, modifiable map from resources to a resource
+   *          of the same group, where a resource which is not a key is a representative
+   * @return a non-null resource
+   */
+  protected Resource getRepresentative(Resource resource_p,
+      Map<Resource, Resource> representatives_p) {
+    Resource result = resource_p;
+    Resource next = representatives_p.get(result);
+    while (next != null) {
+      result = next;
+      next = representatives_p.get(result);
+    }
+    if (result != resource_p) {
+      // Path compression
+      representatives_p.put(resource_p, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Return the resources among the given releasable ones which hold an element whose
+   * match also has an element in a resource which is not releasable
+   * @param releasable_p the non-null set of the resources which can be released
+   * @return a non-null, potentially empty, modifiable set
+   */
+  protected Set<Resource> getResourcesRetainedByMatches(Set<Resource> releasable_p) {
+    Set<Resource> result = new HashSet<Resource>();
+    // The resources of the elements of a match are either all released or all retained
+    Map<Resource, Resource> representatives = new HashMap<Resource, Resource>();
+    Set<Resource> retainedRepresentatives = new HashSet<Resource>();
+    for (IMatch<EObject> match : _comparison.getMapping().getContents()) {
+      Resource representative = null;
+      boolean retained = false;
+      for (Role role : Role.values()) {
+        EObject element = match.get(role);
+        Resource resource = element == null? null: element.eResource();
+        if (resource != null) {
+          if (releasable_p.contains(resource)) {
+            Resource current = getRepresentative(resource, representatives);
+            if (representative == null) {
+              representative = current;
+            } else if (representative != current) {
+              representatives.put(current, representative);
+              if (retainedRepresentatives.remove(current)) {
+                retained = true;
+              }
+            }
+          } else {
+            retained = true;
+          }
+        }
+      }
+      if (retained && representative != null) {
+        retainedRepresentatives.add(representative);
+      }
+    }
+    for (Resource resource : releasable_p) {
+      if (retainedRepresentatives.contains(getRepresentative(resource, representatives))) {
+        result.add(resource);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return the resources of the given role which are involved in differences
+   * @param role_p a non-null role
+   * @return a non-null, potentially empty, modifiable set
+   */
+  public Set<Resource> getResourcesWithDifferences(Role role_p) {
+    Set<Resource> result = new HashSet<Resource>();
+    IMapping<EObject> mapping = _comparison.getMapping();
+    for (IMatch<EObject> match : mapping.getContents()) {
+      List<IDifference<EObject>> differences = match.getAllDifferences();
+      if (match.isPartial()) {
+        // Merging the element copies its references, which requires the matches of the values
+        registerReferenceValues(match.get(role_p), result);
+      }
+      if (match.isPartial() || !differences.isEmpty()) {
+        register(match.get(role_p), result);
+        // Merging requires the containers of the elements in every role
+        for (Role role : Role.values()) {
+          EObject element = match.get(role);
+          EObject container = element == null? null: element.eContainer();
+          if (container != null) {
+            IMatch<EObject> containerMatch = mapping.getMatchFor(container, role);
+            if (containerMatch != null) {
+              register(containerMatch.get(role_p), result);
+            }
+          }
+        }
+      }
+      for (IDifference<EObject> difference : differences) {
+        if (difference instanceof IReferenceValuePresence<?>) {
+          IReferenceValuePresence<EObject> presence =
+              (IReferenceValuePresence<EObject>)difference;
+          IMatch<EObject> valueMatch = presence.getValueMatch();
+          if (valueMatch != null) {
+            register(valueMatch.get(role_p), result);
+          } else if (presence.getPresenceRole() == role_p) {
+            register(presence.getValue(), result);
+          }
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether the given match only consists of released elements
+   * @param match_p a non-null match
+   */
+  protected boolean isReleased(IMatch<EObject> match_p) {
+    boolean result = false;
+    for (Role role : Role.values()) {
+      EObject element = match_p.get(role);
+      if (element != null) {
+        if (!element.eIsProxy()) {
+          return false;
+        }
+        result = true;
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Remove from the mapping the matches whose elements have all been released
+   * @return a non-null, potentially empty list of the removed matches
+   */
+  public List<IMatch<EObject>> pruneReleasedMatches() {
+    List<IMatch<EObject>> result = new ArrayList<IMatch<EObject>>();
+    IMapping<EObject> mapping = _comparison.getMapping();
+    if (mapping instanceof IMapping.Editable<?>) {
+      for (IMatch<EObject> match : mapping.getContents()) {
+        if (isReleased(match)) {
+          result.add(match);
+        }
+      }
+      if (!result.isEmpty()) {
+        Set<IMatch<EObject>> pruned = new FHashSet<IMatch<EObject>>(
+            result, IEqualityTester.BY_REFERENCE);
+        ((IMapping.Editable<EObject>)mapping).getModifiableContents().removeAll(pruned);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Register the resource of the given element in the given set, if any
+   * @param element_p a potentially null element
+   * @param resources_p a non-null, modifiable set
+   */
+  protected void register(EObject element_p, Set<Resource> resources_p) {
+    if (element_p != null) {
+      Resource resource = element_p.eResource();
+      if (resource != null) {
+        resources_p.add(resource);
+      }
+    }
+  }
+  
+  /**
+   * Register the resources of the values of the non-containment references of the
+   * given element in the given set, without resolving proxies
+   * @param element_p a potentially null element
+   * @param resources_p a non-null, modifiable set
+   */
+  protected void registerReferenceValues(EObject element_p, Set<Resource> resources_p) {
+    if (element_p != null) {
+      for (EReference reference : element_p.eClass().getEAllReferences()) {
+        if (!reference.isContainment() && !reference.isContainer() &&
+            !reference.isDerived() && element_p.eIsSet(reference)) {
+          Object value = element_p.eGet(reference, false);
+          if (value instanceof EObject) {
+            register((EObject)value, resources_p);
+          } else if (value instanceof Collection<?>) {
+            for (Object single : (Collection<?>)value) {
+              if (single instanceof EObject) {
+                register((EObject)single, resources_p);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * Release the fragments of the scopes which are not involved in any difference,
+   * then remove the matches whose elements have all been released from the mapping
+   * @see FragmentReleaser#getReleasableResources()
+   * @see FragmentReleaser#pruneReleasedMatches()
+   * @return a non-null, potentially empty list of the released resources
+   */
+  public List<Resource> releaseAll() {
+    List<Resource> result = new ArrayList<Resource>();
+    for (Map.Entry<Role, List<Resource>> entry : getReleasableResources().entrySet()) {
+      FragmentedModelScope scope =
+          (FragmentedModelScope)_comparison.getScope(entry.getKey());
+      result.addAll(scope.release(entry.getValue()));
+    }
+    if (!result.isEmpty()) {
+      pruneReleasedMatches();
+    }
+    return result;
+  }
+  
+}
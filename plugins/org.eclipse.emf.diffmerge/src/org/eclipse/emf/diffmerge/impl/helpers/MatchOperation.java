@@ -40,6 +40,21 @@ extends org.eclipse.emf.diffmerge.generic.impl.helpers.MatchOperation<EObject> {
     super(comparison_p, policy_p, duplicateIDs_p);
   }
   
+  /**
+   * Constructor
+   * @see org.eclipse.emf.diffmerge.generic.impl.helpers.MatchOperation#MatchOperation(org.eclipse.emf.diffmerge.generic.api.IComparison.Editable, IMatchPolicy, Map, boolean)
+   * @param comparison_p a non-null comparison whose mapping is to be built
+   * @param policy_p a non-null match policy
+   * @param duplicateIDs_p an optional map that associates each role with an empty,
+   *          modifiable set of duplicate match IDs, to be filled by this operation
+   * @param parallel_p whether the computation of match IDs may be distributed over
+   *          several threads
+   */
+  public MatchOperation(EComparison comparison_p, IMatchPolicy<EObject> policy_p,
+      Map<Role, Set<Object>> duplicateIDs_p, boolean parallel_p) {
+    super(comparison_p, policy_p, duplicateIDs_p, parallel_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.generic.impl.helpers.MatchOperation#getComparison()
    */
@@ -28,6 +28,9 @@ implements IConfigurablePolicy {
   /** Whether orders must be ignored */
   private boolean _ignoreOrders;
   
+  /** Whether differences must only be searched for in changed resources */
+  private boolean _changedRegionsOnly;
+  
   /** The non-null, potentially empty, modifiable set of listeners */
   protected final Set<IConfigurationChangedListener> _listeners;
   
@@ -37,6 +40,7 @@ implements IConfigurablePolicy {
    */
   public ConfigurableDiffPolicy() {
     _ignoreOrders = false;
+    _changedRegionsOnly = false;
     _listeners = new LinkedHashSet<IConfigurationChangedListener>();
   }
   
@@ -90,6 +94,14 @@ implements IConfigurablePolicy {
     }
   }
   
+  /**
+   * Return whether differences are only searched for in the resources whose
+   * persisted contents differ
+   */
+  public boolean isChangedRegionsOnly() {
+    return _changedRegionsOnly;
+  }
+  
   /**
    * Return whether this policy ignores orders
    */
@@ -104,6 +116,16 @@ implements IConfigurablePolicy {
     _listeners.remove(listener_p);
   }
   
+  /**
+   * Set whether differences must only be searched for in the resources whose
+   * persisted contents differ
+   * @param changedRegionsOnly_p whether differences must only be searched for in changed resources
+   */
+  public void setChangedRegionsOnly(boolean changedRegionsOnly_p) {
+    _changedRegionsOnly = changedRegionsOnly_p;
+    fireConfigurationChanged(null);
+  }
+  
   /**
    * Set whether orders must be ignored
    * @param ignore_p whether orders must be ignored
@@ -113,6 +135,14 @@ implements IConfigurablePolicy {
     fireConfigurationChanged(null);
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.policies.DefaultDiffPolicy#useChangedRegions()
+   */
+  @Override
+  protected boolean useChangedRegions() {
+    return _changedRegionsOnly;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.generic.api.config.IConfigurablePolicy#update(org.eclipse.emf.diffmerge.generic.api.config.IConfigurablePolicy)
    */
@@ -121,6 +151,7 @@ implements IConfigurablePolicy {
     if (policy_p instanceof ConfigurableDiffPolicy) {
       ConfigurableDiffPolicy policy = (ConfigurableDiffPolicy)policy_p;
       setIgnoreOrders(policy.isIgnoreOrders());
+      setChangedRegionsOnly(policy.isChangedRegionsOnly());
       result = true;
     }
     return result;
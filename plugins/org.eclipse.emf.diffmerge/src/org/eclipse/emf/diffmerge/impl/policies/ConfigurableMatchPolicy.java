@@ -16,18 +16,23 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.emf.common.notify.Adapter;
 import org.eclipse.emf.common.notify.AdapterFactory;
 import org.eclipse.emf.diffmerge.EMFDiffMergePlugin;
 import org.eclipse.emf.diffmerge.Messages;
+import org.eclipse.emf.diffmerge.generic.api.IMatchPolicy;
 import org.eclipse.emf.diffmerge.generic.api.config.IConfigurablePolicy;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
 import org.eclipse.emf.diffmerge.generic.impl.policies.AbstractConfigurationElement;
+import org.eclipse.emf.diffmerge.impl.scopes.FragmentedModelScope;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.ENamedElement;
 import org.eclipse.emf.ecore.EObject;
@@ -41,7 +46,8 @@ import org.eclipse.emf.edit.provider.IItemLabelProvider;
  * @author Olivier Constant
  */
 public class ConfigurableMatchPolicy extends
-org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject> {
+org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
+implements IMatchPolicy.WithScopeCache<EObject> {
   
   /**
    * A predefined set of match criteria in decreasing order of priority.
@@ -134,6 +140,10 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
   /** The configuration property that represents any fine-grained match criterion */
   public static final Object PROPERTY_FINE_GRAINED_MATCH_CRITERIA = new Object();
   
+  /** The number of siblings from which uniqueness of structural types is checked
+   *  via a histogram instead of a linear scan */
+  protected static final int SIBLING_HISTOGRAM_THRESHOLD = 32;
+  
   
   /** The set of match criteria to use */
   private final Set<MatchCriterionKind> _selectedCriteria;
@@ -141,6 +151,13 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
   /** The set of fine-grained match criteria to use */
   private final Set<FineGrainedMatchCriterion> _selectedFineGrainedCriteria;
   
+  /** The non-null map from (scope, owner, containment) keys to the number of siblings
+   *  per structural type, retained for the current matching phase */
+  private final Map<List<Object>, SiblingTypeHistogram> _siblingHistograms;
+  
+  /** The optional persistent cache of the match IDs of whole scopes */
+  private MatchIDCache _matchIDCache;
+  
   
   /**
    * Default constructor
@@ -151,6 +168,8 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
         MatchCriterionKind.values().length);
     _selectedCriteria.addAll(getDefaultCriteria());
     _selectedFineGrainedCriteria = new HashSet<FineGrainedMatchCriterion>();
+    _siblingHistograms = new ConcurrentHashMap<List<Object>, SiblingTypeHistogram>();
+    _matchIDCache = null;
   }
   
   /**
@@ -162,6 +181,26 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     update(policy_p);
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IMatchPolicy.WithScopeCache#cacheMatchIDs(java.util.List, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope, java.lang.Object[])
+   */
+  public void cacheMatchIDs(List<EObject> elements_p, ITreeDataScope<EObject> scope_p,
+      Object[] matchIDs_p) {
+    if (_matchIDCache != null && scope_p instanceof FragmentedModelScope) {
+      _matchIDCache.put((FragmentedModelScope)scope_p, getConfigurationKey(), matchIDs_p);
+    }
+  }
+  
+  /**
+   * Histograms of structural types are released together with the other retained data
+   * @see org.eclipse.emf.diffmerge.generic.impl.policies.CachingMatchPolicy#clearMemo()
+   */
+  @Override
+  public void clearMemo() {
+    super.clearMemo();
+    _siblingHistograms.clear();
+  }
+  
   /**
    * Get the exact set of fine-grained match criteria that must be used according to this policy
    * @return a non-null, potentially empty, unmodifiable collection
@@ -192,6 +231,43 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     return result;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IMatchPolicy.WithScopeCache#getCachedMatchIDs(java.util.List, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
+   */
+  public Object[] getCachedMatchIDs(List<EObject> elements_p,
+      ITreeDataScope<EObject> scope_p) {
+    Object[] result = null;
+    if (_matchIDCache != null && scope_p instanceof FragmentedModelScope) {
+      result = _matchIDCache.get((FragmentedModelScope)scope_p, getConfigurationKey(),
+          elements_p.size());
+    }
+    return result;
+  }
+  
+  /**
+   * Return a string that identifies the configuration of this policy, i.e., such that
+   * policies with equal configuration keys produce the same match IDs on the same scopes.
+   * Subclasses that introduce additional configuration must override this method.
+   * @see MatchIDCache
+   * @return a non-null string
+   */
+  protected String getConfigurationKey() {
+    List<String> criteria = new ArrayList<String>();
+    for (MatchCriterionKind criterion : getAllUsedCriteria()) {
+      criteria.add(criterion.name());
+    }
+    for (FineGrainedMatchCriterion criterion : getAllUsedFineGrainedCriteria()) {
+      criteria.add(criterion.getParentCriterion().name() + '/' + criterion.getLabel());
+    }
+    Collections.sort(criteria);
+    StringBuilder builder = new StringBuilder(getClass().getName());
+    for (String criterion : criteria) {
+      builder.append(' ');
+      builder.append(criterion);
+    }
+    return builder.toString();
+  }
+  
   /**
    * Return the container of the given element within the given scope
    * @param element_p a non-null element
@@ -222,7 +298,9 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     String result = null;
     EObject container = getContainer(element_p, scope_p);
     if (container != null) {
-      String containerID = getMatchID(container, scope_p);
+      // Containers are shared by their children: retain their IDs for the
+      // current matching phase instead of recomputing them for every child
+      String containerID = (String)getMatchIDThroughMemo(container, scope_p);
       if (containerID != null) {
         String separator = separator_p == null? getQualificationSeparatorDefault():
           separator_p;
@@ -348,6 +426,14 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     return result;
   }
   
+  /**
+   * Return the persistent cache of the match IDs of whole scopes, if any
+   * @return a potentially null cache
+   */
+  public MatchIDCache getMatchIDCache() {
+    return _matchIDCache;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.generic.impl.policies.DefaultMatchPolicy#getMatchIDComparator()
    */
@@ -501,6 +587,54 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     return Collections.unmodifiableList(result);
   }
   
+  /**
+   * Return the histogram of structural types of the given siblings, computing it if needed.
+   * Histograms are retained like the other data about the elements of the scopes, i.e.,
+   * until clearMemo() is called, since the scopes are not modified during a matching phase.
+   * Siblings which are the roots of the scope share a histogram keyed by the scope.
+   * @see ConfigurableMatchPolicy#getSiblings(EObject, ITreeDataScope)
+   * @see ConfigurableMatchPolicy#clearMemo()
+   * @param element_p a non-null element
+   * @param siblings_p the non-null siblings of element_p, including element_p
+   * @param scope_p a non-null scope that covers element_p
+   * @return a non-null histogram
+   */
+  protected SiblingTypeHistogram getSiblingTypeHistogram(EObject element_p,
+      List<EObject> siblings_p, ITreeDataScope<EObject> scope_p) {
+    List<Object> key = getSiblingsKey(element_p, scope_p);
+    SiblingTypeHistogram result = _siblingHistograms.get(key);
+    if (result == null || result.getSize() != siblings_p.size()) {
+      // Absent or obsolete
+      result = new SiblingTypeHistogram(siblings_p.size());
+      for (EObject sibling : siblings_p) {
+        result.register(getStructuralType(sibling, scope_p));
+      }
+      _siblingHistograms.put(key, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Return a key that identifies the siblings of the given element in the given scope
+   * @see ConfigurableMatchPolicy#getSiblings(EObject, ITreeDataScope)
+   * @param element_p a non-null element
+   * @param scope_p a non-null scope that covers element_p
+   * @return a non-null list made of the scope, the owner of the siblings if any and their
+   *         containment if any, where the owner is null if the siblings are the roots of
+   *         the scope
+   */
+  protected List<Object> getSiblingsKey(EObject element_p, ITreeDataScope<EObject> scope_p) {
+    Object owner = null;
+    EReference containment = getContainment(element_p, scope_p);
+    if (containment == null) {
+      if (!isScopeOnly())
+        owner = element_p.eResource();
+    } else {
+      owner = getContainer(element_p, scope_p);
+    }
+    return Arrays.<Object>asList(scope_p, owner, containment);
+  }
+  
   /**
    * Return an object that represents the type of the given element
    * for structure-based discrimination of elements.
@@ -723,8 +857,18 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
    * @param scope_p a non-null scope that covers element_p
    */
   protected boolean isUniqueSiblingOfItsType(EObject element_p, ITreeDataScope<EObject> scope_p) {
-    Collection<EObject> siblings = getSiblings(element_p, scope_p);
-    return isUniqueOfItsTypeAmong(element_p, siblings, scope_p);
+    List<EObject> siblings = getSiblings(element_p, scope_p);
+    SiblingTypeHistogram histogram = null;
+    if (siblings.size() >= SIBLING_HISTOGRAM_THRESHOLD)
+      // Large number of siblings: rely on a histogram shared by all of them
+      histogram = getSiblingTypeHistogram(element_p, siblings, scope_p);
+    if (histogram == null)
+      return isUniqueOfItsTypeAmong(element_p, siblings, scope_p);
+    boolean result = false;
+    Object type = getStructuralType(element_p, scope_p);
+    if (type != null)
+      result = histogram.getCount(type) == 1;
+    return result;
   }
   
   /**
@@ -747,6 +891,17 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     fireConfigurationChanged(PROPERTY_MATCH_CRITERIA);
   }
   
+  /**
+   * Set the persistent cache of the match IDs of whole scopes.
+   * The cache is only used for fragmented model scopes and if match IDs are built
+   * from the scope only.
+   * @see ConfigurableMatchPolicy#isScopeOnly()
+   * @param cache_p a potentially null cache, where null means no cache
+   */
+  public void setMatchIDCache(MatchIDCache cache_p) {
+    _matchIDCache = cache_p;
+  }
+  
   /**
    * Set whether the given fine-grained match criterion must be used
    * @param criterion_p a non-null criterion
@@ -773,6 +928,17 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     fireConfigurationChanged(criterion_p);
   }
   
+  /**
+   * Name-based match IDs are not computed concurrently because names and labels may be
+   * obtained through item providers, which the adapter factory creates on demand and
+   * attaches to the elements.
+   * @see org.eclipse.emf.diffmerge.generic.api.IMatchPolicy#supportsConcurrentMatchIDs()
+   */
+  @Override
+  public boolean supportsConcurrentMatchIDs() {
+    return super.supportsConcurrentMatchIDs() && !useCriterion(MatchCriterionKind.NAME);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy#update(org.eclipse.emf.diffmerge.generic.api.config.IConfigurablePolicy)
    */
@@ -783,6 +949,7 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
       ConfigurableMatchPolicy policy = (ConfigurableMatchPolicy)policy_p;
       setAllUsedCriteria(policy.getAllUsedCriteria());
       setAllUsedFineGrainedCriteria(policy.getAllUsedFineGrainedCriteria());
+      setMatchIDCache(policy.getMatchIDCache());
       result = true;
     }
     return result;
@@ -805,4 +972,57 @@ org.eclipse.emf.diffmerge.generic.impl.policies.ConfigurableMatchPolicy<EObject>
     return _selectedCriteria.contains(criterion_p);
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.generic.api.IMatchPolicy.WithScopeCache#useScopeCache()
+   */
+  public boolean useScopeCache() {
+    return _matchIDCache != null && isScopeOnly();
+  }
+  
+  
+  /**
+   * The number of occurrences of every structural type among a list of siblings.
+   * Instances are not modified once they have been fully computed.
+   */
+  protected static class SiblingTypeHistogram {
+    /** The number of siblings from which the histogram has been computed */
+    private final int _size;
+    /** The non-null map from structural types to their number of occurrences */
+    private final Map<Object, Integer> _counts;
+    /**
+     * Constructor
+     * @param size_p the number of siblings from which the histogram is computed
+     */
+    public SiblingTypeHistogram(int size_p) {
+      _size = size_p;
+      _counts = new HashMap<Object, Integer>();
+    }
+    /**
+     * Return the number of occurrences of the given structural type
+     * @param type_p a non-null object
+     * @return a positive int or 0
+     */
+    public int getCount(Object type_p) {
+      Integer result = _counts.get(type_p);
+      return result == null? 0: result.intValue();
+    }
+    /**
+     * Return the number of siblings from which the histogram has been computed
+     * @return a positive int or 0
+     */
+    public int getSize() {
+      return _size;
+    }
+    /**
+     * Register an occurrence of the given structural type
+     * @param type_p a potentially null object, which is ignored if null
+     */
+    protected void register(Object type_p) {
+      if (type_p != null) {
+        Integer count = _counts.get(type_p);
+        _counts.put(type_p, Integer.valueOf(count == null? 1: count.intValue() + 1));
+      }
+    }
+  }
+  
 }
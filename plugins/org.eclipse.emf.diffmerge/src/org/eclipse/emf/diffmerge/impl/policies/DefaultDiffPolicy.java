@@ -15,9 +15,11 @@ import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.diffmerge.generic.api.IDiffPolicy;
 import org.eclipse.emf.diffmerge.generic.api.IMatch;
 import org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope;
+import org.eclipse.emf.diffmerge.impl.scopes.FragmentedModelScope;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.FeatureMapUtil;
 
@@ -28,7 +30,22 @@ import org.eclipse.emf.ecore.util.FeatureMapUtil;
  * @author Olivier Constant
  */
 public class DefaultDiffPolicy extends
-org.eclipse.emf.diffmerge.generic.impl.policies.DefaultDiffPolicy<EObject> {
+org.eclipse.emf.diffmerge.generic.impl.policies.DefaultDiffPolicy<EObject>
+implements IDiffPolicy.RegionAware<EObject> {
+  
+  /** Whether out-of-scope values are compared through their URIs */
+  private final boolean _isOutOfScopeEqualityByURI;
+  
+  
+  /**
+   * Default constructor
+   */
+  public DefaultDiffPolicy() {
+    super();
+    _isOutOfScopeEqualityByURI = isDeclaredBy(DefaultDiffPolicy.class,
+        "considerEqualOutOfScope", EObject.class, EObject.class, Object.class, //$NON-NLS-1$
+        ITreeDataScope.class);
+  }
   
   /**
    * @see org.eclipse.emf.diffmerge.generic.impl.policies.DefaultDiffPolicy#considerEqualOutOfScope(java.lang.Object, java.lang.Object, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
@@ -138,6 +155,17 @@ org.eclipse.emf.diffmerge.generic.impl.policies.DefaultDiffPolicy<EObject> {
     return true;
   }
   
+  /**
+   * Out-of-scope values are identified by their URIs, unless
+   * considerEqualOutOfScope(...) is overridden.
+   * @see org.eclipse.emf.diffmerge.generic.impl.policies.DefaultDiffPolicy#getOutOfScopeValueKey(java.lang.Object, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
+   */
+  @Override
+  public Object getOutOfScopeValueKey(EObject outOfScopeValue_p, Object reference_p,
+      ITreeDataScope<EObject> scope_p) {
+    return _isOutOfScopeEqualityByURI? EcoreUtil.getURI(outOfScopeValue_p): null;
+  }
+  
   /**
    * Return whether the given element is provided by a plug-in of the current platform
    * @param element_p a non-null element
@@ -147,4 +175,42 @@ org.eclipse.emf.diffmerge.generic.impl.policies.DefaultDiffPolicy<EObject> {
     return uri != null && !uri.isPlatformResource();
   }
   
+  /**
+   * In changed-region mode, elements are considered as identical if they belong to
+   * resources that have the same URI and the same persisted contents in fragmented scopes.
+   * This assumes that identical persisted references designate matching elements,
+   * which is typically the case when elements are matched by persistent IDs.
+   * @see org.eclipse.emf.diffmerge.generic.api.IDiffPolicy.RegionAware#isUnchangedRegion(java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope, java.lang.Object, org.eclipse.emf.diffmerge.generic.api.scopes.ITreeDataScope)
+   * @see DefaultDiffPolicy#useChangedRegions()
+   * @see FragmentedModelScope#getContentHash(Resource)
+   */
+  public boolean isUnchangedRegion(EObject targetElement_p,
+      ITreeDataScope<EObject> targetScope_p, EObject referenceElement_p,
+      ITreeDataScope<EObject> referenceScope_p) {
+    boolean result = false;
+    if (useChangedRegions() && targetScope_p instanceof FragmentedModelScope &&
+        referenceScope_p instanceof FragmentedModelScope) {
+      Resource targetResource = targetElement_p.eResource();
+      Resource referenceResource = referenceElement_p.eResource();
+      if (targetResource != null && referenceResource != null &&
+          targetResource.getURI() != null &&
+          targetResource.getURI().equals(referenceResource.getURI())) {
+        String targetHash = ((FragmentedModelScope)targetScope_p).getContentHash(
+            targetResource);
+        result = targetHash != null && targetHash.equals(
+            ((FragmentedModelScope)referenceScope_p).getContentHash(referenceResource));
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether differences must only be searched for in the resources whose
+   * persisted contents differ (changed-region mode)
+   * @see DefaultDiffPolicy#isUnchangedRegion(EObject, ITreeDataScope, EObject, ITreeDataScope)
+   */
+  protected boolean useChangedRegions() {
+    return false;
+  }
+  
 }
@@ -0,0 +1,312 @@
+/*********************************************************************
+ * Copyright (c) 2019 Thales Global Services S.A.S.
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ **********************************************************************/
+package org.eclipse.emf.diffmerge.impl.policies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.eclipse.emf.diffmerge.impl.scopes.FragmentedModelScope;
+import org.eclipse.emf.diffmerge.impl.scopes.ScopeLoadingProfile;
+import org.eclipse.emf.ecore.resource.Resource;
+
+
+/**
+ * A persistent cache of the match IDs of the elements of fragmented model scopes.
+ * The match IDs of a scope are stored in iteration order and identified by a hash of
+ * the version of the file format, of the configuration of the match policy and of the
+ * URIs and content hashes of all the resources of the scope in iteration order, so they
+ * are reused whenever a scope with the same persisted contents is matched again with the
+ * same policy, for example when the same baseline revision is compared repeatedly.
+ * Only String match IDs are supported. Since the configuration of a policy does not
+ * reflect its implementation or the metamodels involved, the cache must be cleared
+ * when they change.
+ * Files are evicted in least-recently-used order when the disk limit is exceeded.
+ * Instances are thread-safe and can be shared among policies.
+ * @see ConfigurableMatchPolicy#setMatchIDCache(MatchIDCache)
+ * @see FragmentedModelScope#getContentHash(Resource)
+ */
+public class MatchIDCache {
+
+  /** The default maximal number of bytes on disk */
+  public static final long DEFAULT_DISK_LIMIT = 256L * 1024 * 1024;
+
+  /** The extension of the files of the cache */
+  protected static final String CACHE_FILE_EXTENSION = ".ids"; //$NON-NLS-1$
+
+  /** The version of the format of the files of the cache, which is part of their keys */
+  protected static final String FORMAT_VERSION = "match-ids/2"; //$NON-NLS-1$
+
+  /** The encoding of match IDs */
+  private static final Charset ENCODING = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+  /** The non-null directory of the cache */
+  private final File _directory;
+
+  /** The maximal number of bytes on disk */
+  private final long _diskLimit;
+
+  /** The non-null profile for hashing keys */
+  private final ScopeLoadingProfile _hashingProfile;
+
+  /** The number of requests that have been answered from the cache */
+  private long _hits;
+
+  /** The number of requests that could not be answered from the cache */
+  private long _misses;
+
+
+  /**
+   * Constructor
+   * @param directory_p a non-null directory for the cache, which is created if needed
+   */
+  public MatchIDCache(File directory_p) {
+    this(directory_p, DEFAULT_DISK_LIMIT);
+  }
+
+  /**
+   * Constructor
+   * @param directory_p a non-null directory for the cache, which is created if needed
+   * @param diskLimit_p the maximal number of bytes on disk
+   */
+  public MatchIDCache(File directory_p, long diskLimit_p) {
+    _directory = directory_p;
+    _diskLimit = diskLimit_p;
+    _hashingProfile = new ScopeLoadingProfile();
+    _hits = 0;
+    _misses = 0;
+  }
+
+  /**
+   * Remove all cached match IDs
+   */
+  public synchronized void clear() {
+    File[] files = _directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().endsWith(CACHE_FILE_EXTENSION)) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the cached match IDs of the elements of the given scope, if any
+   * @param scope_p a non-null scope which has been fully explored
+   * @param policyKey_p a non-null string that identifies the configuration of the policy
+   * @param nbElements_p the number of elements of the scope
+   * @return an array of potentially null match IDs in iteration order, or null if
+   *         they are not cached
+   */
+  public synchronized Object[] get(FragmentedModelScope scope_p, String policyKey_p,
+      int nbElements_p) {
+    Object[] result = null;
+    File file = getFile(scope_p, policyKey_p);
+    if (file != null && file.isFile()) {
+      try {
+        result = read(file, nbElements_p);
+        file.setLastModified(System.currentTimeMillis());
+      } catch (IOException e) {
+        // Unreadable: ignore and remove
+        file.delete();
+      }
+    }
+    if (result != null) {
+      _hits++;
+    } else {
+      _misses++;
+    }
+    return result;
+  }
+
+  /**
+   * Return the directory of the cache
+   * @return a non-null directory
+   */
+  public File getDirectory() {
+    return _directory;
+  }
+
+  /**
+   * Return the file of the match IDs of the given scope for the given policy
+   * configuration, if the persisted contents of the scope are known
+   * @param scope_p a non-null scope
+   * @param policyKey_p a non-null string that identifies the configuration of the policy
+   * @return a file which may not exist, or null if the scope cannot be cached
+   */
+  protected File getFile(FragmentedModelScope scope_p, String policyKey_p) {
+    if (!scope_p.isFullyExplored()) {
+      return null;
+    }
+    // Match IDs are stored in iteration order, which depends on the order of resources
+    StringBuilder builder = new StringBuilder(FORMAT_VERSION);
+    builder.append('\n');
+    builder.append(policyKey_p);
+    for (Resource resource : scope_p.getResources()) {
+      String contentHash = scope_p.getContentHash(resource);
+      if (contentHash == null || resource.isModified()) {
+        return null;
+      }
+      builder.append('\n');
+      builder.append(resource.getURI());
+      builder.append(' ');
+      builder.append(contentHash);
+    }
+    String key = _hashingProfile.getContentHash(builder.toString().getBytes(ENCODING));
+    return new File(_directory, key + CACHE_FILE_EXTENSION);
+  }
+
+  /**
+   * Return the number of requests that have been answered from the cache
+   * @return a positive long or 0
+   */
+  public synchronized long getHits() {
+    return _hits;
+  }
+
+  /**
+   * Return the number of requests that could not be answered from the cache
+   * @return a positive long or 0
+   */
+  public synchronized long getMisses() {
+    return _misses;
+  }
+
+  /**
+   * Store the given match IDs of the elements of the given scope, if possible.
+   * Failures are ignored since the cache is only an optimization.
+   * @param scope_p a non-null scope which has been fully explored
+   * @param policyKey_p a non-null string that identifies the configuration of the policy
+   * @param matchIDs_p a non-null array of potentially null match IDs in iteration order
+   */
+  public synchronized void put(FragmentedModelScope scope_p, String policyKey_p,
+      Object[] matchIDs_p) {
+    for (Object matchID : matchIDs_p) {
+      if (matchID != null && !(matchID instanceof String)) {
+        return;
+      }
+    }
+    File file = getFile(scope_p, policyKey_p);
+    if (file == null || file.isFile() ||
+        !_directory.isDirectory() && !_directory.mkdirs()) {
+      return;
+    }
+    // Write into a temporary file first so that incomplete files are never used
+    File tempFile = new File(_directory, file.getName() + '.' +
+        Thread.currentThread().getId());
+    try {
+      write(tempFile, matchIDs_p);
+      if (!tempFile.renameTo(file)) {
+        tempFile.delete();
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+    }
+    reduce();
+  }
+
+  /**
+   * Read the match IDs stored in the given file
+   * @param file_p a non-null, existing file
+   * @param nbElements_p the expected number of match IDs
+   * @return an array of potentially null match IDs, or null if the file does not
+   *         hold the expected number of match IDs
+   * @throws IOException if the file cannot be read
+   */
+  protected Object[] read(File file_p, int nbElements_p) throws IOException {
+    DataInputStream stream = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file_p)));
+    try {
+      int size = stream.readInt();
+      if (size != nbElements_p) {
+        return null;
+      }
+      Object[] result = new Object[size];
+      for (int i = 0; i < size; i++) {
+        int length = stream.readInt();
+        if (length >= 0) {
+          byte[] bytes = new byte[length];
+          stream.readFully(bytes);
+          result[i] = new String(bytes, ENCODING);
+        }
+      }
+      return result;
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Delete the least recently used files of the cache until the disk limit is respected
+   */
+  protected void reduce() {
+    File[] files = _directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size > _diskLimit) {
+      Arrays.sort(files, new Comparator<File>() {
+        /**
+         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+         */
+        public int compare(File o1_p, File o2_p) {
+          return Long.compare(o1_p.lastModified(), o2_p.lastModified());
+        }
+      });
+      for (int i = 0; i < files.length && size > _diskLimit; i++) {
+        long length = files[i].length();
+        if (files[i].getName().endsWith(CACHE_FILE_EXTENSION) && files[i].delete()) {
+          size -= length;
+        }
+      }
+    }
+  }
+
+  /**
+   * Write the given match IDs into the given file
+   * @param file_p a non-null file
+   * @param matchIDs_p a non-null array of potentially null String match IDs
+   * @throws IOException if the file cannot be written
+   */
+  protected void write(File file_p, Object[] matchIDs_p) throws IOException {
+    DataOutputStream stream = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file_p)));
+    try {
+      stream.writeInt(matchIDs_p.length);
+      for (Object matchID : matchIDs_p) {
+        if (matchID == null) {
+          stream.writeInt(-1);
+        } else {
+          byte[] bytes = ((String)matchID).getBytes(ENCODING);
+          stream.writeInt(bytes.length);
+          stream.write(bytes);
+        }
+      }
+    } finally {
+      stream.close();
+    }
+  }
+
+}
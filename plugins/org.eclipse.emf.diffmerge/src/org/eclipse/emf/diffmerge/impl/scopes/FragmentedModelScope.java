@@ -25,7 +25,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.Status;
@@ -41,8 +47,12 @@ import org.eclipse.emf.diffmerge.util.ModelImplUtil;
 import org.eclipse.emf.diffmerge.util.ModelsUtil;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.impl.EPackageRegistryImpl;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.edit.domain.AdapterFactoryEditingDomain;
 import org.eclipse.emf.edit.domain.EditingDomain;
 import org.eclipse.emf.edit.domain.IEditingDomainProvider;
@@ -63,11 +73,21 @@ import org.eclipse.emf.edit.domain.IEditingDomainProvider;
  * expected to happen during this initialization phase.
  * EMF undo/redo is supported because the local state does not change after full exploration,
  * unless unload() has been called.
+ * Optionally, the resources that are expected to be discovered can be loaded concurrently
+ * beforehand (see setParallelLoading(boolean)). This only affects loading time: the
+ * resources of the scope and their relationships are still determined by exploration.
+ * Once the scope has been fully explored, resources that are no longer needed, for example
+ * because they have been compared without differences, can be released (see
+ * release(Collection)) so as to bound memory consumption.
  * @author Olivier Constant
  */
 public class FragmentedModelScope extends AbstractEditableModelScope
 implements IFragmentedModelScope.Editable, IEditingDomainProvider {
   
+  /** The content hash that represents the absence of hash, to distinguish from
+   *  non-computed hashes */
+  private static final String NO_CONTENT_HASH = new String();
+  
   /** Whether the resources should be opened in read-only mode */
   private final boolean _isReadOnly;
   
@@ -84,6 +104,9 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
    *  It includes _rootResources, _includedResources and _referencedResources. */
   protected final List<Resource> _resources;
   
+  /** The non-null set of the resources defining the scope, for fast membership tests */
+  private final Set<Resource> _resourceMembership;
+  
   /** The non-null, non-empty ordered subset of the resources which are roots */
   protected final List<Resource> _rootResources;
   
@@ -124,6 +147,18 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
   /** The current state of the scope */
   protected ScopeState _state;
   
+  /** Whether resources must be prefetched concurrently when loading (initially false) */
+  private boolean _parallelLoading;
+  
+  /** The optional profile for loading resources efficiently (initially null) */
+  private ScopeLoadingProfile _loadingProfile;
+  
+  /** The non-null, thread-safe map from resources to the hashes of their persisted contents */
+  private final Map<Resource, String> _contentHashes;
+  
+  /** The non-null, initially empty set of resources of the scope that have been released */
+  protected final Set<Resource> _releasedResources;
+  
   
   /**
    * Constructor
@@ -194,12 +229,17 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     _isReadOnly = readOnly_p;
     _resourceSet = resourceSet_p;
     _resources = new ArrayList<Resource>();
+    _resourceMembership = new HashSet<Resource>();
     _rootResources = new ArrayList<Resource>();
     _includedResources = new HashBinaryRelation<Resource, Resource>();
     _referencedResources = new HashBinaryRelation<Resource, Resource>();
     _initiallyPresentResources = new HashSet<Resource>();
     _initiallyPresentResources.addAll(_resourceSet.getResources());
     _loadedResources = new HashSet<Resource>();
+    _parallelLoading = false;
+    _loadingProfile = null;
+    _contentHashes = new ConcurrentHashMap<Resource, String>();
+    _releasedResources = new HashSet<Resource>();
     if (_resourceSet instanceof IEditingDomainProvider)
       _editingDomain = ((IEditingDomainProvider)_resourceSet).getEditingDomain();
   }
@@ -245,11 +285,66 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
    */
   protected void addNewResource(Resource resource_p) {
     _resources.add(resource_p);
+    _resourceMembership.add(resource_p);
     if (!_initiallyPresentResources.contains(resource_p)) {
       _loadedResources.add(resource_p);
     }
   }
   
+  /**
+   * Attach the given resource, which has been loaded in an isolated resource set, to the
+   * resource set of the scope. An unloaded resource of the resource set of the scope which
+   * has the same URI is replaced, including in the scope.
+   * This method must be called by the thread that owns the resource set of the scope.
+   * @see FragmentedModelScope#loadInParallel()
+   * @param loaded_p a non-null resource which is loaded in an isolated resource set
+   * @return the non-null resource of the resource set of the scope that has the URI of loaded_p
+   */
+  protected Resource attachLoadedResource(Resource loaded_p) {
+    Resource result = _resourceSet.getResource(loaded_p.getURI(), false);
+    List<Resource> resources = _resourceSet.getResources();
+    if (result == null) {
+      resources.add(loaded_p);
+      result = loaded_p;
+    } else if (!result.isLoaded()) {
+      Resource replaced = result;
+      resources.set(resources.indexOf(replaced), loaded_p);
+      result = loaded_p;
+      int index = _resources.indexOf(replaced);
+      if (index >= 0) {
+        _resources.set(index, loaded_p);
+        _resourceMembership.remove(replaced);
+        _resourceMembership.add(loaded_p);
+      }
+      index = _rootResources.indexOf(replaced);
+      if (index >= 0) {
+        _rootResources.set(index, loaded_p);
+      }
+      if (_initiallyPresentResources.remove(replaced)) {
+        _initiallyPresentResources.add(loaded_p);
+      }
+      _loadedResources.remove(replaced);
+      if (_resourceSet instanceof ResourceSetImpl) {
+        Map<URI, Resource> uriMap = ((ResourceSetImpl)_resourceSet).getURIResourceMap();
+        if (uriMap != null) {
+          for (Map.Entry<URI, Resource> entry : uriMap.entrySet()) {
+            if (entry.getValue() == replaced) {
+              entry.setValue(loaded_p);
+            }
+          }
+        }
+      }
+    } else {
+      // Loaded in the meantime: the isolated copy is dropped
+      _contentHashes.remove(loaded_p);
+    }
+    if (result == loaded_p && !_initiallyPresentResources.contains(loaded_p)) {
+      // Ensure unloading even if the scope is not explored
+      _loadedResources.add(loaded_p);
+    }
+    return result;
+  }
+  
   /**
    * Return whether the given collection contains proxies relative to the
    * given holding element whose target is already loaded
@@ -266,6 +361,35 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     return false;
   }
   
+  /**
+   * Return whether resources can be prefetched concurrently for the resource set of the scope.
+   * Resources are loaded concurrently in isolated resource sets, then attached sequentially
+   * to the resource set of the scope where they replace the unloaded resources that have
+   * the same URIs. Since adapters of the resource set may not expect such replacements,
+   * this requires that the resource set have no adapter.
+   * @see FragmentedModelScope#loadInParallel()
+   */
+  protected boolean canLoadInParallel() {
+    return _resourceSet.eAdapters().isEmpty();
+  }
+  
+  /**
+   * Create and return a resource set in which a resource of the scope can be loaded
+   * independently of the resource set of the scope and with the same configuration.
+   * The URI converter and the resource factory registry are shared, so they must
+   * support concurrent loading.
+   * @see FragmentedModelScope#loadInParallel()
+   * @return a non-null resource set
+   */
+  protected ResourceSet createIsolatedResourceSet() {
+    ResourceSet result = new ResourceSetImpl();
+    result.setURIConverter(_resourceSet.getURIConverter());
+    result.setResourceFactoryRegistry(_resourceSet.getResourceFactoryRegistry());
+    result.setPackageRegistry(new EPackageRegistryImpl(_resourceSet.getPackageRegistry()));
+    result.getLoadOptions().putAll(_resourceSet.getLoadOptions());
+    return result;
+  }
+  
   /**
    * Called as soon as full scope exploration has been done
    */
@@ -321,6 +445,31 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     return getRawRoots();
   }
   
+  /**
+   * Return a hash of the persisted contents of the given resource of the scope, as
+   * they were when the resource was loaded if the scope has a loading profile with a
+   * binary cache, or as they are when this method is first called for the resource
+   * otherwise. Resources with equal hashes can be considered as identical as long as
+   * they have not been modified since loading.
+   * @param resource_p a non-null resource
+   * @return a potentially null string, where null means that no hash is available
+   */
+  public String getContentHash(Resource resource_p) {
+    String result = _contentHashes.get(resource_p);
+    if (result == null && isLoaded() && _resourceMembership.contains(resource_p)) {
+      ScopeLoadingProfile profile = _loadingProfile != null? _loadingProfile:
+        new ScopeLoadingProfile();
+      try {
+        result = profile.getContentHash(resource_p);
+      } catch (IOException e) {
+        // No hash available: do not try again
+        result = NO_CONTENT_HASH;
+      }
+      _contentHashes.put(resource_p, result);
+    }
+    return result == NO_CONTENT_HASH? null: result;
+  }
+  
   /**
    * Return the cross-references, for the given element, which are in the scope
    * @param element_p a non-null element belonging to the scope
@@ -368,7 +517,58 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
    */
   protected Map<Object, Object> getLoadOptions(Resource resource_p) {
     // Override if needed
-    return new HashMap<Object, Object>();
+    Map<Object, Object> result;
+    if (_loadingProfile != null) {
+      result = _loadingProfile.getLoadOptions(resource_p);
+    } else {
+      result = new HashMap<Object, Object>();
+    }
+    return result;
+  }
+  
+  /**
+   * Return the profile for loading resources efficiently, if any
+   * @return a potentially null object
+   */
+  public ScopeLoadingProfile getLoadingProfile() {
+    return _loadingProfile;
+  }
+  
+  /**
+   * Return the URIs of the resources that the given loaded resource leads to
+   * according to the rules of the scope, without resolving any proxy.
+   * This is used for prefetching resources which are expected to be discovered
+   * via exploration.
+   * @see FragmentedModelScope#getRelevantReferencedResources(EObject)
+   * @param resource_p a non-null, loaded resource
+   * @return a non-null, potentially empty set of resource URIs
+   */
+  protected Set<URI> getPrefetchedURIs(Resource resource_p) {
+    Set<URI> result = new LinkedHashSet<URI>();
+    List<EObject> toExplore = new ArrayList<EObject>(resource_p.getContents());
+    while (!toExplore.isEmpty()) {
+      EObject current = toExplore.remove(toExplore.size() - 1);
+      for (EReference containment : current.eClass().getEAllContainments()) {
+        for (EObject child : get(current, containment, false)) {
+          if (child.eIsProxy()) {
+            result.add(((InternalEObject)child).eProxyURI().trimFragment());
+          } else {
+            toExplore.add(child);
+          }
+        }
+      }
+      for (EReference ref : getCrossReferencesInScope(current)) {
+        if (!ref.isContainment() && !ref.isContainer()) {
+          for (EObject value : get(current, ref, false)) {
+            if (value.eIsProxy()) {
+              result.add(((InternalEObject)value).eProxyURI().trimFragment());
+            }
+          }
+        }
+      }
+    }
+    result.remove(resource_p.getURI());
+    return result;
   }
   
   /**
@@ -451,6 +651,24 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     return rootResource;
   }
   
+  /**
+   * Return the resources among the given ones that release(Collection) would release
+   * @see FragmentedModelScope#release(Collection)
+   * @param resources_p a non-null collection of resources of the scope
+   * @return a non-null, potentially empty list in the order of getResources()
+   */
+  public List<Resource> getReleasableResources(Collection<? extends Resource> resources_p) {
+    List<Resource> result = new ArrayList<Resource>();
+    Set<Resource> candidates = new HashSet<Resource>(resources_p);
+    candidates.retainAll(_loadedResources);
+    for (Resource resource : _resources) {
+      if (candidates.contains(resource) && isReleasable(resource, candidates)) {
+        result.add(resource);
+      }
+    }
+    return result;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope#getResources()
    * Result is guaranteed to be accurate only if hasBeenExplored().
@@ -484,6 +702,23 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     return _isReadOnly;
   }
   
+  /**
+   * Return whether resources must be prefetched concurrently when loading
+   * @see FragmentedModelScope#setParallelLoading(boolean)
+   */
+  public boolean isParallelLoading() {
+    return _parallelLoading;
+  }
+  
+  /**
+   * Return whether the given resource of the scope has been released
+   * @see FragmentedModelScope#release(Collection)
+   * @param resource_p a potentially null resource
+   */
+  public boolean isReleased(Resource resource_p) {
+    return _releasedResources.contains(resource_p);
+  }
+  
   /**
    * Return whether the given resource is suitable for storing the given element as a root
    * @param resource_p a non-null resource
@@ -502,6 +737,8 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     if (_state == ScopeState.INITIALIZED || _state == ScopeState.LOADED) {
       if (_loadingStream != null) {
         result = loadFromStream(_loadingStream);
+      } else if (isParallelLoading() && canLoadInParallel()) {
+        result = loadInParallel();
       } else {
         result = getDefault().createMultiStatus();
         for (Resource rootResource : _rootResources) {
@@ -539,6 +776,81 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     return result;
   }
   
+  /**
+   * Load the root resources and prefetch the resources they lead to, recursively.
+   * Resources are loaded concurrently by waves: a wave consists of the resources
+   * which have been discovered in the previous wave and which are not loaded yet.
+   * Since resource sets are not thread-safe, every resource is parsed in an isolated
+   * resource set and then attached to the resource set of the scope by the calling thread.
+   * The resources of the scope and their relationships are not modified: they are
+   * determined by exploration as usual.
+   * @see FragmentedModelScope#createIsolatedResourceSet()
+   * @see FragmentedModelScope#attachLoadedResource(Resource)
+   * @return a non-null status
+   */
+  protected IStatus loadInParallel() {
+    MultiStatus result = getDefault().createMultiStatus();
+    Set<URI> handled = new HashSet<URI>();
+    List<URI> wave = new ArrayList<URI>();
+    for (Resource rootResource : _rootResources) {
+      if (handled.add(rootResource.getURI())) {
+        wave.add(rootResource.getURI());
+      }
+    }
+    try {
+      while (!wave.isEmpty()) {
+        Set<URI> discovered = new LinkedHashSet<URI>();
+        List<Future<Resource>> futures = new ArrayList<Future<Resource>>(wave.size());
+        for (final URI uri : wave) {
+          Resource existing = _resourceSet.getResource(uri, false);
+          if (existing != null && existing.isLoaded()) {
+            discovered.addAll(getPrefetchedURIs(existing));
+          } else {
+            final ResourceSet isolated = createIsolatedResourceSet();
+            futures.add(ForkJoinPool.commonPool().submit(new Callable<Resource>() {
+              /**
+               * @see java.util.concurrent.Callable#call()
+               */
+              public Resource call() throws Exception {
+                Resource loaded = isolated.createResource(uri);
+                if (loaded == null) {
+                  throw new CoreException(getDefault().createErrorStatus(
+                      Messages.FragmentedModelScope_ResourceNotDefined));
+                }
+                IStatus status = loadResource(loaded);
+                if (!status.isOK()) {
+                  throw new CoreException(status);
+                }
+                return loaded;
+              }
+            }));
+          }
+        }
+        // Attaching the loaded resources sequentially, in a deterministic order
+        for (Future<Resource> future : futures) {
+          try {
+            Resource attached = attachLoadedResource(future.get());
+            discovered.addAll(getPrefetchedURIs(attached));
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            result.merge(cause instanceof CoreException?
+                ((CoreException)cause).getStatus(): getDefault().createErrorStatus(cause));
+          }
+        }
+        wave = new ArrayList<URI>();
+        for (URI uri : discovered) {
+          if (handled.add(uri)) {
+            wave.add(uri);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.merge(getDefault().createErrorStatus(e));
+    }
+    return result;
+  }
+  
   /**
    * Load the given root resource
    * @param resource_p a non-null resource
@@ -548,7 +860,13 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     IStatus result;
     Map<?,?> options = getLoadOptions(resource_p);
     try {
-      resource_p.load(options);
+      if (_loadingProfile != null && _loadingProfile.isBinaryCacheEnabled() &&
+          !resource_p.isLoaded()) {
+        String contentHash = _loadingProfile.load(resource_p, options);
+        _contentHashes.put(resource_p, contentHash);
+      } else {
+        resource_p.load(options);
+      }
       result = Status.OK_STATUS;
     } catch (IOException e) {
       result = getDefault().createErrorStatus(e);
@@ -600,6 +918,51 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     }
   }
   
+  /**
+   * Unload the given resources while keeping the rest of the scope available, so as to
+   * bound memory consumption when they are no longer needed.
+   * Only resources that have been loaded due to the scope are released, and a resource is
+   * only released if all the resources it includes are released as well: this keeps the
+   * released elements as whole containment subtrees.
+   * Released elements become proxies and are no longer iterated by getAllContents().
+   * They are loaded again on demand, as new elements, if a proxy is resolved, so it is the
+   * responsibility of the caller to only release resources that will not be accessed again,
+   * typically resources which have been compared without differences.
+   * Precondition: isFullyExplored()
+   * @see org.eclipse.emf.diffmerge.impl.helpers.FragmentReleaser
+   * @param resources_p a non-null collection of resources of the scope
+   * @return a non-null, potentially empty list of the resources that have been released
+   */
+  public List<Resource> release(Collection<? extends Resource> resources_p) {
+    List<Resource> result = new ArrayList<Resource>();
+    if (isFullyExplored()) {
+      result.addAll(getReleasableResources(resources_p));
+      ModelsUtil.Unloader.getDefault().unloadAdapters(result);
+      for (Resource resource : result) {
+        unloadResource(resource);
+        _loadedResources.remove(resource);
+        _releasedResources.add(resource);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether the given resource can be released along with the given
+   * other resources
+   * @param resource_p a non-null resource
+   * @param candidates_p the non-null set of the resources that are being released
+   */
+  protected boolean isReleasable(Resource resource_p, Set<Resource> candidates_p) {
+    for (Resource included : getIncludedResources(resource_p)) {
+      if (!_releasedResources.contains(included) &&
+          !(candidates_p.contains(included) && isReleasable(included, candidates_p))) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope.Editable#save()
    */
@@ -618,6 +981,26 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
     return result;
   }
   
+  /**
+   * Set the profile for loading resources efficiently. This must be done before loading.
+   * @param profile_p a potentially null profile, where null stands for default loading
+   */
+  public void setLoadingProfile(ScopeLoadingProfile profile_p) {
+    _loadingProfile = profile_p;
+  }
+  
+  /**
+   * Set whether resources must be prefetched concurrently when loading.
+   * This is only effective if canLoadInParallel() and if the scope is not loaded from a stream.
+   * Overriding methods that are called when loading, such as getLoadOptions(Resource),
+   * loadResource(Resource) and getCrossReferencesInScope(EObject), must then be thread-safe.
+   * @see FragmentedModelScope#getPrefetchedURIs(Resource)
+   * @param parallelLoading_p whether resources must be prefetched concurrently
+   */
+  public void setParallelLoading(boolean parallelLoading_p) {
+    _parallelLoading = parallelLoading_p;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope.Editable#setStream(java.io.InputStream)
    */
@@ -634,13 +1017,35 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
       unloadResource(loadedResource);
     }
     List<Resource> result = new ArrayList<Resource>(_loadedResources);
+    result.addAll(_releasedResources);
     _loadedResources.clear();
+    _releasedResources.clear();
+    _contentHashes.clear();
     if (!result.isEmpty()) {
       _state = ScopeState.UNLOADED;
     }
     return result;
   }
   
+  /**
+   * Unload the given resource if it has been loaded due to the scope, so that the scope can
+   * be unloaded resource by resource before unload() completes the operation.
+   * The resource is then no longer part of the result of unload(), and the scope is
+   * considered as unloaded.
+   * @see FragmentedModelScope#unload()
+   * @param resource_p a non-null resource
+   * @return whether the resource has been unloaded
+   */
+  public boolean unload(Resource resource_p) {
+    boolean result = _loadedResources.remove(resource_p);
+    if (result) {
+      ModelsUtil.Unloader.getDefault().unloadAdapters(resource_p);
+      unloadResource(resource_p);
+      _state = ScopeState.UNLOADED;
+    }
+    return result;
+  }
+  
   /**
    * Unload the given resource
    * @param resource_p a non-null resource
@@ -681,8 +1086,14 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
           _resourceIterator.hasNext()) {
         result = true;
         Resource nextResource = _resourceIterator.next();
-        if (!_exploredResources.contains(nextResource)) {
-          _contentIterator = nextResource.getAllContents();
+        if (_releasedResources.isEmpty()) {
+          if (!_exploredResources.contains(nextResource)) {
+            _contentIterator = nextResource.getAllContents();
+          }
+        } else if (!_releasedResources.contains(nextResource) &&
+            !_exploredResources.contains(nextResource)) {
+          // Do not resolve proxies so that released resources are not loaded again
+          _contentIterator = EcoreUtil.getAllContents(nextResource, false);
         }
       }
       return result;
@@ -731,6 +1142,11 @@ implements IFragmentedModelScope.Editable, IEditingDomainProvider {
         } else {
           // Elements remaining
           EObject candidate = _contentIterator.next();
+          if (!_releasedResources.isEmpty() && candidate.eIsProxy()) {
+            // Released element
+            _contentIterator.prune();
+            continue;
+          }
           boolean candidateOK = true;
           Resource candidateResource = candidate.eResource();
           if (candidateResource != null) {
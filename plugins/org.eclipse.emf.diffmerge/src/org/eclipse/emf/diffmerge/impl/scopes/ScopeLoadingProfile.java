@@ -0,0 +1,253 @@
+/*********************************************************************
+ * Copyright (c) 2019 Thales Global Services S.A.S.
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ **********************************************************************/
+package org.eclipse.emf.diffmerge.impl.scopes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+
+
+/**
+ * A set of rules for loading the resources of a scope efficiently.
+ * It consists in EMF performance-related load options for XML resources and,
+ * optionally, a cache of binary copies of the XML resources which have already
+ * been loaded. Cached copies are identified by a hash of the XML contents, so
+ * loading a resource whose contents have already been loaded, for example the
+ * same revision of a model in another comparison, skips XML parsing.
+ * Instances are thread-safe and can be shared among scopes.
+ * @see FragmentedModelScope#setLoadingProfile(ScopeLoadingProfile)
+ */
+public class ScopeLoadingProfile {
+
+  /** The extension of the files of the binary cache */
+  protected static final String BINARY_CACHE_EXTENSION = ".bin"; //$NON-NLS-1$
+
+  /** The algorithm for hashing the contents of resources */
+  protected static final String HASH_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+  /** The non-null parser pool shared by all profiles */
+  private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl(true);
+
+  /** The non-null, thread-safe cache of the features that correspond to XML names */
+  private final Map<Object, Object> _nameToFeatureMap;
+
+  /** The optional directory of the binary cache */
+  private final File _binaryCacheLocation;
+
+
+  /**
+   * Constructor for a profile without binary cache
+   */
+  public ScopeLoadingProfile() {
+    this(null);
+  }
+
+  /**
+   * Constructor
+   * @param binaryCacheLocation_p an optional directory for the binary cache, where
+   *          null means no binary cache
+   */
+  public ScopeLoadingProfile(File binaryCacheLocation_p) {
+    _binaryCacheLocation = binaryCacheLocation_p;
+    _nameToFeatureMap = Collections.synchronizedMap(new HashMap<Object, Object>());
+  }
+
+  /**
+   * Return the file that holds the binary copy of the resource whose contents
+   * have the given hash
+   * @param contentHash_p a non-null hash
+   * @return a file which may not exist, or null if there is no binary cache
+   */
+  protected File getBinaryCacheFile(String contentHash_p) {
+    File result = null;
+    if (_binaryCacheLocation != null) {
+      result = new File(_binaryCacheLocation, contentHash_p + BINARY_CACHE_EXTENSION);
+    }
+    return result;
+  }
+
+  /**
+   * Return the directory of the binary cache, if any
+   * @return a potentially null directory
+   */
+  public File getBinaryCacheLocation() {
+    return _binaryCacheLocation;
+  }
+
+  /**
+   * Return a hash of the given contents
+   * @param contents_p a non-null array of bytes
+   * @return a non-null string
+   */
+  public String getContentHash(byte[] contents_p) {
+    try {
+      byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(contents_p);
+      StringBuilder builder = new StringBuilder(2 * digest.length);
+      for (byte b : digest) {
+        builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+        builder.append(Character.forDigit(b & 0xF, 16));
+      }
+      return builder.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Cannot happen: all Java platforms support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Return a hash of the persisted contents of the given resource
+   * @param resource_p a non-null resource which belongs to a resource set
+   * @return a non-null string
+   * @throws IOException if the contents cannot be read
+   */
+  public String getContentHash(Resource resource_p) throws IOException {
+    return getContentHash(readContents(resource_p));
+  }
+
+  /**
+   * Return load options for loading the given resource
+   * @param resource_p a non-null resource
+   * @return a non-null, potentially empty, modifiable option map
+   */
+  public Map<Object, Object> getLoadOptions(Resource resource_p) {
+    Map<Object, Object> result = new HashMap<Object, Object>();
+    if (resource_p instanceof XMLResource) {
+      result.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+      result.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, _nameToFeatureMap);
+      result.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+      result.put(XMLResource.OPTION_DEFER_ATTACHMENT, Boolean.TRUE);
+      result.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+    }
+    return result;
+  }
+
+  /**
+   * Return whether there is a binary cache
+   */
+  public boolean isBinaryCacheEnabled() {
+    return _binaryCacheLocation != null;
+  }
+
+  /**
+   * Load the given resource, through the binary cache if possible
+   * @param resource_p a non-null resource which belongs to a resource set
+   * @param options_p a non-null map of load options
+   * @return the non-null hash of the contents of the resource
+   * @throws IOException if loading failed
+   */
+  public String load(Resource resource_p, Map<?, ?> options_p) throws IOException {
+    byte[] contents = readContents(resource_p);
+    String result = getContentHash(contents);
+    File cacheFile = getBinaryCacheFile(result);
+    boolean loaded = false;
+    if (cacheFile != null && cacheFile.isFile() && resource_p instanceof XMLResource) {
+      // Binary copy available
+      Map<Object, Object> binaryOptions = new HashMap<Object, Object>(options_p);
+      binaryOptions.put(XMLResource.OPTION_BINARY, Boolean.TRUE);
+      InputStream stream = new FileInputStream(cacheFile);
+      try {
+        resource_p.load(stream, binaryOptions);
+        loaded = true;
+      } catch (IOException e) {
+        // Corrupted copy: fall back to XML
+        resource_p.unload();
+      } finally {
+        stream.close();
+      }
+    }
+    if (!loaded) {
+      resource_p.load(new ByteArrayInputStream(contents), options_p);
+      if (cacheFile != null && resource_p instanceof XMLResource &&
+          resource_p.getErrors().isEmpty()) {
+        store(resource_p, cacheFile);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return the persisted contents of the given resource
+   * @param resource_p a non-null resource which belongs to a resource set
+   * @return a non-null array of bytes
+   * @throws IOException if the contents cannot be read
+   */
+  protected byte[] readContents(Resource resource_p) throws IOException {
+    ResourceSet resourceSet = resource_p.getResourceSet();
+    URIConverter converter = resourceSet != null? resourceSet.getURIConverter():
+      URIConverter.INSTANCE;
+    InputStream stream = converter.createInputStream(resource_p.getURI());
+    try {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read = stream.read(buffer);
+      while (read >= 0) {
+        result.write(buffer, 0, read);
+        read = stream.read(buffer);
+      }
+      return result.toByteArray();
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Store a binary copy of the given loaded resource in the given file of the binary cache.
+   * Failures are ignored since the cache is only an optimization.
+   * @param resource_p a non-null, loaded XML resource
+   * @param cacheFile_p a non-null file
+   */
+  protected void store(Resource resource_p, File cacheFile_p) {
+    File parent = cacheFile_p.getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      return;
+    }
+    // Write into a temporary file first so that incomplete copies are never used
+    File tempFile = new File(parent, cacheFile_p.getName() + '.' +
+        Thread.currentThread().getId());
+    Map<Object, Object> options = new HashMap<Object, Object>();
+    options.put(XMLResource.OPTION_BINARY, Boolean.TRUE);
+    boolean wasModified = resource_p.isModified();
+    try {
+      OutputStream stream = new FileOutputStream(tempFile);
+      try {
+        resource_p.save(stream, options);
+      } finally {
+        stream.close();
+      }
+      if (!tempFile.renameTo(cacheFile_p)) {
+        tempFile.delete();
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+    } finally {
+      resource_p.setModified(wasModified);
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+package org.eclipse.emf.diffmerge.tests.wt.elements.cases;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.eclipse.emf.diffmerge.diffdata.EComparison;
+import org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl;
+import org.eclipse.emf.diffmerge.generic.api.IMergeSelector;
+import org.eclipse.emf.diffmerge.generic.api.Role;
+import org.eclipse.emf.diffmerge.generic.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.impl.scopes.RootedModelScope;
+import org.eclipse.emf.diffmerge.tests.elements.Elements.Edge;
+import org.eclipse.emf.diffmerge.tests.elements.Elements.ElementsFactory;
+import org.eclipse.emf.diffmerge.tests.elements.Elements.Node;
+import org.eclipse.emf.diffmerge.tests.elements.Elements.ReferencingNode;
+import org.eclipse.emf.diffmerge.tests.elements.Elements.Root;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+
+/**
+ * Merge in batch mode vs. serial merge on additions whose differences are related
+ * by both "requires" and "implies" dependencies: mandatory edge ends, opposite
+ * references and a mandatory reference to an added node
+ */
+public class BatchMerge extends TestCase {
+
+  /**
+   * Create and return a comparison between the given roots which has been computed
+   * @param target a non-null root
+   * @param reference a non-null root
+   */
+  private EComparisonImpl compare(Root target, Root reference) {
+    EComparisonImpl result = new EComparisonImpl(
+        new RootedModelScope(Collections.singletonList(target)),
+        new RootedModelScope(Collections.singletonList(reference)));
+    result.compute(null, null, null, null);
+    return result;
+  }
+
+  /**
+   * Create and return a node with the given ID as name
+   * @param id a non-null string
+   */
+  private Node createNode(String id) {
+    Node result = ElementsFactory.eINSTANCE.createNode();
+    result.setId(id);
+    result.setName(id);
+    return result;
+  }
+
+  /**
+   * Create and return an empty root
+   */
+  private Root createRoot() {
+    Root result = ElementsFactory.eINSTANCE.createRoot();
+    result.setId("R");
+    return result;
+  }
+
+  /**
+   * Create and return the model to add: a graph whose edges have mandatory ends
+   * and opposite references, and a node with a mandatory reference to another one
+   */
+  private Root createTargetModel() {
+    ElementsFactory factory = ElementsFactory.eINSTANCE;
+    Root result = createRoot();
+    Node n1 = createNode("N1");
+    Node n2 = createNode("N2");
+    Node n21 = createNode("N21");
+    n2.getSubNodes().add(n21);
+    Edge e1 = factory.createEdge();
+    e1.setId("E1");
+    e1.setName("E1");
+    e1.setSource(n1);
+    e1.setTarget(n21);
+    Edge e2 = factory.createEdge();
+    e2.setId("E2");
+    e2.setName("E2");
+    e2.setSource(n21);
+    e2.setTarget(n1);
+    n1.getSubNodes().add(e2);
+    ReferencingNode referencing = factory.createReferencingNode();
+    referencing.setId("RN");
+    referencing.setName("RN");
+    referencing.setReferenced(n21);
+    result.getContent().add(referencing);
+    result.getContent().add(e1);
+    result.getContent().add(n2);
+    result.getContent().add(n1);
+    return result;
+  }
+
+  /**
+   * Merge all the differences between a copy of the given model and an empty model
+   * into the latter, and return the latter
+   * @param target a non-null root
+   * @param batch whether the merge must be performed in batch mode
+   */
+  private Root mergeAll(Root target, boolean batch) {
+    Root reference = createRoot();
+    EComparisonImpl comparison = compare(EcoreUtil.copy(target), reference);
+    assertTrue(comparison.hasRemainingDifferences());
+    Collection<IDifference<EObject>> merged = comparison.merge(
+        new IMergeSelector<EObject>() {
+          /**
+           * @see org.eclipse.emf.diffmerge.generic.api.IMergeSelector#getMergeDirection(org.eclipse.emf.diffmerge.generic.api.diff.IDifference)
+           */
+          public Role getMergeDirection(IDifference<EObject> difference) {
+            return Role.REFERENCE;
+          }
+        }, true, batch, null);
+    assertFalse(merged.isEmpty());
+    assertFalse(comparison.hasRemainingDifferences());
+    return reference;
+  }
+
+  /**
+   * Main test method.
+   */
+  public void testBatchMerge() throws Exception {
+    Root target = createTargetModel();
+    Root serial = mergeAll(target, false);
+    Root batch = mergeAll(target, true);
+    EComparison serialVsTarget = compare(EcoreUtil.copy(target), serial);
+    assertEquals(0, serialVsTarget.getNbDifferences());
+    EComparison batchVsTarget = compare(EcoreUtil.copy(target), batch);
+    assertEquals(0, batchVsTarget.getNbDifferences());
+    EComparison batchVsSerial = compare(batch, serial);
+    assertEquals(0, batchVsSerial.getNbDifferences());
+  }
+
+}